@@ -0,0 +1,482 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table driven encoders and decoders for the {@link Encoding} formats that work on caller supplied buffers.
+ * <p>
+ * Encoding produces exactly what {@link Encoder} produces: lower case hex, lower case base32 without
+ * padding and url safe base64 without padding. Decoding is lenient about case for base16 and base32,
+ * and about the alphabet for base64, which accepts both the url safe and the standard alphabet. Padding is
+ * not required, but when present it must be exactly the padding that fills the last group of 4 base64 or
+ * 8 base32 characters, as {@link java.util.Base64} requires.
+ * <p>
+ * The hot loops work on whole groups: hex writes both characters of a byte with one 16 bit store from a
+ * pair table, base32 turns 5 bytes and base64 6 bytes into 8 characters written with one 64 bit store,
+ * and decoding checks a whole group for invalid characters with a single branch. Only the final partial
+ * group goes through the bit by bit path.
+ * <p>
+ * With {@code --add-modules jdk.incubator.vector} on a CPU with 256 bit vectors, longer hex and base32 input
+ * goes through {@link VectorCodec} first, see there.
+ */
+final class BaseCodec {
+
+  static final byte INVALID = -1;
+
+  /**
+   * Null when the vector path is not available
+   */
+  private static final VectorCodec VECTORS = VectorCodec.load();
+
+  /**
+   * Shortest input worth a vector call, in bytes to encode or chars to decode
+   */
+  private static final int VECTOR_MIN_BYTES = 32;
+  private static final int VECTOR_MIN_CHARS = 64;
+
+  /**
+   * Chars of a String copied per vector decode call
+   */
+  private static final int                 VECTOR_CHUNK = 1024;
+  private static final StripedPool<char[]> CHUNKS       = new StripedPool<>(() -> new char[VECTOR_CHUNK]);
+
+  private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle LONG_BE  = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private static final byte[] BASE16_ALPHABET       = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] BASE16_UPPER_ALPHABET = "0123456789ABCDEF".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] BASE32_ALPHABET       =
+    "abcdefghijklmnopqrstuvwxyz234567".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] BASE32_UPPER_ALPHABET =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] BASE64_ALPHABET       =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.ISO_8859_1);
+  private static final byte[] MIME_ALPHABET         =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.ISO_8859_1);
+
+  /**
+   * Bytes per MIME line, encoded to 76 characters
+   */
+  static final int MIME_LINE_BYTES = 57;
+
+  /**
+   * Both hex characters of every byte value, the first one in the low byte
+   */
+  private static final short[] BASE16_PAIRS       = hexPairs(BASE16_ALPHABET);
+  private static final short[] BASE16_UPPER_PAIRS = hexPairs(BASE16_UPPER_ALPHABET);
+
+  private static final byte[] BASE16_DECODE = new byte[128];
+  private static final byte[] BASE32_DECODE = new byte[128];
+  private static final byte[] BASE64_DECODE = new byte[128];
+  /**
+   * Only the url safe alphabet, for validation
+   */
+  private static final byte[] BASE64_URL_DECODE;
+
+  static {
+    Arrays.fill(BASE16_DECODE, INVALID);
+    Arrays.fill(BASE32_DECODE, INVALID);
+    Arrays.fill(BASE64_DECODE, INVALID);
+    var hex = "0123456789abcdef";
+    for (int i = 0; i < hex.length(); i++) {
+      BASE16_DECODE[hex.charAt(i)]                        = (byte) i;
+      BASE16_DECODE[Character.toUpperCase(hex.charAt(i))] = (byte) i;
+    }
+    var b32 = "abcdefghijklmnopqrstuvwxyz234567";
+    for (int i = 0; i < b32.length(); i++) {
+      BASE32_DECODE[b32.charAt(i)]                        = (byte) i;
+      BASE32_DECODE[Character.toUpperCase(b32.charAt(i))] = (byte) i;
+    }
+    var b64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    for (int i = 0; i < b64.length(); i++) {
+      BASE64_DECODE[b64.charAt(i)] = (byte) i;
+    }
+    BASE64_URL_DECODE  = BASE64_DECODE.clone();
+    BASE64_DECODE['+'] = 62;
+    BASE64_DECODE['/'] = 63;
+  }
+
+  private BaseCodec() {}
+
+  private static short[] hexPairs(byte[] alphabet) {
+    var pairs = new short[256];
+    for (int b = 0; b < 256; b++) {
+      pairs[b] = (short) (alphabet[b >>> 4] | alphabet[b & 0xF] << 8);
+    }
+    return pairs;
+  }
+
+  /**
+   * @return the number of characters {@link #encode} writes for {@code length} bytes
+   */
+  static int encodedLength(int length, Encoding encoding) {
+    return switch (encoding) {
+      case BASE16 -> length * 2;
+      case BASE32 -> (int) (((long) length * 8 + 4) / 5);
+      case BASE64 -> (int) (((long) length * 4 + 2) / 3);
+    };
+  }
+
+  /**
+   * Encodes {@code length} bytes of {@code src} as ASCII into {@code dst}, which must have room for
+   * {@link #encodedLength} bytes.
+   *
+   * @return the number of bytes written
+   */
+  static int encode(byte[] src, int offset, int length, Encoding encoding, byte[] dst, int dstOffset) {
+    return encode(src, offset, length, encoding, false, dst, dstOffset);
+  }
+
+  /**
+   * Same as {@link #encode(byte[], int, int, Encoding, byte[], int)}, with upper case letters for base16
+   * and base32 if asked for. Base64 is case sensitive and ignores the flag.
+   */
+  static int encode(byte[] src, int offset, int length, Encoding encoding, boolean upperCase,
+                    byte[] dst, int dstOffset) {
+    return switch (encoding) {
+      case BASE16 -> encodeBase16(src, offset, length, dst, dstOffset, upperCase);
+      case BASE32 -> encodeBase32(src, offset, length, dst, dstOffset, upperCase);
+      case BASE64 -> encodeBase64(src, offset, length, dst, dstOffset, BASE64_ALPHABET, false);
+    };
+  }
+
+  /**
+   * @return the number of characters {@link #encodeMime} writes for {@code length} bytes
+   */
+  static int mimeEncodedLength(int length) {
+    if (length == 0) return 0;
+    long chars = ((long) length + 2) / 3 * 4;
+    long lines = (chars + 75) / 76;
+    return Math.toIntExact(chars + 2 * (lines - 1));
+  }
+
+  /**
+   * Encodes like {@link java.util.Base64#getMimeEncoder()}: the standard alphabet with padding and a
+   * CRLF after every 76 characters except the last line.
+   *
+   * @return the number of bytes written
+   */
+  static int encodeMime(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+    int out = dstOffset;
+    for (int i = offset, end = offset + length; i < end; i += MIME_LINE_BYTES) {
+      if (i > offset) {
+        dst[out++] = '\r';
+        dst[out++] = '\n';
+      }
+      out += encodeBase64(src, i, Math.min(MIME_LINE_BYTES, end - i), dst, out, MIME_ALPHABET, true);
+    }
+    return out - dstOffset;
+  }
+
+  /**
+   * Encodes like {@link java.util.Base64#getEncoder()}: the standard alphabet with padding.
+   *
+   * @return the number of bytes written, a multiple of 4
+   */
+  static int encodeBasic(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+    return encodeBase64(src, offset, length, dst, dstOffset, MIME_ALPHABET, true);
+  }
+
+  /**
+   * Encodes into a compact Latin-1 String, copying the encoded bytes exactly once.
+   */
+  static String encodeToString(byte[] src, int offset, int length, Encoding encoding, byte[] scratch, int scratchOffset) {
+    int written = encode(src, offset, length, encoding, scratch, scratchOffset);
+    return new String(scratch, scratchOffset, written, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * @return whether the hex and base32 loops run on {@link VectorCodec}
+   */
+  static boolean isVectorized() {
+    return VECTORS != null;
+  }
+
+  private static int encodeBase16(byte[] src, int offset, int length, byte[] dst, int dstOffset, boolean upperCase) {
+    int done = VECTORS != null && length >= VECTOR_MIN_BYTES
+               ? VECTORS.encodeBase16(src, offset, length, upperCase, dst, dstOffset) : 0;
+    short[] pairs = upperCase ? BASE16_UPPER_PAIRS : BASE16_PAIRS;
+    int     out   = dstOffset + done * 2;
+    for (int i = offset + done, end = offset + length; i < end; i++, out += 2) {
+      SHORT_LE.set(dst, out, pairs[src[i] & 0xFF]);
+    }
+    return out - dstOffset;
+  }
+
+  private static int encodeBase32(byte[] src, int offset, int length, byte[] dst, int dstOffset, boolean upperCase) {
+    int done = VECTORS != null && length >= VECTOR_MIN_BYTES
+               ? VECTORS.encodeBase32(src, offset, length, upperCase, dst, dstOffset) : 0;
+    byte[] alphabet = upperCase ? BASE32_UPPER_ALPHABET : BASE32_ALPHABET;
+    int    out      = dstOffset + done / 5 * 8;
+    int    i        = offset + done;
+    int    end      = offset + length;
+    for (; i + 5 <= end; i += 5, out += 8) {
+      long bits = (src[i] & 0xFFL) << 32 | (src[i + 1] & 0xFFL) << 24 | (src[i + 2] & 0xFFL) << 16
+                  | (src[i + 3] & 0xFFL) << 8 | (src[i + 4] & 0xFFL);
+      long chars = 0;
+      for (int shift = 35; shift >= 0; shift -= 5) {
+        chars = chars << 8 | alphabet[(int) (bits >>> shift) & 0x1F];
+      }
+      LONG_BE.set(dst, out, chars);
+    }
+    int buffer = 0;
+    int bits   = 0;
+    for (; i < end; i++) {
+      buffer = (buffer << 8) | (src[i] & 0xFF);
+      bits += 8;
+      while (bits >= 5) {
+        bits -= 5;
+        dst[out++] = alphabet[(buffer >>> bits) & 0x1F];
+      }
+    }
+    if (bits > 0) {
+      dst[out++] = alphabet[(buffer << (5 - bits)) & 0x1F];
+    }
+    return out - dstOffset;
+  }
+
+  private static int encodeBase64(byte[] src, int offset, int length, byte[] dst, int dstOffset,
+                                  byte[] alphabet, boolean pad) {
+    int out = dstOffset;
+    int i   = offset;
+    int end = offset + length;
+    for (; i + 6 <= end; i += 6, out += 8) {
+      long bits = (src[i] & 0xFFL) << 40 | (src[i + 1] & 0xFFL) << 32 | (src[i + 2] & 0xFFL) << 24
+                  | (src[i + 3] & 0xFFL) << 16 | (src[i + 4] & 0xFFL) << 8 | (src[i + 5] & 0xFFL);
+      long chars = 0;
+      for (int shift = 42; shift >= 0; shift -= 6) {
+        chars = chars << 8 | alphabet[(int) (bits >>> shift) & 0x3F];
+      }
+      LONG_BE.set(dst, out, chars);
+    }
+    for (; i + 3 <= end; i += 3) {
+      int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+      dst[out++] = alphabet[bits >>> 18];
+      dst[out++] = alphabet[(bits >>> 12) & 0x3F];
+      dst[out++] = alphabet[(bits >>> 6) & 0x3F];
+      dst[out++] = alphabet[bits & 0x3F];
+    }
+    int tail = end - i;
+    if (tail > 0) {
+      int bits = (src[i] & 0xFF) << 16 | (tail == 2 ? (src[i + 1] & 0xFF) << 8 : 0);
+      dst[out++] = alphabet[bits >>> 18];
+      dst[out++] = alphabet[(bits >>> 12) & 0x3F];
+      if (tail == 2) dst[out++] = alphabet[(bits >>> 6) & 0x3F];
+      if (pad) {
+        if (tail == 1) dst[out++] = '=';
+        dst[out++] = '=';
+      }
+    }
+    return out - dstOffset;
+  }
+
+  /**
+   * Decodes {@code src} into {@code dst} starting at {@code offset}.
+   *
+   * @return the number of bytes written, or -1 if the input is malformed or does not fit into dst
+   */
+  static int decode(CharSequence src, Encoding encoding, byte[] dst, int offset) {
+    return decode(src, 0, src.length(), encoding, dst, offset);
+  }
+
+  /**
+   * Decodes the characters from {@code start} to {@code end} of {@code src}, which may only be padded
+   * at the end.
+   *
+   * @return the number of bytes written, or -1 if the input is malformed or does not fit into dst
+   */
+  static int decode(CharSequence src, int start, int end, Encoding encoding, byte[] dst, int offset) {
+    int unpadded = unpaddedEnd(src, start, end);
+    if (!isCanonicalPadding(start, unpadded, end, encoding)) return -1;
+    int length = unpadded - start;
+    return switch (encoding) {
+      case BASE16 -> decodeBase16(src, start, length, dst, offset);
+      case BASE32 -> decodeBase32(src, start, length, dst, offset);
+      case BASE64 -> decodeBits(src, start, length, BASE64_DECODE, 6, dst, offset);
+    };
+  }
+
+  /**
+   * @return the exact number of bytes {@link #decode} writes for well formed input
+   */
+  static int decodedLength(CharSequence src, int start, int end, Encoding encoding) {
+    long length = unpaddedEnd(src, start, end) - start;
+    return switch (encoding) {
+      case BASE16 -> (int) (length / 2);
+      case BASE32 -> (int) (length * 5 / 8);
+      case BASE64 -> (int) (length * 6 / 8);
+    };
+  }
+
+  /**
+   * @return the char to value table decoding uses, {@link #INVALID} outside the alphabet; not to be modified
+   */
+  static byte[] decodeTable(Encoding encoding) {
+    return switch (encoding) {
+      case BASE16 -> BASE16_DECODE;
+      case BASE32 -> BASE32_DECODE;
+      case BASE64 -> BASE64_DECODE;
+    };
+  }
+
+  static int bitsPerChar(Encoding encoding) {
+    return switch (encoding) {
+      case BASE16 -> 4;
+      case BASE32 -> 5;
+      case BASE64 -> 6;
+    };
+  }
+
+  /**
+   * True exactly when {@link #decode} accepts {@code src}, found without decoding or allocating: the
+   * length check first, then one pass over the characters that ORs their table values, so the loop has
+   * no branch per character.
+   *
+   * @param urlSafe for base64, accept only the url safe alphabet
+   */
+  static boolean isValid(CharSequence src, Encoding encoding, boolean urlSafe) {
+    int end         = src.length();
+    int length      = unpaddedEnd(src, 0, end);
+    int bitsPerChar = bitsPerChar(encoding);
+    if (!isCanonicalPadding(0, length, end, encoding)
+        || (encoding == Encoding.BASE16 ? (length & 1) != 0 : (long) length * bitsPerChar % 8 >= bitsPerChar)) {
+      return false;
+    }
+    byte[] table   = urlSafe && encoding == Encoding.BASE64 ? BASE64_URL_DECODE : decodeTable(encoding);
+    int    invalid = 0;
+    for (int i = 0; i < length; i++) {
+      invalid |= lookup(table, src.charAt(i));
+    }
+    return invalid >= 0;
+  }
+
+  private static int unpaddedEnd(CharSequence src, int start, int end) {
+    while (end > start && src.charAt(end - 1) == '=') end--;
+    return end;
+  }
+
+  /**
+   * True without padding, or with the padding that fills the last group, so {@code "QUJD=="} and
+   * {@code "QQ="} are rejected. Hex has no padding.
+   */
+  private static boolean isCanonicalPadding(int start, int unpaddedEnd, int end, Encoding encoding) {
+    int padding = end - unpaddedEnd;
+    if (padding == 0) return true;
+    int group = switch (encoding) {
+      case BASE16 -> 1;
+      case BASE32 -> 8;
+      case BASE64 -> 4;
+    };
+    return padding < group && (end - start) % group == 0;
+  }
+
+  private static int decodeBase16(CharSequence src, int start, int length, byte[] dst, int offset) {
+    if ((length & 1) != 0 || length / 2 > dst.length - offset) return -1;
+    int done = decodeVectorized(src, start, length, Encoding.BASE16, dst, offset);
+    if (done < 0) return -1;
+    int out = offset + done / 2;
+    for (int i = start + done, end = start + length; i < end; i += 2) {
+      int hi = lookup(BASE16_DECODE, src.charAt(i));
+      int lo = lookup(BASE16_DECODE, src.charAt(i + 1));
+      if ((hi | lo) < 0) return -1;
+      dst[out++] = (byte) ((hi << 4) | lo);
+    }
+    return out - offset;
+  }
+
+  private static int decodeBase32(CharSequence src, int start, int length, byte[] dst, int offset) {
+    // checked here as well, the vector path writes into dst before decodeBits checks it
+    if ((long) length * 5 % 8 >= 5 || (long) length * 5 / 8 > dst.length - offset) return -1;
+    int done = decodeVectorized(src, start, length, Encoding.BASE32, dst, offset);
+    if (done < 0) return -1;
+    int written = decodeBits(src, start + done, length - done, BASE32_DECODE, 5, dst, offset + done / 8 * 5);
+    return written < 0 ? -1 : done / 8 * 5 + written;
+  }
+
+  /**
+   * Decodes a prefix of a String on {@link VectorCodec}, copying it through a pooled char array. Other
+   * CharSequences and short input are left to the scalar path.
+   *
+   * @return the number of chars decoded, or -1 if the prefix holds an invalid char
+   */
+  private static int decodeVectorized(CharSequence src, int start, int length, Encoding encoding,
+                                      byte[] dst, int offset) {
+    if (VECTORS == null || length < VECTOR_MIN_CHARS || !(src instanceof String string)) return 0;
+    char[] chunk = CHUNKS.borrow();
+    try {
+      int done = 0;
+      while (length - done >= VECTOR_MIN_CHARS) {
+        int n = Math.min(VECTOR_CHUNK, length - done);
+        string.getChars(start + done, start + done + n, chunk, 0);
+        int decoded = encoding == Encoding.BASE16
+                      ? VECTORS.decodeBase16(chunk, 0, n, dst, offset + done / 2)
+                      : VECTORS.decodeBase32(chunk, 0, n, dst, offset + done / 8 * 5);
+        if (decoded < 0) return -1;
+        done += decoded;
+      }
+      return done;
+    } finally {
+      CHUNKS.release(chunk);
+    }
+  }
+
+  private static int decodeBits(CharSequence src, int start, int length, byte[] table, int bitsPerChar,
+                                byte[] dst, int offset) {
+    long decoded = (long) length * bitsPerChar / 8;
+    // a trailing group that holds a whole char of bits but no whole byte can't come from an encoder
+    if ((long) length * bitsPerChar % 8 >= bitsPerChar || decoded > dst.length - offset) return -1;
+    int out        = offset;
+    int i          = start;
+    int end        = start + length;
+    // 8 base32 chars are 5 bytes, 4 base64 chars are 3 bytes
+    int groupChars = bitsPerChar == 5 ? 8 : 4;
+    int groupBytes = groupChars * bitsPerChar / 8;
+    for (; i + groupChars <= end; i += groupChars) {
+      long group   = 0;
+      int  invalid = 0;
+      for (int k = 0; k < groupChars; k++) {
+        int value = lookup(table, src.charAt(i + k));
+        invalid |= value;
+        group = group << bitsPerChar | (value & 0xFF);
+      }
+      if (invalid < 0) return -1;
+      for (int shift = (groupBytes - 1) * 8; shift >= 0; shift -= 8) {
+        dst[out++] = (byte) (group >>> shift);
+      }
+    }
+    int buffer = 0;
+    int bits   = 0;
+    for (; i < end; i++) {
+      int value = lookup(table, src.charAt(i));
+      if (value < 0) return -1;
+      buffer = (buffer << bitsPerChar) | value;
+      bits += bitsPerChar;
+      if (bits >= 8) {
+        bits -= 8;
+        dst[out++] = (byte) (buffer >>> bits);
+      }
+    }
+    return out - offset;
+  }
+
+  private static int lookup(byte[] table, char c) {
+    return c < 128 ? table[c] : INVALID;
+  }
+
+  /**
+   * Compares the two ranges in time that depends only on the length, not on where they differ.
+   */
+  static boolean constantTimeEquals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+    int diff = 0;
+    for (int i = 0; i < length; i++) {
+      diff |= a[aOffset + i] ^ b[bOffset + i];
+    }
+    return diff == 0;
+  }
+}
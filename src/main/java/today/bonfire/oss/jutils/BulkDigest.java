@@ -0,0 +1,83 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task that digests a range of values. Each leaf borrows one {@link MessageDigest} for its
+ * whole range, so the number of digest instances in use matches the number of workers.
+ */
+@SuppressWarnings("serial") // fork-join tasks are never serialized
+final class BulkDigest extends RecursiveAction {
+
+  /**
+   * Values per leaf task, large enough to amortize task overhead on short inputs such as emails.
+   */
+  static final int LEAF_SIZE = 1024;
+
+  private final List<? extends CharSequence> values;
+  private final DigestHash                   algorithm;
+  private final int                          from;
+  private final int                          to;
+  private final byte[]                       packed;
+  private final int                          digestLength;
+  private final Encoding                     encoding;
+  private final String[]                     encoded;
+
+  private BulkDigest(List<? extends CharSequence> values, DigestHash algorithm, int from, int to,
+                     byte[] packed, int digestLength, Encoding encoding, String[] encoded) {
+    this.values       = values;
+    this.algorithm    = algorithm;
+    this.from         = from;
+    this.to           = to;
+    this.packed       = packed;
+    this.digestLength = digestLength;
+    this.encoding     = encoding;
+    this.encoded      = encoded;
+  }
+
+  static BulkDigest packed(List<? extends CharSequence> values, DigestHash algorithm, byte[] packed, int digestLength) {
+    return new BulkDigest(values, algorithm, 0, values.size(), packed, digestLength, null, null);
+  }
+
+  static BulkDigest encoded(List<? extends CharSequence> values, DigestHash algorithm, Encoding encoding, String[] encoded) {
+    return new BulkDigest(values, algorithm, 0, values.size(), null, 0, encoding, encoded);
+  }
+
+  @Override
+  protected void compute() {
+    if (to - from <= LEAF_SIZE) {
+      digestRange();
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    invokeAll(new BulkDigest(values, algorithm, from, mid, packed, digestLength, encoding, encoded),
+              new BulkDigest(values, algorithm, mid, to, packed, digestLength, encoding, encoded));
+  }
+
+  private void digestRange() {
+    var md   = DigestPool.borrowDigest(algorithm);
+    var sink = DigestIO.Sink.of(md);
+    try {
+      for (int i = from; i < to; i++) {
+        var value = values.get(i);
+        if (value == null) throw new NullPointerException("value at index " + i + " is null");
+        DigestIO.feed(value, sink);
+        if (encoded != null) {
+          encoded[i] = Digest.finishEncoded(md, encoding);
+        } else {
+          md.digest(packed, i * digestLength, digestLength);
+        }
+      }
+    } catch (DigestException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+}
@@ -1,18 +1,33 @@
 package today.bonfire.oss.jutils;
 
-import com.google.common.io.BaseEncoding;
 import lombok.extern.slf4j.Slf4j;
 import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
 
 @Slf4j
 public class Digest {
 
+  private static final int                 MAX_DIGEST_LENGTH = 64;
+  private static final StripedPool<byte[]> ENCODE_SCRATCH    =
+    new StripedPool<>(() -> new byte[MAX_DIGEST_LENGTH + BaseCodec.encodedLength(MAX_DIGEST_LENGTH, Encoding.BASE16)]);
+
   /**
    * return a base64 url encoded sha 3 string from the input. StandardCharsets.UTF_8 is used
    *
@@ -28,8 +43,7 @@ public class Digest {
   }
 
   public static String base32Sha3_256(String value) {
-    if (value == null) return null;
-    return Encoder.toBase32(digestToBytes(value, DigestHash.SHA_3_256));
+    return digest(value, DigestHash.SHA_3_256, Encoding.BASE32);
   }
 
   /**
@@ -65,23 +79,365 @@ public class Digest {
   }
 
   public static String sha256(String value) {
-    if (value == null) return null;
-    return Encoder.toBase16(digestToBytes(value, DigestHash.SHA_256));
+    return digest(value, DigestHash.SHA_256, Encoding.BASE16);
   }
 
   private static String digestToBase64(String value, DigestHash algorithm) {
-    if (value == null) return null;
-    return Encoder.toBase64(digestToBytes(value, algorithm));
+    return digest(value, algorithm, Encoding.BASE64);
   }
 
   private static byte[] digestToBytes(String value, DigestHash algorithm) {
     if (value == null) return null;
-    return getDigest(algorithm).digest(value.getBytes(StandardCharsets.UTF_8));
+    return digest(value, algorithm);
+  }
+
+  /**
+   * Digest the UTF-8 encoding of the characters. The characters are encoded in fixed-size chunks
+   * straight into the digest, so no full byte copy of the value is made. The result is identical to
+   * digesting {@code value.toString().getBytes(StandardCharsets.UTF_8)}.
+   *
+   * @param value     the characters, for example a String or StringBuilder
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @return the digest value, null if input is null
+   */
+  public static byte[] digest(CharSequence value, DigestHash algorithm) {
+    if (value == null) return null;
+    var md = borrowPlainDigest(algorithm);
+    try {
+      DigestIO.feed(value, DigestIO.Sink.of(md));
+      return md.digest();
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  /**
+   * Same as {@link #digest(CharSequence, DigestHash)} with the result encoded by {@link Encoder}.
+   * The digest is written to a pooled buffer and encoded from there, so the String is the only allocation.
+   */
+  public static String digest(CharSequence value, DigestHash algorithm, Encoding encoding) {
+    if (value == null) return null;
+    var md = borrowPlainDigest(algorithm);
+    try {
+      DigestIO.feed(value, DigestIO.Sink.of(md));
+      return finishEncoded(md, encoding);
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  /**
+   * Completes the digest and encodes it without an intermediate digest array, same output as
+   * {@link Encoder#encode(byte[], Encoding)} of {@link MessageDigest#digest()}.
+   */
+  static String finishEncoded(MessageDigest md, Encoding encoding) {
+    int length = md.getDigestLength();
+    if (length == 0 || length > MAX_DIGEST_LENGTH) return Encoder.encode(md.digest(), encoding);
+    byte[] scratch = ENCODE_SCRATCH.borrow();
+    try {
+      md.digest(scratch, 0, length);
+      return BaseCodec.encodeToString(scratch, 0, length, encoding, scratch, MAX_DIGEST_LENGTH);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      ENCODE_SCRATCH.release(scratch);
+    }
+  }
+
+  static byte[] digestToBytes(byte[] value, DigestHash algorithm) {
+    var md = DigestPool.borrowDigest(algorithm);
+    try {
+      return md.digest(value);
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  /**
+   * Digest everything remaining in the input stream. The stream is read to the end but not closed.
+   * Memory use is bounded by a pooled read buffer regardless of the stream length.
+   *
+   * @param in        the input stream
+   * @param algorithm a plain digest algorithm, not an HMAC one (see {@link HmacSigner} for those)
+   * @return the digest value, null if input is null
+   * @throws IOException if reading the stream fails
+   */
+  public static byte[] digest(InputStream in, DigestHash algorithm) throws IOException {
+    if (in == null) return null;
+    return digestSource(DigestIO.of(in), algorithm);
+  }
+
+  /**
+   * Digest everything remaining in the channel. The channel is read to the end but not closed.
+   * File channels of 1 MiB or more are memory mapped in windows, others are read through a pooled
+   * direct buffer.
+   *
+   * @param channel   the channel to read from
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @return the digest value, null if input is null
+   * @throws IOException if reading the channel fails
+   */
+  public static byte[] digest(ReadableByteChannel channel, DigestHash algorithm) throws IOException {
+    if (channel == null) return null;
+    return digestSource(DigestIO.of(channel), algorithm);
+  }
+
+  /**
+   * Digest the remaining bytes of the buffer. The buffer's position is not changed.
+   *
+   * @param buffer    the buffer, heap, direct or mapped
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @return the digest value, null if input is null
+   */
+  public static byte[] digest(ByteBuffer buffer, DigestHash algorithm) {
+    if (buffer == null) return null;
+    var md = borrowPlainDigest(algorithm);
+    try {
+      md.update(buffer.duplicate());
+      return md.digest();
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  /**
+   * Digest the content of a file. Files of 1 MiB or more are memory mapped in windows, smaller ones
+   * are read through a pooled direct buffer, so memory use stays flat for any file size.
+   *
+   * @param path      the file to digest
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @return the digest value, null if input is null
+   * @throws IOException if the file cannot be read
+   */
+  public static byte[] digest(Path path, DigestHash algorithm) throws IOException {
+    if (path == null) return null;
+    return digestSource(DigestIO.of(path), algorithm);
+  }
+
+  /**
+   * Same as {@link #digest(InputStream, DigestHash)} with the result encoded by {@link Encoder}.
+   */
+  public static String digest(InputStream in, DigestHash algorithm, Encoding encoding) throws IOException {
+    if (in == null) return null;
+    return digestSource(DigestIO.of(in), algorithm, encoding);
+  }
+
+  /**
+   * Same as {@link #digest(ReadableByteChannel, DigestHash)} with the result encoded by {@link Encoder}.
+   */
+  public static String digest(ReadableByteChannel channel, DigestHash algorithm, Encoding encoding) throws IOException {
+    if (channel == null) return null;
+    return digestSource(DigestIO.of(channel), algorithm, encoding);
+  }
+
+  /**
+   * Same as {@link #digest(ByteBuffer, DigestHash)} with the result encoded by {@link Encoder}.
+   */
+  public static String digest(ByteBuffer buffer, DigestHash algorithm, Encoding encoding) {
+    if (buffer == null) return null;
+    var md = borrowPlainDigest(algorithm);
+    try {
+      md.update(buffer.duplicate());
+      return finishEncoded(md, encoding);
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  /**
+   * Same as {@link #digest(Path, DigestHash)} with the result encoded by {@link Encoder}.
+   */
+  public static String digest(Path path, DigestHash algorithm, Encoding encoding) throws IOException {
+    if (path == null) return null;
+    return digestSource(DigestIO.of(path), algorithm, encoding);
+  }
+
+  /**
+   * Start an incremental digest, for example to build a cache key from several fields without
+   * concatenating them into a String first.
+   *
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @return a new builder, finished by one of its {@code to...} methods
+   */
+  public static DigestBuilder builder(DigestHash algorithm) {
+    return new DigestBuilder(algorithm);
+  }
+
+  /**
+   * Create a password hasher using PBKDF2 with HMAC-SHA-256 and
+   * {@value PasswordHasher#DEFAULT_PBKDF2_ITERATIONS} iterations.
+   */
+  public static PasswordHasher passwordHasher() {
+    return pbkdf2(DigestHash.HMAC_SHA_256, PasswordHasher.DEFAULT_PBKDF2_ITERATIONS);
+  }
+
+  /**
+   * Create a PBKDF2 password hasher.
+   *
+   * @param algorithm  an HMAC algorithm such as {@link DigestHash#HMAC_SHA_256}
+   * @param iterations the work factor, at most 10 million
+   */
+  public static PasswordHasher pbkdf2(DigestHash algorithm, int iterations) {
+    return PasswordHasher.pbkdf2(algorithm, iterations);
+  }
+
+  /**
+   * Create a scrypt password hasher. It needs {@code 128 * r * 2^logN} bytes of memory per hash,
+   * at most 1 GiB.
+   *
+   * @param logN the base 2 logarithm of the CPU/memory cost N
+   * @param r    the block size, usually 8
+   * @param p    the parallelization, usually 1
+   */
+  public static PasswordHasher scrypt(int logN, int r, int p) {
+    return PasswordHasher.scrypt(logN, r, p);
+  }
+
+  /**
+   * Create an empty consistent hashing ring for shard routing, see {@link HashRing}.
+   *
+   * @param algorithm    a plain digest algorithm used to place the nodes on the ring
+   * @param virtualNodes the default number of points per node, 100 to 200 gives an even spread
+   */
+  public static HashRing hashRing(DigestHash algorithm, int virtualNodes) {
+    return new HashRing(algorithm, virtualNodes);
+  }
+
+  /**
+   * Create an empty rendezvous hashing router for shard routing, see {@link RendezvousHash}.
+   *
+   * @param algorithm a plain digest algorithm used to seed the nodes
+   */
+  public static RendezvousHash rendezvous(DigestHash algorithm) {
+    return new RendezvousHash(algorithm);
+  }
+
+  /**
+   * Create a bounded cache of encoded digests for inputs that repeat, see {@link DigestCache}.
+   *
+   * @param maximumSize the maximum number of cached entries
+   */
+  public static DigestCache cache(int maximumSize) {
+    return new DigestCache(maximumSize);
+  }
+
+  /**
+   * Create a parallel Merkle tree hash with {@link TreeHash#DEFAULT_CHUNK_SIZE} chunks,
+   * running on the common {@link ForkJoinPool}.
+   *
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   */
+  public static TreeHash treeHash(DigestHash algorithm) {
+    return treeHash(algorithm, TreeHash.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Create a parallel Merkle tree hash running on the common {@link ForkJoinPool}.
+   *
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @param chunkSize the number of bytes hashed per leaf
+   */
+  public static TreeHash treeHash(DigestHash algorithm, int chunkSize) {
+    return new TreeHash(algorithm, chunkSize, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Digest every value and pack the results back to back into one array, so the digest of value
+   * {@code i} is at offset {@code i * length} where length is the digest length of the algorithm.
+   * The values are split across the common {@link ForkJoinPool}, each worker using its own digest.
+   *
+   * @param values    the values to digest, UTF-8 encoded, none of them may be null
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @return the packed digest values, null if input is null
+   * @throws NullPointerException if any value is null
+   * @throws ArithmeticException  if the packed result would not fit in a single array
+   */
+  public static byte[] digestAll(List<? extends CharSequence> values, DigestHash algorithm) {
+    return digestAll(values, algorithm, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Same as {@link #digestAll(List, DigestHash)} running on the given pool.
+   */
+  public static byte[] digestAll(List<? extends CharSequence> values, DigestHash algorithm, ForkJoinPool pool) {
+    if (values == null) return null;
+    var md = borrowPlainDigest(algorithm);
+    int length = md.getDigestLength();
+    DigestPool.releaseDigest(algorithm, md);
+    var packed = new byte[Math.multiplyExact(values.size(), length)];
+    pool.invoke(BulkDigest.packed(randomAccess(values), algorithm, packed, length));
+    return packed;
+  }
+
+  /**
+   * Digest every value and encode each result, in parallel on the common {@link ForkJoinPool}.
+   *
+   * @param values    the values to digest, UTF-8 encoded, none of them may be null
+   * @param algorithm a plain digest algorithm, not an HMAC one
+   * @param encoding  the encoding of each result
+   * @return the encoded digests in the order of the input, null if input is null
+   * @throws NullPointerException if any value is null
+   */
+  public static List<String> digestAll(List<? extends CharSequence> values, DigestHash algorithm, Encoding encoding) {
+    return digestAll(values, algorithm, encoding, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Same as {@link #digestAll(List, DigestHash, Encoding)} running on the given pool.
+   */
+  public static List<String> digestAll(List<? extends CharSequence> values, DigestHash algorithm,
+                                       Encoding encoding, ForkJoinPool pool) {
+    if (values == null) return null;
+    requirePlain(algorithm);
+    var encoded = new String[values.size()];
+    pool.invoke(BulkDigest.encoded(randomAccess(values), algorithm, encoding, encoded));
+    return Arrays.asList(encoded);
+  }
+
+  private static <T> List<T> randomAccess(List<T> values) {
+    return values instanceof RandomAccess ? values : new ArrayList<>(values);
+  }
+
+  private static byte[] digestSource(DigestIO.Source source, DigestHash algorithm) throws IOException {
+    var md = borrowPlainDigest(algorithm);
+    try {
+      source.feed(DigestIO.Sink.of(md));
+      return md.digest();
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  private static String digestSource(DigestIO.Source source, DigestHash algorithm, Encoding encoding)
+    throws IOException {
+    var md = borrowPlainDigest(algorithm);
+    try {
+      source.feed(DigestIO.Sink.of(md));
+      return finishEncoded(md, encoding);
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  private static MessageDigest borrowPlainDigest(DigestHash algorithm) {
+    requirePlain(algorithm);
+    return DigestPool.borrowDigest(algorithm);
+  }
+
+  private static void requirePlain(DigestHash algorithm) {
+    if (algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " needs a key, use Digest.hmacSigner instead");
+    }
   }
 
+  /**
+   * Creates a new, unpooled {@link MessageDigest} for the given algorithm from the provider chosen by
+   * {@link DigestProviders}.
+   * Hot paths should borrow from {@link DigestPool} instead.
+   */
   static MessageDigest getDigest(DigestHash hashAlgo) {
     try {
-      return MessageDigest.getInstance(hashAlgo.toString());
+      return DigestProviders.newDigest(hashAlgo);
     } catch (NoSuchAlgorithmException e) {
       throw new RuntimeException(e);
     }
@@ -94,16 +450,19 @@ public class Digest {
                    algorithm);
   }
 
-  private static byte[] hmacSHA(byte[] data, byte[] key, DigestHash algorithm) {
+  static byte[] hmacSHA(byte[] data, byte[] key, DigestHash algorithm) {
     if (data == null || key == null) return null;
+    Mac mac = DigestPool.borrowMac(algorithm);
     try {
-      Mac           mac           = Mac.getInstance(algorithm.toString());
       SecretKeySpec secretKeySpec = new SecretKeySpec(key, algorithm.toString());
       mac.init(secretKeySpec);
       return mac.doFinal(data);
-    } catch (NoSuchAlgorithmException | java.security.InvalidKeyException e) {
+    } catch (java.security.InvalidKeyException e) {
       log.error("HMAC computation failed", e);
       throw new RuntimeException("HMAC computation failed", e);
+    } finally {
+      mac.reset();
+      DigestPool.releaseMac(algorithm, mac);
     }
   }
 
@@ -116,7 +475,7 @@ public class Digest {
    */
   public static String hmacSha256Hex(String data, String key) {
     byte[] hmac = hmacSHA(data, key, DigestHash.HMAC_SHA_256);
-    return hmac != null ? BaseEncoding.base16().encode(hmac) : null;
+    return hmac != null ? Encoder.encodeToString(hmac, Encoding.BASE16, true) : null;
   }
 
   /**
@@ -128,7 +487,7 @@ public class Digest {
    */
   public static String hmacSha256Hex(byte[] data, byte[] key) {
     byte[] hmac = hmacSHA(data, key, DigestHash.HMAC_SHA_256);
-    return hmac != null ? BaseEncoding.base16().encode(hmac) : null;
+    return hmac != null ? Encoder.encodeToString(hmac, Encoding.BASE16, true) : null;
   }
 
   /**
@@ -153,6 +512,76 @@ public class Digest {
     return hmacSHA(data, key, DigestHash.HMAC_SHA_256);
   }
 
+  /**
+   * Create a reusable, thread-safe HMAC signer for the given key. Prefer this over the static
+   * hmac methods when the same key signs many messages, as the key setup is done only once.
+   *
+   * @param key       the key for HMAC, StandardCharsets.UTF_8 is used
+   * @param algorithm an HMAC algorithm such as {@link DigestHash#HMAC_SHA_256}
+   * @return a signer bound to the key
+   * @throws IllegalArgumentException if the key is empty or the algorithm is not an HMAC algorithm
+   * @throws NullPointerException     if key or algorithm is null
+   */
+  public static HmacSigner hmacSigner(String key, DigestHash algorithm) {
+    return hmacSigner(key.getBytes(StandardCharsets.UTF_8), algorithm);
+  }
+
+  /**
+   * Create a reusable, thread-safe HMAC signer for the given key.
+   *
+   * @param key       the key for HMAC as bytes
+   * @param algorithm an HMAC algorithm such as {@link DigestHash#HMAC_SHA_256}
+   * @return a signer bound to the key
+   * @throws IllegalArgumentException if the key is empty or the algorithm is not an HMAC algorithm
+   * @throws NullPointerException     if key or algorithm is null
+   */
+  public static HmacSigner hmacSigner(byte[] key, DigestHash algorithm) {
+    return new HmacSigner(key, algorithm);
+  }
+
+  /**
+   * Check an encoded HMAC signature without building the computed signature as a String.
+   * The comparison is constant time. When the same key verifies many messages,
+   * {@link HmacSigner#verify(String, CharSequence, Encoding)} also skips the key setup.
+   *
+   * @param data            the signed data, StandardCharsets.UTF_8 is used
+   * @param key             the key for HMAC, StandardCharsets.UTF_8 is used
+   * @param expectedEncoded the signature to check
+   * @param algorithm       an HMAC algorithm such as {@link DigestHash#HMAC_SHA_256}
+   * @param encoding        the encoding of the expected signature, hex is accepted in either case
+   * @return true if the signature matches, false if it does not, is malformed or any input is null
+   * @throws IllegalArgumentException if the algorithm is not an HMAC algorithm
+   */
+  public static boolean verifyHmac(String data, String key, CharSequence expectedEncoded,
+                                   DigestHash algorithm, Encoding encoding) {
+    return verifyHmac(data == null ? null : data.getBytes(StandardCharsets.UTF_8),
+                      key == null ? null : key.getBytes(StandardCharsets.UTF_8),
+                      expectedEncoded, algorithm, encoding);
+  }
+
+  /**
+   * Same as {@link #verifyHmac(String, String, CharSequence, DigestHash, Encoding)} for raw data and key.
+   */
+  public static boolean verifyHmac(byte[] data, byte[] key, CharSequence expectedEncoded,
+                                   DigestHash algorithm, Encoding encoding) {
+    if (!algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " is not an HMAC algorithm");
+    }
+    if (data == null || key == null || expectedEncoded == null) return false;
+    Mac mac = DigestPool.borrowMac(algorithm);
+    try {
+      mac.init(new SecretKeySpec(key, algorithm.toString()));
+      mac.update(data);
+      return HmacSigner.finishAndVerify(mac, expectedEncoded, encoding);
+    } catch (java.security.InvalidKeyException e) {
+      log.error("HMAC computation failed", e);
+      throw new RuntimeException("HMAC computation failed", e);
+    } finally {
+      mac.reset();
+      DigestPool.releaseMac(algorithm, mac);
+    }
+  }
+
   public static String hmacSha384(String data, String key) {
     byte[] hmac = hmacSHA(data, key, DigestHash.HMAC_SHA_384);
     return hmac != null ? Encoder.toBase64(hmac) : null;
@@ -0,0 +1,167 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Builds a digest from several parts without concatenating them into an intermediate String.
+ * <p>
+ * Text is fed as UTF-8 in chunks, numbers as big-endian bytes. Plain {@code update} calls are
+ * concatenated, so {@code update("ab").update("c")} equals {@code update("a").update("bc")}. Use the
+ * {@code field} methods for composite keys; they prefix each value with its length, so values can't
+ * bleed into each other and a null field differs from an empty one.
+ * <pre>
+ * String key = Digest.builder(DigestHash.SHA_256)
+ *                    .field(tenantId)
+ *                    .field(email)
+ *                    .update(version)
+ *                    .toBase64();
+ * </pre>
+ * A builder is not thread-safe and is finished by exactly one of the {@code to...} methods,
+ * after which it can't be used again.
+ */
+public final class DigestBuilder {
+
+  private final DigestHash    algorithm;
+  private final byte[]        scratch = new byte[Long.BYTES];
+  private       MessageDigest md;
+  private       DigestIO.Sink sink;
+
+  DigestBuilder(DigestHash algorithm) {
+    if (algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " needs a key, use Digest.hmacSigner instead");
+    }
+    this.algorithm = algorithm;
+    this.md        = DigestPool.borrowDigest(algorithm);
+    this.sink      = DigestIO.Sink.of(md);
+  }
+
+  public DigestBuilder update(byte[] bytes) {
+    return update(bytes, 0, bytes.length);
+  }
+
+  public DigestBuilder update(byte[] bytes, int offset, int length) {
+    digest().update(bytes, offset, length);
+    return this;
+  }
+
+  /**
+   * Adds the remaining bytes of the buffer and moves its position to the limit.
+   */
+  public DigestBuilder update(ByteBuffer buffer) {
+    digest().update(buffer);
+    return this;
+  }
+
+  /**
+   * Adds the UTF-8 encoding of the characters.
+   */
+  public DigestBuilder update(CharSequence value) {
+    digest();
+    DigestIO.feed(value, sink);
+    return this;
+  }
+
+  /**
+   * Adds the 8 big-endian bytes of the value.
+   */
+  public DigestBuilder update(long value) {
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      scratch[i] = (byte) value;
+      value >>>= 8;
+    }
+    digest().update(scratch, 0, Long.BYTES);
+    return this;
+  }
+
+  /**
+   * Adds the 4 big-endian bytes of the value.
+   */
+  public DigestBuilder update(int value) {
+    for (int i = Integer.BYTES - 1; i >= 0; i--) {
+      scratch[i] = (byte) value;
+      value >>>= 8;
+    }
+    digest().update(scratch, 0, Integer.BYTES);
+    return this;
+  }
+
+  /**
+   * Adds the UTF-8 length of the value as 4 big-endian bytes followed by its UTF-8 encoding.
+   * A null value is written as length -1.
+   */
+  public DigestBuilder field(CharSequence value) {
+    if (value == null) return update(-1);
+    update(DigestIO.utf8Length(value));
+    return update(value);
+  }
+
+  /**
+   * Adds the length of the value as 4 big-endian bytes followed by the bytes.
+   * A null value is written as length -1.
+   */
+  public DigestBuilder field(byte[] value) {
+    if (value == null) return update(-1);
+    update(value.length);
+    return update(value);
+  }
+
+  /**
+   * Finishes the builder.
+   *
+   * @return the digest value
+   */
+  public byte[] toBytes() {
+    var digest = digest();
+    try {
+      return digest.digest();
+    } finally {
+      DigestPool.releaseDigest(algorithm, digest);
+      md   = null;
+      sink = null;
+    }
+  }
+
+  /**
+   * Finishes the builder, see {@link Encoder#toBase16(byte[])}.
+   */
+  public String toHex() {
+    return to(Encoding.BASE16);
+  }
+
+  /**
+   * Finishes the builder, see {@link Encoder#toBase32(byte[])}.
+   */
+  public String toBase32() {
+    return to(Encoding.BASE32);
+  }
+
+  /**
+   * Finishes the builder, see {@link Encoder#toBase64(byte[])}.
+   */
+  public String toBase64() {
+    return to(Encoding.BASE64);
+  }
+
+  /**
+   * Finishes the builder, see {@link Encoder#encode(byte[], Encoding)}.
+   */
+  public String to(Encoding encoding) {
+    var digest = digest();
+    try {
+      return Digest.finishEncoded(digest, encoding);
+    } finally {
+      DigestPool.releaseDigest(algorithm, digest);
+      md   = null;
+      sink = null;
+    }
+  }
+
+  private MessageDigest digest() {
+    if (md == null) throw new IllegalStateException("digest builder is already finished");
+    return md;
+  }
+}
@@ -0,0 +1,298 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of encoded digests for inputs that are hashed over and over, such as user emails,
+ * tenant ids or API keys.
+ * <p>
+ * Entries are keyed by algorithm, encoding and input. Eviction follows W-TinyLFU: new entries enter
+ * a small LRU window, and when the main area is full an entry leaving the window only replaces the
+ * main area's least recently used entry if a {@link FrequencySketch} has seen it more often. A burst of
+ * one-off inputs therefore can't flush the hot ones. Reads update the policy only when its lock is
+ * free, so lookups never wait on each other.
+ * <p>
+ * HMAC entries are never keyed by the raw key. A String key is replaced by a SHA-256 of the key
+ * salted with a random value per cache, so the key can't be read back from a heap dump and two caches
+ * don't share fingerprints. The fingerprint costs one digest per lookup; signers passed to
+ * {@link #hmac(HmacSigner, String, Encoding)} are used as the key directly and cost nothing extra.
+ * <p>
+ * Create one with {@link Digest#cache(int)}. Instances are thread-safe.
+ */
+public final class DigestCache {
+
+  private static final int WINDOW    = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private final ConcurrentHashMap<Key, Node> data      = new ConcurrentHashMap<>();
+  private final ReentrantLock                lock      = new ReentrantLock();
+  private final Node[]                       queues    = {new Node(null, null), new Node(null, null), new Node(null, null)};
+  private final int[]                        sizes     = new int[3];
+  private final byte[]                       salt      = new byte[32];
+  private final LongAdder                    hits      = new LongAdder();
+  private final LongAdder                    misses    = new LongAdder();
+  private final LongAdder                    evictions = new LongAdder();
+  private final FrequencySketch              sketch;
+  private final int                          maximumSize;
+  private final int                          windowMaximum;
+  private final int                          protectedMaximum;
+
+  DigestCache(int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize must be positive");
+    }
+    this.maximumSize      = maximumSize;
+    this.windowMaximum    = Math.max(1, maximumSize / 100);
+    this.protectedMaximum = (int) ((maximumSize - windowMaximum) * 0.8);
+    this.sketch           = new FrequencySketch(maximumSize);
+    for (Node head : queues) {
+      head.prev = head;
+      head.next = head;
+    }
+    new SecureRandom().nextBytes(salt);
+  }
+
+  /**
+   * Cached {@link Digest#digest(CharSequence, DigestHash, Encoding)}.
+   *
+   * @return the encoded digest, null if input is null
+   */
+  public String digest(CharSequence value, DigestHash algorithm, Encoding encoding) {
+    if (value == null) return null;
+    var input = value.toString();
+    return get(new Key(algorithm, encoding, false, null, input), () -> Digest.digest(input, algorithm, encoding));
+  }
+
+  /**
+   * Cached {@link Digest#base64Sha256(String)}.
+   */
+  public String base64Sha256(String value) {
+    return digest(value, DigestHash.SHA_256, Encoding.BASE64);
+  }
+
+  /**
+   * Cached {@link Digest#sha256(String)}.
+   */
+  public String sha256(String value) {
+    return digest(value, DigestHash.SHA_256, Encoding.BASE16);
+  }
+
+  /**
+   * Cached HMAC of the data, keyed by a salted fingerprint of the key rather than the key itself.
+   * Hex is lower case, as produced by {@link Encoder#encode(byte[], Encoding)}, use
+   * {@link #hmacSha256Hex(String, String)} in place of {@link Digest#hmacSha256Hex(String, String)}.
+   *
+   * @param data      the input data, StandardCharsets.UTF_8 is used
+   * @param key       the key for HMAC, StandardCharsets.UTF_8 is used
+   * @param algorithm an HMAC algorithm such as {@link DigestHash#HMAC_SHA_256}
+   * @return the encoded HMAC value, null if either input is null
+   */
+  public String hmac(String data, String key, DigestHash algorithm, Encoding encoding) {
+    return hmac(data, key, algorithm, encoding, false);
+  }
+
+  /**
+   * Cached {@link Digest#hmacSha256Hex(String, String)}, upper case hex like the uncached one.
+   *
+   * @return hexadecimal encoded HMAC value, null if either input is null
+   */
+  public String hmacSha256Hex(String data, String key) {
+    return hmac(data, key, DigestHash.HMAC_SHA_256, Encoding.BASE16, true);
+  }
+
+  /**
+   * Cached HMAC of the data with the signer's key. Entries hold a reference to the signer, not its key.
+   *
+   * @return the encoded HMAC value, null if data is null
+   */
+  public String hmac(HmacSigner signer, String data, Encoding encoding) {
+    if (data == null) return null;
+    return get(new Key(signer.algorithm(), encoding, false, signer, data),
+               () -> Encoder.encode(signer.sign(data), encoding));
+  }
+
+  private String hmac(String data, String key, DigestHash algorithm, Encoding encoding, boolean upperCase) {
+    if (data == null || key == null) return null;
+    if (!algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " is not an HMAC algorithm");
+    }
+    var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    return get(new Key(algorithm, encoding, upperCase, fingerprint(keyBytes), data), () -> {
+      var hmac = Digest.hmacSHA(data.getBytes(StandardCharsets.UTF_8), keyBytes, algorithm);
+      return upperCase ? Encoder.encodeToString(hmac, encoding, true) : Encoder.encode(hmac, encoding);
+    });
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return the fraction of lookups that were hits, 1.0 if there were none
+   */
+  public double hitRate() {
+    long h     = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 1.0 : (double) h / total;
+  }
+
+  public int maximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * @return the number of cached entries, briefly above the maximum while an insert is evicting
+   */
+  public int size() {
+    return data.size();
+  }
+
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      data.clear();
+      for (Node head : queues) {
+        while (head.next != head) {
+          unlink(head.next);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private String get(Key key, Supplier<String> compute) {
+    var node = data.get(key);
+    if (node != null) {
+      hits.increment();
+      if (lock.tryLock()) {
+        try {
+          onAccess(node);
+        } finally {
+          lock.unlock();
+        }
+      }
+      return node.value;
+    }
+    misses.increment();
+    var created  = new Node(key, compute.get());
+    var existing = data.putIfAbsent(key, created);
+    if (existing != null) return existing.value;
+    lock.lock();
+    try {
+      onInsert(created);
+    } finally {
+      lock.unlock();
+    }
+    return created.value;
+  }
+
+  private String fingerprint(byte[] key) {
+    return Digest.builder(DigestHash.SHA_256).update(salt).update(key).toBase64();
+  }
+
+  private void onAccess(Node node) {
+    sketch.increment(node.key.hashCode());
+    if (node.queue < 0) return;
+    if (node.queue == PROBATION) {
+      unlink(node);
+      append(PROTECTED, node);
+      while (sizes[PROTECTED] > protectedMaximum) {
+        var demoted = queues[PROTECTED].next;
+        unlink(demoted);
+        append(PROBATION, demoted);
+      }
+    } else {
+      int queue = node.queue;
+      unlink(node);
+      append(queue, node);
+    }
+  }
+
+  private void onInsert(Node node) {
+    if (data.get(node.key) != node) return;
+    sketch.increment(node.key.hashCode());
+    append(WINDOW, node);
+    while (sizes[WINDOW] > windowMaximum) {
+      var candidate = queues[WINDOW].next;
+      unlink(candidate);
+      append(PROBATION, candidate);
+    }
+    while (sizes[WINDOW] + sizes[PROBATION] + sizes[PROTECTED] > maximumSize) {
+      evictOne();
+    }
+  }
+
+  /**
+   * The newest probation entry is the candidate that just left the window, the oldest is the victim.
+   * The one the sketch has seen less often is evicted.
+   */
+  private void evictOne() {
+    var  probation = queues[PROBATION];
+    Node victim    = probation.next;
+    Node candidate = probation.prev;
+    if (victim == probation) {
+      victim = queues[PROTECTED].next != queues[PROTECTED] ? queues[PROTECTED].next : queues[WINDOW].next;
+    } else if (candidate != victim
+               && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+      victim = candidate;
+    }
+    unlink(victim);
+    data.remove(victim.key, victim);
+    evictions.increment();
+  }
+
+  private void append(int queue, Node node) {
+    var head = queues[queue];
+    node.prev      = head.prev;
+    node.next      = head;
+    head.prev.next = node;
+    head.prev      = node;
+    node.queue     = queue;
+    sizes[queue]++;
+  }
+
+  private void unlink(Node node) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev      = null;
+    node.next      = null;
+    sizes[node.queue]--;
+    node.queue = -1;
+  }
+
+  /**
+   * @param keyId null for plain digests, the key fingerprint or signer for HMACs
+   */
+  private record Key(DigestHash algorithm, Encoding encoding, boolean upperCase, Object keyId, String input) {}
+
+  private static final class Node {
+    private final Key    key;
+    private final String value;
+    private       Node   prev;
+    private       Node   next;
+    private       int    queue = -1;
+
+    Node(Key key, String value) {
+      this.key   = key;
+      this.value = value;
+    }
+  }
+}
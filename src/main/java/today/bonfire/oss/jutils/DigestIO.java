@@ -0,0 +1,218 @@
+package today.bonfire.oss.jutils;
+
+import javax.crypto.Mac;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Feeds streams, channels, buffers, files and character sequences into a digest or MAC with bounded memory.
+ * <p>
+ * Files at or above {@link #MAP_THRESHOLD} are read through {@link FileChannel#map} windows of at most
+ * {@link #MAP_WINDOW} bytes, everything else goes through pooled {@link #BUFFER_SIZE} buffers, so
+ * memory use does not depend on the input size.
+ */
+final class DigestIO {
+
+  static final int  BUFFER_SIZE   = 64 * 1024;
+  static final long MAP_THRESHOLD = 1024 * 1024;
+  static final long MAP_WINDOW    = 64L * 1024 * 1024;
+
+  private static final StripedPool<ByteBuffer> DIRECT_BUFFERS =
+    new StripedPool<>(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+  private static final StripedPool<byte[]>     HEAP_BUFFERS   =
+    new StripedPool<>(() -> new byte[BUFFER_SIZE]);
+
+  private DigestIO() {}
+
+  /**
+   * The common update surface of {@link MessageDigest} and {@link Mac}.
+   */
+  interface Sink {
+    void update(byte[] bytes, int offset, int length);
+
+    void update(ByteBuffer buffer);
+
+    static Sink of(MessageDigest md) {
+      return new Sink() {
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+          md.update(bytes, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+          md.update(buffer);
+        }
+      };
+    }
+
+    static Sink of(Mac mac) {
+      return new Sink() {
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+          mac.update(bytes, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+          mac.update(buffer);
+        }
+      };
+    }
+  }
+
+  /**
+   * Something that pushes its content into a {@link Sink}.
+   */
+  @FunctionalInterface
+  interface Source {
+    void feed(Sink sink) throws IOException;
+  }
+
+  static Source of(InputStream in) {
+    return sink -> {
+      byte[] buffer = HEAP_BUFFERS.borrow();
+      try {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          sink.update(buffer, 0, read);
+        }
+      } finally {
+        HEAP_BUFFERS.release(buffer);
+      }
+    };
+  }
+
+  static Source of(ReadableByteChannel channel) {
+    if (channel instanceof FileChannel fc) {
+      return sink -> {
+        long position = fc.position();
+        long size     = fc.size() - position;
+        if (size >= MAP_THRESHOLD) {
+          feedMapped(sink, fc, position, size);
+          fc.position(position + size);
+        } else {
+          feedBuffered(sink, fc);
+        }
+      };
+    }
+    return sink -> feedBuffered(sink, channel);
+  }
+
+  /**
+   * The remaining bytes of the buffer are fed, its position is left unchanged.
+   */
+  static Source of(ByteBuffer buffer) {
+    return sink -> sink.update(buffer.duplicate());
+  }
+
+  static Source of(Path path) {
+    return sink -> {
+      try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        of(channel).feed(sink);
+      }
+    };
+  }
+
+  /**
+   * Encodes the characters as UTF-8 in {@link #BUFFER_SIZE} chunks straight into the sink, without
+   * building a full byte copy. The output is identical to {@code toString().getBytes(UTF_8)}, including
+   * the {@code '?'} replacement of unpaired surrogates.
+   */
+  static void feed(CharSequence value, Sink sink) {
+    byte[] buffer = HEAP_BUFFERS.borrow();
+    try {
+      int length = value.length();
+      int limit  = buffer.length - 4;
+      int pos    = 0;
+      int i      = 0;
+      while (i < length) {
+        // ASCII fast path, runs until the chunk is full or a multibyte char shows up
+        int asciiEnd = Math.min(length, i + limit - pos);
+        while (i < asciiEnd) {
+          char c = value.charAt(i);
+          if (c >= 0x80) break;
+          buffer[pos++] = (byte) c;
+          i++;
+        }
+        if (i < length && pos < limit) {
+          char c = value.charAt(i++);
+          if (c < 0x80) {
+            buffer[pos++] = (byte) c;
+          } else if (c < 0x800) {
+            buffer[pos++] = (byte) (0xC0 | (c >> 6));
+            buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+          } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(value.charAt(i))) {
+            int cp = Character.toCodePoint(c, value.charAt(i++));
+            buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+            buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+          } else if (Character.isSurrogate(c)) {
+            buffer[pos++] = '?';
+          } else {
+            buffer[pos++] = (byte) (0xE0 | (c >> 12));
+            buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+          }
+        }
+        if (pos >= limit) {
+          sink.update(buffer, 0, pos);
+          pos = 0;
+        }
+      }
+      if (pos > 0) sink.update(buffer, 0, pos);
+    } finally {
+      HEAP_BUFFERS.release(buffer);
+    }
+  }
+
+  /**
+   * @return the number of bytes {@link #feed(CharSequence, Sink)} produces for the value
+   */
+  static int utf8Length(CharSequence value) {
+    int length = value.length();
+    int bytes  = length;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) continue;
+      if (c < 0x800) {
+        bytes += 1;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        bytes += 2;
+        i++;
+      } else if (!Character.isSurrogate(c)) {
+        bytes += 2;
+      }
+    }
+    return bytes;
+  }
+
+  private static void feedBuffered(Sink sink, ReadableByteChannel channel) throws IOException {
+    ByteBuffer buffer = DIRECT_BUFFERS.borrow();
+    try {
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        sink.update(buffer);
+        buffer.clear();
+      }
+    } finally {
+      buffer.clear();
+      DIRECT_BUFFERS.release(buffer);
+    }
+  }
+
+  private static void feedMapped(Sink sink, FileChannel channel, long position, long size) throws IOException {
+    long end = position + size;
+    for (long offset = position; offset < end; offset += MAP_WINDOW) {
+      long window = Math.min(MAP_WINDOW, end - offset);
+      sink.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, window));
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import javax.crypto.Mac;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Per {@link DigestHash} pools of {@link MessageDigest} and {@link Mac} instances.
+ * Avoids the JCA provider lookup done by {@code getInstance} on every call. New instances are cloned
+ * from a prototype when the provider supports it, which is cheaper than another lookup.
+ * Instances come from the provider chosen by {@link DigestProviders}. When that changes the pool is
+ * replaced, and instances borrowed before are dropped on release unless they come from the same provider,
+ * so a pin takes full effect once they are returned.
+ */
+final class DigestPool {
+
+  private static final AtomicReferenceArray<Pool<MessageDigest>> DIGESTS =
+    new AtomicReferenceArray<>(DigestHash.values().length);
+  private static final AtomicReferenceArray<Pool<Mac>>           MACS    =
+    new AtomicReferenceArray<>(DigestHash.values().length);
+
+  static {
+    for (DigestHash hash : DigestHash.values()) {
+      reset(hash);
+    }
+  }
+
+  private DigestPool() {}
+
+  /**
+   * Drops the pooled instances of the algorithm, new ones are created from the current provider.
+   */
+  static void reset(DigestHash hash) {
+    DIGESTS.set(hash.ordinal(), new Pool<>(() -> DigestProviders.newDigest(hash)));
+    MACS.set(hash.ordinal(), new Pool<>(() -> DigestProviders.newMac(hash)));
+  }
+
+  static MessageDigest borrowDigest(DigestHash hash) {
+    return DIGESTS.get(hash.ordinal()).borrow();
+  }
+
+  static void releaseDigest(DigestHash hash, MessageDigest digest) {
+    digest.reset();
+    DIGESTS.get(hash.ordinal()).release(digest, digest.getProvider());
+  }
+
+  /**
+   * Borrows an uninitialized or previously used {@link Mac}. Callers must call {@code init} before use.
+   */
+  static Mac borrowMac(DigestHash hash) {
+    return MACS.get(hash.ordinal()).borrow();
+  }
+
+  static void releaseMac(DigestHash hash, Mac mac) {
+    MACS.get(hash.ordinal()).release(mac, mac.getProvider());
+  }
+
+  @FunctionalInterface
+  private interface JcaFactory<T> {
+    T create() throws NoSuchAlgorithmException;
+  }
+
+  /**
+   * The pooled instances of one algorithm and the prototype they are created from.
+   */
+  private static final class Pool<T> {
+    private final Prototype<T>   prototype;
+    private final StripedPool<T> items;
+
+    Pool(JcaFactory<T> factory) {
+      this.prototype = new Prototype<>(factory);
+      this.items     = new StripedPool<>(prototype);
+    }
+
+    T borrow() {
+      return items.borrow();
+    }
+
+    /**
+     * Pools the instance if it comes from the provider of this pool's prototype. An instance from another
+     * provider was borrowed before the pool replaced the one it came from and is dropped.
+     */
+    void release(T item, Provider provider) {
+      if (provider == prototype.provider) items.release(item);
+    }
+  }
+
+  /**
+   * Lazily creates a prototype on first use and clones it afterwards, falling back to the factory
+   * when the provider does not support cloning.
+   */
+  private static final class Prototype<T> implements Supplier<T> {
+    private final    JcaFactory<T> factory;
+    private volatile T             prototype;
+    private volatile Provider      provider;
+    private volatile boolean       cloneable = true;
+
+    Prototype(JcaFactory<T> factory) {
+      this.factory = factory;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() {
+      try {
+        T p = prototype;
+        if (p == null) {
+          p         = factory.create();
+          provider  = p instanceof MessageDigest md ? md.getProvider() : ((Mac) p).getProvider();
+          prototype = p;
+        }
+        if (cloneable) {
+          try {
+            return p instanceof MessageDigest md ? (T) md.clone() : (T) ((Mac) p).clone();
+          } catch (CloneNotSupportedException e) {
+            cloneable = false;
+          }
+        }
+        return factory.create();
+      } catch (NoSuchAlgorithmException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
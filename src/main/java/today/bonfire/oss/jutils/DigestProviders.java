@@ -0,0 +1,198 @@
+package today.bonfire.oss.jutils;
+
+import lombok.extern.slf4j.Slf4j;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Chooses the JCA provider behind every {@link DigestHash}.
+ * <p>
+ * By default the highest priority provider is used, the same as {@code getInstance(algorithm)}.
+ * A provider can be pinned per algorithm with {@link #use(DigestHash, String)}, or picked by
+ * {@link #autoSelect()}, which times every registered provider of every algorithm on a short
+ * in-memory benchmark, pins the fastest and logs the results. SHA-2 and SHA-3 speeds differ a lot
+ * between providers and CPUs, so the choice is best made on the machine itself.
+ * <p>
+ * Both can also be set at startup with system properties, read the first time a digest is created:
+ * <ul>
+ *   <li>{@code jutils.digest.autoSelect=true} runs {@link #autoSelect()}</li>
+ *   <li>{@code jutils.digest.provider.<algorithm>=<provider>}, for example
+ *   {@code jutils.digest.provider.SHA3-256=BC}, pins a provider and takes precedence over auto selection</li>
+ * </ul>
+ * Pinning empties the pooled instances of that algorithm; instances in use at the time finish on the
+ * provider they were created with and are dropped when returned, so every later borrow gets the new one.
+ */
+@Slf4j
+public final class DigestProviders {
+
+  static final String AUTO_SELECT_PROPERTY     = "jutils.digest.autoSelect";
+  static final String PROVIDER_PROPERTY_PREFIX = "jutils.digest.provider.";
+
+  private static final Duration DEFAULT_BUDGET = Duration.ofMillis(40);
+  private static final int      BENCH_SIZE     = 16 * 1024;
+
+  private static final AtomicReferenceArray<Provider> PINNED = new AtomicReferenceArray<>(DigestHash.values().length);
+
+  static {
+    if (Boolean.getBoolean(AUTO_SELECT_PROPERTY)) {
+      autoSelect();
+    }
+    for (DigestHash hash : DigestHash.values()) {
+      var name = System.getProperty(PROVIDER_PROPERTY_PREFIX + hash);
+      if (name != null && !name.isBlank()) {
+        use(hash, name.trim());
+      }
+    }
+  }
+
+  private DigestProviders() {}
+
+  /**
+   * Pin a registered provider for the algorithm.
+   *
+   * @throws IllegalArgumentException if no provider with that name is registered or it does not
+   *                                  implement the algorithm
+   */
+  public static void use(DigestHash hash, String providerName) {
+    var provider = Security.getProvider(providerName);
+    if (provider == null) {
+      throw new IllegalArgumentException("no security provider named " + providerName);
+    }
+    use(hash, provider);
+  }
+
+  /**
+   * Pin a provider for the algorithm, it does not need to be registered.
+   *
+   * @throws IllegalArgumentException if the provider does not implement the algorithm
+   */
+  public static void use(DigestHash hash, Provider provider) {
+    if (provider.getService(serviceType(hash), hash.toString()) == null) {
+      throw new IllegalArgumentException(provider.getName() + " does not implement " + hash);
+    }
+    pin(hash, provider);
+  }
+
+  /**
+   * Go back to the default, highest priority provider for the algorithm.
+   */
+  public static void useDefault(DigestHash hash) {
+    pin(hash, null);
+  }
+
+  /**
+   * @return the pinned provider, null if the default one is used
+   */
+  public static Provider pinned(DigestHash hash) {
+    return PINNED.get(hash.ordinal());
+  }
+
+  /**
+   * Benchmark every registered provider of every algorithm for about 40 ms each and pin the fastest.
+   *
+   * @return the chosen provider name per algorithm
+   */
+  public static Map<DigestHash, String> autoSelect() {
+    return autoSelect(DEFAULT_BUDGET);
+  }
+
+  /**
+   * Same as {@link #autoSelect()} with the given time per provider and algorithm. Algorithms with a
+   * single provider are not timed.
+   *
+   * @return the chosen provider name per algorithm
+   */
+  public static Map<DigestHash, String> autoSelect(Duration budget) {
+    var chosen = new EnumMap<DigestHash, String>(DigestHash.class);
+    var data   = new byte[BENCH_SIZE];
+    for (DigestHash hash : DigestHash.values()) {
+      var providers = Security.getProviders(serviceType(hash) + "." + hash);
+      if (providers == null) continue;
+      Provider best = providers[0];
+      if (providers.length > 1) {
+        var  results  = new LinkedHashMap<String, Long>();
+        long bestRate = -1;
+        for (Provider provider : providers) {
+          long rate = bytesPerSecond(hash, provider, data, budget);
+          results.put(provider.getName(), rate >> 20);
+          if (rate > bestRate) {
+            bestRate = rate;
+            best     = provider;
+          }
+        }
+        log.info("{} providers in MiB/s: {}, using {}", hash, results, best.getName());
+      }
+      pin(hash, best);
+      chosen.put(hash, best.getName());
+    }
+    return Collections.unmodifiableMap(chosen);
+  }
+
+  static MessageDigest newDigest(DigestHash hash) throws NoSuchAlgorithmException {
+    var provider = PINNED.get(hash.ordinal());
+    return provider == null ? MessageDigest.getInstance(hash.toString())
+                            : MessageDigest.getInstance(hash.toString(), provider);
+  }
+
+  static Mac newMac(DigestHash hash) throws NoSuchAlgorithmException {
+    var provider = PINNED.get(hash.ordinal());
+    return provider == null ? Mac.getInstance(hash.toString()) : Mac.getInstance(hash.toString(), provider);
+  }
+
+  private static void pin(DigestHash hash, Provider provider) {
+    PINNED.set(hash.ordinal(), provider);
+    DigestPool.reset(hash);
+  }
+
+  private static String serviceType(DigestHash hash) {
+    return hash.isHmac() ? "Mac" : "MessageDigest";
+  }
+
+  /**
+   * Warms up for half the budget and measures for the other half.
+   *
+   * @return the measured throughput, -1 if the provider fails
+   */
+  private static long bytesPerSecond(DigestHash hash, Provider provider, byte[] data, Duration budget) {
+    try {
+      Runnable op;
+      if (hash.isHmac()) {
+        var mac = Mac.getInstance(hash.toString(), provider);
+        mac.init(new SecretKeySpec(new byte[32], hash.toString()));
+        op = () -> mac.doFinal(data);
+      } else {
+        var md = MessageDigest.getInstance(hash.toString(), provider);
+        op = () -> md.digest(data);
+      }
+      long half = budget.toNanos() / 2;
+      for (long end = System.nanoTime() + half; System.nanoTime() < end; ) {
+        op.run();
+      }
+      long count = 0;
+      long start = System.nanoTime();
+      long elapsed;
+      do {
+        op.run();
+        count++;
+        elapsed = System.nanoTime() - start;
+      } while (elapsed < half);
+      return (long) (count * (double) data.length * 1e9 / elapsed);
+    } catch (GeneralSecurityException | RuntimeException e) {
+      log.warn("{} benchmark failed on {}", hash, provider.getName(), e);
+      return -1;
+    }
+  }
+}
@@ -1,62 +1,106 @@
 package today.bonfire.oss.jutils;
 
-import com.google.common.io.BaseEncoding;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Cleaner;
 import org.jsoup.safety.Safelist;
+import today.bonfire.oss.jutils.constants.Encoding;
 
-import java.net.URLDecoder;
-import java.net.URLEncoder;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 
 public class Encoder {
 
-  private static final BaseEncoding   base16Encoding   = BaseEncoding.base16()
-                                                                     .lowerCase();
-  private static final Base64.Encoder base64UrlEncoder = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Encoder base64UrlEncoder  = Base64.getUrlEncoder().withoutPadding();
   private static final Base64.Decoder base64Decoder     = Base64.getUrlDecoder();
-  private static final Base64.Encoder base64Encoder    = Base64.getEncoder();
+  private static final Base64.Encoder base64Encoder     = Base64.getEncoder();
   private static final Base64.Encoder base64MimeEncoder = Base64.getMimeEncoder();
   private static final Base64.Decoder base64MimeDecoder = Base64.getMimeDecoder();
-  private static final BaseEncoding   base32Encoder     = BaseEncoding.base32()
-                                                                      .omitPadding()
-                                                                      .lowerCase();
+  private static final Cleaner        htmlCleaner       = new Cleaner(Safelist.none());
 
   /**
-   * Encodes a URL string using UTF-8 encoding.
+   * Input bytes per chunk of the buffer based methods, a multiple of 15 so base32 and base64 groups
+   * never straddle two chunks. The scratch array also holds the chunk's encoding, at most twice as long.
+   */
+  private static final int                 SCRATCH_CHUNK = 3000;
+  private static final StripedPool<byte[]> SCRATCH       = new StripedPool<>(() -> new byte[SCRATCH_CHUNK * 3]);
+
+  /**
+   * Inputs shorter than this are stored as they are by {@link #deflateToBase64(byte[])}, deflate's
+   * header and block overhead rarely pays off below it
+   */
+  public static final int DEFLATE_THRESHOLD = 64;
+
+  /**
+   * Largest inflated size {@link #inflateFromBase64(String)} accepts, a guard against compression bombs
+   */
+  public static final int DEFAULT_MAX_INFLATED_LENGTH = 1 << 20;
+
+  private static final char STORED   = '0';
+  private static final char DEFLATED = '1';
+
+  private static final StripedPool<Deflater> DEFLATERS = new StripedPool<>(Deflater::new);
+  private static final StripedPool<Inflater> INFLATERS = new StripedPool<>(Inflater::new);
+
+  /**
+   * Encodes a URL string using UTF-8 encoding, in the form encoding of {@link java.net.URLEncoder}.
+   * See {@link UrlCodec} for the RFC 3986 components.
    *
    * @param value the string to URL encode, may be null or blank
-   * @return the URL encoded string, or the original string if input is null or blank
+   * @return the URL encoded string, or the original string if input is null or blank or needs no escaping
    */
   public static String urlEncode(String value) {
-    return StringUtils.isBlank(value) ? value : URLEncoder.encode(value, StandardCharsets.UTF_8);
+    return StringUtils.isBlank(value) ? value : UrlCodec.encode(value, UrlCodec.Component.FORM);
   }
 
   /**
-   * Decodes a URL encoded string using UTF-8 encoding.
+   * Decodes a URL encoded string using UTF-8 encoding, in the form encoding of {@link java.net.URLDecoder}.
    *
    * @param value the string to URL decode, may be null or blank
-   * @return the URL decoded string, or the original string if input is null or blank
+   * @return the URL decoded string, or the original string if input is null or blank or has nothing to decode
    */
   public static String urlDecode(String value) {
-    return StringUtils.isBlank(value) ? value : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    return StringUtils.isBlank(value) ? value : UrlCodec.decode(value, UrlCodec.Component.FORM);
   }
 
   /**
    * Escapes HTML content by removing all HTML tags and entities.
-   * Uses JSoup's {@link Cleaner} with {@link Safelist#none()} for strict cleaning.
+   * Runs a single pass tokenizer that produces the same text as JSoup's {@link Cleaner} with
+   * {@link Safelist#none()}, without building a document, and returns the input itself when it has no
+   * markup and no whitespace to collapse. Input with select or frameset tags is parsed as a document.
    *
    * @param value the string containing HTML to escape, may be null
    * @return the cleaned string with all HTML removed, or null if input is null
    */
   public static String htmlSafe(String value) {
+    return htmlSafe(value, false);
+  }
+
+  /**
+   * Escapes HTML content by removing all HTML tags and entities.
+   *
+   * @param value  the string containing HTML to escape, may be null
+   * @param strict parse a full JSoup document and clean it with {@link Safelist#none()}, slower but exact
+   *               for malformed table markup, where JSoup moves stray text before the table
+   * @return the cleaned string with all HTML removed, or null if input is null
+   */
+  public static String htmlSafe(String value, boolean strict) {
     if (value == null) return null;
-    var cleaner = new Cleaner(Safelist.none());
-    return cleaner.clean(Jsoup.parse(value)).text();
+    if (!strict) {
+      var text = HtmlStripper.strip(value);
+      if (text != null) return text;
+    }
+    return htmlCleaner.clean(Jsoup.parse(value)).text();
   }
 
   /**
@@ -80,7 +124,7 @@ public class Encoder {
    */
   public static String toBase64(byte[] bytes) {
     if (bytes == null) return null;
-    return new String(base64UrlEncoder.encode(bytes), StandardCharsets.UTF_8);
+    return base64UrlEncoder.encodeToString(bytes);
   }
 
   /**
@@ -91,7 +135,7 @@ public class Encoder {
    */
   public static String toBase64Basic(String s) {
     if (s == null) return null;
-    return new String(base64Encoder.encode(toByteArray(s)), StandardCharsets.UTF_8);
+    return base64Encoder.encodeToString(toByteArray(s));
   }
 
   /**
@@ -102,7 +146,7 @@ public class Encoder {
    */
   public static String toBase32(byte[] bytes) {
     if (bytes == null) return null;
-    return base32Encoder.encode(bytes);
+    return encodeToString(bytes, Encoding.BASE32, false);
   }
 
   /**
@@ -124,11 +168,505 @@ public class Encoder {
    */
   public static String toBase16(byte[] bytes) {
     if (bytes == null) return null;
-    return base16Encoding.encode(bytes);
+    return encodeToString(bytes, Encoding.BASE16, false);
+  }
+
+  /**
+   * Encodes through the table driven {@link BaseCodec} into a pooled scratch array when it fits, so
+   * the only allocation is the compact Latin-1 String itself.
+   *
+   * @param upperCase upper case letters for base16 and base32, ignored for base64
+   */
+  static String encodeToString(byte[] bytes, Encoding encoding, boolean upperCase) {
+    int length = BaseCodec.encodedLength(bytes.length, encoding);
+    if (length > SCRATCH_CHUNK * 3) {
+      var encoded = new byte[length];
+      BaseCodec.encode(bytes, 0, bytes.length, encoding, upperCase, encoded, 0);
+      return new String(encoded, StandardCharsets.ISO_8859_1);
+    }
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      BaseCodec.encode(bytes, 0, bytes.length, encoding, upperCase, scratch, 0);
+      return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+    } finally {
+      SCRATCH.release(scratch);
+    }
+  }
+
+  /**
+   * Encodes a byte array with the given encoding.
+   *
+   * @param bytes    the byte array to encode, may be null
+   * @param encoding one of {@link Encoding#BASE16}, {@link Encoding#BASE32} or {@link Encoding#BASE64}
+   * @return the encoded string, or null if input is null
+   */
+  public static String encode(byte[] bytes, Encoding encoding) {
+    return switch (encoding) {
+      case BASE16 -> toBase16(bytes);
+      case BASE32 -> toBase32(bytes);
+      case BASE64 -> toBase64(bytes);
+    };
+  }
+
+  /**
+   * Returns the number of characters, and bytes, that encoding {@code length} bytes produces.
+   * Use it to size the target of the buffer based {@code encode} methods.
+   *
+   * @param length   the number of bytes to encode
+   * @param encoding the encoding
+   * @return the exact encoded length
+   */
+  public static int encodedLength(int length, Encoding encoding) {
+    return BaseCodec.encodedLength(length, encoding);
+  }
+
+  /**
+   * Returns the number of characters that {@link #encodeBase64Mime(byte[])} produces for {@code length} bytes,
+   * line breaks included.
+   *
+   * @param length the number of bytes to encode
+   * @return the exact encoded length
+   */
+  public static int mimeEncodedLength(int length) {
+    return BaseCodec.mimeEncodedLength(length);
+  }
+
+  /**
+   * Returns the number of bytes that decoding {@code encodedLength} characters produces at most.
+   * Padding makes the actual length shorter.
+   *
+   * @param encodedLength the number of encoded characters
+   * @param encoding      the encoding
+   * @return the maximum decoded length
+   */
+  public static int maxDecodedLength(int encodedLength, Encoding encoding) {
+    return switch (encoding) {
+      case BASE16 -> encodedLength / 2;
+      case BASE32 -> (int) ((long) encodedLength * 5 / 8);
+      case BASE64 -> (int) ((long) encodedLength * 6 / 8);
+    };
+  }
+
+  /**
+   * Encodes a slice of a byte array as ASCII into a caller supplied array, without allocating.
+   * The output is the same as {@link #encode(byte[], Encoding)}.
+   *
+   * @param src       the bytes to encode
+   * @param offset    the first byte to encode
+   * @param length    the number of bytes to encode
+   * @param encoding  the encoding
+   * @param dst       the target, with room for {@link #encodedLength(int, Encoding)} bytes
+   * @param dstOffset where to start writing
+   * @return the number of bytes written
+   * @throws IndexOutOfBoundsException if a range is outside its array, nothing is written then
+   */
+  public static int encode(byte[] src, int offset, int length, Encoding encoding, byte[] dst, int dstOffset) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    Objects.checkFromIndexSize(dstOffset, BaseCodec.encodedLength(length, encoding), dst.length);
+    return BaseCodec.encode(src, offset, length, encoding, dst, dstOffset);
+  }
+
+  /**
+   * Encodes the remaining bytes of {@code src} as ASCII into {@code dst}. Both positions are advanced.
+   *
+   * @return the number of bytes written
+   * @throws BufferOverflowException if dst has less room than {@link #encodedLength(int, Encoding)},
+   *                                 nothing is consumed or written then
+   */
+  public static int encode(ByteBuffer src, Encoding encoding, ByteBuffer dst) {
+    int length  = src.remaining();
+    int written = BaseCodec.encodedLength(length, encoding);
+    if (written > dst.remaining()) throw new BufferOverflowException();
+    if (src.hasArray() && dst.hasArray()) {
+      BaseCodec.encode(src.array(), src.arrayOffset() + src.position(), length, encoding,
+                       dst.array(), dst.arrayOffset() + dst.position());
+      src.position(src.limit());
+      dst.position(dst.position() + written);
+      return written;
+    }
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      while (src.hasRemaining()) {
+        int chunk = Math.min(SCRATCH_CHUNK, src.remaining());
+        src.get(scratch, 0, chunk);
+        int n = BaseCodec.encode(scratch, 0, chunk, encoding, scratch, SCRATCH_CHUNK);
+        dst.put(scratch, SCRATCH_CHUNK, n);
+      }
+    } finally {
+      SCRATCH.release(scratch);
+    }
+    return written;
+  }
+
+  /**
+   * Appends the encoding of a slice of a byte array, without allocating beyond the builder's growth.
+   *
+   * @return the number of characters appended
+   */
+  public static int encode(byte[] src, int offset, int length, Encoding encoding, StringBuilder dst) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    int written = BaseCodec.encodedLength(length, encoding);
+    dst.ensureCapacity(dst.length() + written);
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      for (int i = offset, end = offset + length; i < end; i += SCRATCH_CHUNK) {
+        int n = BaseCodec.encode(src, i, Math.min(SCRATCH_CHUNK, end - i), encoding, scratch, 0);
+        for (int k = 0; k < n; k++) {
+          dst.append((char) scratch[k]);
+        }
+      }
+    } finally {
+      SCRATCH.release(scratch);
+    }
+    return written;
+  }
+
+  /**
+   * Appends the encoding of a slice of a byte array to any {@link Appendable}, such as a Writer.
+   *
+   * @return the number of characters appended
+   * @throws IOException if appending fails
+   */
+  public static int encode(byte[] src, int offset, int length, Encoding encoding, Appendable dst) throws IOException {
+    if (dst instanceof StringBuilder sb) return encode(src, offset, length, encoding, sb);
+    Objects.checkFromIndexSize(offset, length, src.length);
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      for (int i = offset, end = offset + length; i < end; i += SCRATCH_CHUNK) {
+        int n = BaseCodec.encode(src, i, Math.min(SCRATCH_CHUNK, end - i), encoding, scratch, 0);
+        for (int k = 0; k < n; k++) {
+          dst.append((char) scratch[k]);
+        }
+      }
+    } finally {
+      SCRATCH.release(scratch);
+    }
+    return BaseCodec.encodedLength(length, encoding);
+  }
+
+  /**
+   * Encodes a slice of a byte array to Base64 MIME format into a caller supplied array. Same output as
+   * {@link #encodeBase64Mime(byte[])}.
+   *
+   * @param dst       the target, with room for {@link #mimeEncodedLength(int)} bytes
+   * @param dstOffset where to start writing
+   * @return the number of bytes written
+   * @throws IndexOutOfBoundsException if a range is outside its array, nothing is written then
+   */
+  public static int encodeBase64Mime(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    Objects.checkFromIndexSize(dstOffset, BaseCodec.mimeEncodedLength(length), dst.length);
+    return BaseCodec.encodeMime(src, offset, length, dst, dstOffset);
+  }
+
+  /**
+   * Appends the Base64 MIME encoding of a slice of a byte array. Same output as {@link #encodeBase64Mime(byte[])}.
+   *
+   * @return the number of characters appended
+   */
+  public static int encodeBase64Mime(byte[] src, int offset, int length, StringBuilder dst) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    int written = BaseCodec.mimeEncodedLength(length);
+    dst.ensureCapacity(dst.length() + written);
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      // whole lines per chunk, so the line breaks fall where they would for the full input
+      int lineChunk = SCRATCH_CHUNK / BaseCodec.MIME_LINE_BYTES * BaseCodec.MIME_LINE_BYTES;
+      for (int i = offset, end = offset + length; i < end; i += lineChunk) {
+        if (i > offset) dst.append("\r\n");
+        int n = BaseCodec.encodeMime(src, i, Math.min(lineChunk, end - i), scratch, 0);
+        for (int k = 0; k < n; k++) {
+          dst.append((char) scratch[k]);
+        }
+      }
+    } finally {
+      SCRATCH.release(scratch);
+    }
+    return written;
+  }
+
+  /**
+   * Decodes into a caller supplied array, without allocating. Accepts what {@link #encode(byte[], Encoding)}
+   * produces and is lenient beyond that: hex and base32 in either case, base64 in the url safe or the
+   * standard alphabet, without padding or with exactly the padding that completes the last group.
+   *
+   * @param src       the encoded characters
+   * @param encoding  the encoding
+   * @param dst       the target
+   * @param dstOffset where to start writing
+   * @return the number of bytes written
+   * @throws IllegalArgumentException  if src is not valid for the encoding
+   * @throws IndexOutOfBoundsException if the decoded bytes don't fit into dst, nothing is written then
+   */
+  public static int decode(CharSequence src, Encoding encoding, byte[] dst, int dstOffset) {
+    int length = BaseCodec.decodedLength(src, 0, src.length(), encoding);
+    Objects.checkFromIndexSize(dstOffset, length, dst.length);
+    int written = BaseCodec.decode(src, encoding, dst, dstOffset);
+    if (written < 0) throw new IllegalArgumentException("invalid " + encoding + " input");
+    return written;
+  }
+
+  /**
+   * Decodes into {@code dst}, advancing its position. Same rules as {@link #decode(CharSequence, Encoding, byte[], int)}.
+   *
+   * @return the number of bytes written
+   * @throws IllegalArgumentException if src is not valid for the encoding, dst may be partly written then
+   * @throws BufferOverflowException  if the decoded bytes don't fit into dst, nothing is written then
+   */
+  public static int decode(CharSequence src, Encoding encoding, ByteBuffer dst) {
+    int length = BaseCodec.decodedLength(src, 0, src.length(), encoding);
+    if (length > dst.remaining()) throw new BufferOverflowException();
+    if (dst.hasArray()) {
+      int written = decode(src, encoding, dst.array(), dst.arrayOffset() + dst.position());
+      dst.position(dst.position() + written);
+      return written;
+    }
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      // a multiple of 8 characters decodes to whole bytes in every encoding
+      int chunk = SCRATCH_CHUNK / 8 * 8;
+      int total = 0;
+      for (int start = 0, end = src.length(); start < end; start += chunk) {
+        int chunkEnd = Math.min(end, start + chunk);
+        // only the last chunk may be padded
+        int n = chunkEnd < end && src.charAt(chunkEnd - 1) == '='
+                ? -1 : BaseCodec.decode(src, start, chunkEnd, encoding, scratch, 0);
+        if (n < 0) throw new IllegalArgumentException("invalid " + encoding + " input");
+        dst.put(scratch, 0, n);
+        total += n;
+      }
+      return total;
+    } finally {
+      SCRATCH.release(scratch);
+    }
+  }
+
+  /**
+   * Decodes to bytes, without going through a String. Same rules as
+   * {@link #decode(CharSequence, Encoding, byte[], int)}.
+   *
+   * @param src      the encoded characters, may be null
+   * @param encoding the encoding
+   * @return the decoded bytes, or null if src is null
+   * @throws IllegalArgumentException if src is not valid for the encoding
+   */
+  public static byte[] decode(CharSequence src, Encoding encoding) {
+    if (src == null) return null;
+    var bytes = new byte[BaseCodec.decodedLength(src, 0, src.length(), encoding)];
+    if (BaseCodec.decode(src, encoding, bytes, 0) < 0) {
+      throw new IllegalArgumentException("invalid " + encoding + " input");
+    }
+    return bytes;
+  }
+
+  /**
+   * Decodes a Base64 string to bytes, the reverse of {@link #toBase64(byte[])}. Accepts the url safe and
+   * the standard alphabet, without padding or with exactly the padding that completes the last group.
+   *
+   * @param data the Base64 string to decode, may be null
+   * @return the decoded bytes, or null if input is null
+   * @throws IllegalArgumentException if data is not valid Base64
+   */
+  public static byte[] fromBase64(String data) {
+    return decode(data, Encoding.BASE64);
+  }
+
+  /**
+   * Decodes a Base32 string in either case to bytes, the reverse of {@link #toBase32(byte[])}.
+   *
+   * @param data the Base32 string to decode, may be null
+   * @return the decoded bytes, or null if input is null
+   * @throws IllegalArgumentException if data is not valid Base32
+   */
+  public static byte[] fromBase32(String data) {
+    return decode(data, Encoding.BASE32);
+  }
+
+  /**
+   * Decodes a hexadecimal string in either case to bytes, the reverse of {@link #toBase16(byte[])}.
+   *
+   * @param data the hexadecimal string to decode, may be null
+   * @return the decoded bytes, or null if input is null
+   * @throws IllegalArgumentException if data is not valid hexadecimal
+   */
+  public static byte[] fromBase16(String data) {
+    return decode(data, Encoding.BASE16);
+  }
+
+  /**
+   * Decodes a Base64 MIME formatted string to bytes, the binary safe form of {@link #decodeBase64Mime(String)}.
+   *
+   * @param data the Base64 MIME string to decode, may be null
+   * @return the decoded bytes, or null if input is null
+   * @throws IllegalArgumentException if data is not valid Base64
+   */
+  public static byte[] fromBase64Mime(String data) {
+    if (data == null) return null;
+    return base64MimeDecoder.decode(data);
+  }
+
+  /**
+   * Checks that the value is url safe Base64, what {@link #toBase64(byte[])} produces, unpadded or
+   * canonically padded. Scans in place without decoding or allocating.
+   *
+   * @param value the value to check, may be null
+   * @return true if {@link #fromBase64(String)} accepts the value and it uses only the url safe alphabet
+   */
+  public static boolean isValidBase64Url(CharSequence value) {
+    return value != null && BaseCodec.isValid(value, Encoding.BASE64, true);
+  }
+
+  /**
+   * Checks that the value is Base32 in either case, unpadded or canonically padded. Scans in place without
+   * decoding or allocating.
+   *
+   * @param value the value to check, may be null
+   * @return true if {@link #fromBase32(String)} accepts the value
+   */
+  public static boolean isValidBase32(CharSequence value) {
+    return value != null && BaseCodec.isValid(value, Encoding.BASE32, false);
+  }
+
+  /**
+   * Checks that the value is hexadecimal in either case with an even length. Scans in place without
+   * decoding or allocating.
+   *
+   * @param value the value to check, may be null
+   * @return true if {@link #fromBase16(String)} accepts the value
+   */
+  public static boolean isValidHex(CharSequence value) {
+    return value != null && BaseCodec.isValid(value, Encoding.BASE16, false);
+  }
+
+  /**
+   * Compresses with deflate, in the zlib format, and encodes the result as url safe Base64 without padding,
+   * for state in cookies and URL tokens. Inputs below {@link #DEFLATE_THRESHOLD} bytes, and inputs that
+   * don't get smaller, are stored uncompressed. A leading {@code '0'} or {@code '1'} tells
+   * {@link #inflateFromBase64(String)} which it is.
+   *
+   * @param data the bytes to compress, may be null
+   * @return the token, or null if input is null
+   */
+  public static String deflateToBase64(byte[] data) {
+    return deflateToBase64(data, null, DEFLATE_THRESHOLD);
+  }
+
+  /**
+   * Compresses with a preset dictionary, see {@link #deflateToBase64(byte[])}. The dictionary holds byte
+   * sequences typical for the data, such as JSON keys, which makes even short inputs compress well. The same
+   * dictionary must be passed to {@link #inflateFromBase64(String, byte[], int)}.
+   *
+   * @param data       the bytes to compress, may be null
+   * @param dictionary the preset dictionary, may be null for none
+   * @param threshold  inputs shorter than this are stored uncompressed
+   * @return the token, or null if input is null
+   */
+  public static String deflateToBase64(byte[] data, byte[] dictionary, int threshold) {
+    if (data == null) return null;
+    if (data.length < threshold) return stored(data);
+
+    Deflater deflater = DEFLATERS.borrow();
+    byte[]   scratch  = SCRATCH.borrow();
+    byte[]   out      = scratch;
+    int      length   = 0;
+    try {
+      if (dictionary != null) deflater.setDictionary(dictionary);
+      deflater.setInput(data);
+      deflater.finish();
+      // stop once the compressed form is no smaller than the input
+      while (!deflater.finished() && length < data.length) {
+        if (length == out.length) out = Arrays.copyOf(out, out.length * 2);
+        length += deflater.deflate(out, length, out.length - length);
+      }
+      if (length >= data.length) return stored(data);
+
+      var token = new byte[1 + BaseCodec.encodedLength(length, Encoding.BASE64)];
+      token[0] = DEFLATED;
+      BaseCodec.encode(out, 0, length, Encoding.BASE64, token, 1);
+      return new String(token, StandardCharsets.ISO_8859_1);
+    } finally {
+      deflater.reset();
+      if (!DEFLATERS.release(deflater)) deflater.end();
+      SCRATCH.release(scratch);
+    }
+  }
+
+  private static String stored(byte[] data) {
+    var token = new byte[1 + BaseCodec.encodedLength(data.length, Encoding.BASE64)];
+    token[0] = STORED;
+    BaseCodec.encode(data, 0, data.length, Encoding.BASE64, token, 1);
+    return new String(token, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Decodes and inflates a token from {@link #deflateToBase64(byte[])}, up to
+   * {@link #DEFAULT_MAX_INFLATED_LENGTH} bytes.
+   *
+   * @param token the token, may be null
+   * @return the original bytes, or null if input is null
+   * @throws IllegalArgumentException if the token is malformed, needs a dictionary or inflates beyond the limit
+   */
+  public static byte[] inflateFromBase64(String token) {
+    return inflateFromBase64(token, null, DEFAULT_MAX_INFLATED_LENGTH);
+  }
+
+  /**
+   * Decodes and inflates a token from {@link #deflateToBase64(byte[], byte[], int)}.
+   *
+   * @param token      the token, may be null
+   * @param dictionary the preset dictionary the token was compressed with, may be null for none
+   * @param maxLength  the largest inflated size accepted
+   * @return the original bytes, or null if input is null
+   * @throws IllegalArgumentException if the token is malformed, needs a different dictionary or inflates
+   *                                  beyond maxLength
+   */
+  public static byte[] inflateFromBase64(String token, byte[] dictionary, int maxLength) {
+    if (token == null) return null;
+    if (token.isEmpty() || (token.charAt(0) != STORED && token.charAt(0) != DEFLATED)) {
+      throw new IllegalArgumentException("invalid deflate token");
+    }
+    var compressed = new byte[BaseCodec.decodedLength(token, 1, token.length(), Encoding.BASE64)];
+    if (BaseCodec.decode(token, 1, token.length(), Encoding.BASE64, compressed, 0) < 0) {
+      throw new IllegalArgumentException("invalid deflate token");
+    }
+    if (token.charAt(0) == STORED) {
+      if (compressed.length > maxLength) throw new IllegalArgumentException("token exceeds " + maxLength + " bytes");
+      return compressed;
+    }
+
+    Inflater inflater = INFLATERS.borrow();
+    try {
+      inflater.setInput(compressed);
+      var out    = new byte[Math.min(maxLength, Math.max(64, compressed.length * 4))];
+      int length = 0;
+      while (!inflater.finished()) {
+        if (length == out.length) {
+          if (length == maxLength) throw new IllegalArgumentException("token inflates beyond " + maxLength + " bytes");
+          out = Arrays.copyOf(out, (int) Math.min(maxLength, out.length * 2L));
+        }
+        int n = inflater.inflate(out, length, out.length - length);
+        if (n == 0) {
+          if (inflater.needsDictionary()) {
+            if (dictionary == null) throw new IllegalArgumentException("token needs a preset dictionary");
+            inflater.setDictionary(dictionary);
+          } else if (inflater.needsInput()) {
+            throw new IllegalArgumentException("truncated deflate token");
+          }
+        }
+        length += n;
+      }
+      return length == out.length ? out : Arrays.copyOf(out, length);
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("invalid deflate token", e);
+    } finally {
+      inflater.reset();
+      if (!INFLATERS.release(inflater)) inflater.end();
+    }
   }
 
   /**
    * Converts a string to a byte array using UTF-8 encoding.
+   * To encode into a reused buffer, or to reject unpaired surrogates, see {@link Utf8}.
    *
    * @param value the string to convert, must not be null
    * @return the byte array representation of the string
@@ -139,7 +677,7 @@ public class Encoder {
   }
 
   /**
-   * Decodes a Base64 URL-safe string.
+   * Decodes a Base64 URL-safe string. For binary data use {@link #fromBase64(String)}.
    *
    * @param data the Base64 URL-safe string to decode, may be null or blank
    * @return the decoded string, or null if input is null or blank
@@ -152,6 +690,8 @@ public class Encoder {
   /**
    * Decodes a Base64 MIME formatted string. MIME format uses standard Base64 alphabet (with '+' and '/' characters)
    * and includes line breaks after every 76 characters for better compatibility with email systems.
+   * For large inputs see {@link EncodingStreams#decoder(java.io.InputStream, EncodingStreams.Format)},
+   * for binary data {@link #fromBase64Mime(String)}.
    *
    * @param data the Base64 MIME string to decode, may be null or blank
    * @return the decoded string, or null if input is null or blank
@@ -178,6 +718,7 @@ public class Encoder {
    * Encodes a byte array to Base64 MIME format. Uses standard Base64 alphabet (with '+' and '/' characters)
    * and adds line breaks after every 76 characters, making it suitable for email attachments and
    * systems that have line length limitations.
+   * For large inputs see {@link EncodingStreams#encoder(java.io.OutputStream, EncodingStreams.Format)}.
    *
    * @param data the byte array to encode, may be null
    * @return the Base64 MIME encoded string with line breaks, or null if input is null
@@ -189,6 +730,7 @@ public class Encoder {
 
   /**
    * Returns a string representation of the input byte array.
+   * To decode a slice, or to reject malformed UTF-8, see {@link Utf8}.
    *
    * @param bytes the input byte array
    * @return a string representation of the input byte array, or null if the input array is empty
@@ -0,0 +1,313 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * Streaming versions of the {@link Encoder} text encodings, for inputs too large to hold as a String.
+ * <p>
+ * Every wrapper keeps a fixed amount of memory, a few KB, whatever the size of the data passing through.
+ * Encoding wrappers buffer partial groups until {@code close()}, which writes the final group with its
+ * padding and closes the target; {@code flush()} only flushes what has been encoded so far. Decoding
+ * wrappers follow the rules of {@link Encoder#decode(CharSequence, Encoding, byte[], int)}, and in
+ * addition skip every character outside the alphabet for {@link Format#BASE64_MIME}, such as line breaks.
+ * Malformed input fails the read with an {@link IOException}.
+ * <p>
+ * {@link #transcode(InputStream, Format, OutputStream, Format)} converts between two formats without
+ * materializing the decoded bytes, for example from a MIME attachment to url safe base64.
+ */
+public final class EncodingStreams {
+
+  /**
+   * Input bytes per encoded chunk: whole MIME lines and a multiple of 15, so base32 and base64 groups
+   * never straddle two chunks.
+   */
+  private static final int CHUNK = 60 * BaseCodec.MIME_LINE_BYTES;
+
+  private static final StripedPool<byte[]> TRANSCODE_BUFFERS = new StripedPool<>(() -> new byte[CHUNK]);
+
+  private EncodingStreams() {}
+
+  /**
+   * The formats of {@link Encoder}.
+   */
+  public enum Format {
+    /**
+     * lower case hexadecimal, same as {@link Encoder#toBase16(byte[])}
+     */
+    BASE16(Encoding.BASE16),
+    /**
+     * lower case base32 without padding, same as {@link Encoder#toBase32(byte[])}
+     */
+    BASE32(Encoding.BASE32),
+    /**
+     * url safe base64 without padding, same as {@link Encoder#toBase64(byte[])}
+     */
+    BASE64_URL(Encoding.BASE64),
+    /**
+     * standard base64 with padding, same as {@link Encoder#toBase64Basic(String)}
+     */
+    BASE64(Encoding.BASE64),
+    /**
+     * standard base64 with padding and CRLF line breaks every 76 characters, same as
+     * {@link Encoder#encodeBase64Mime(byte[])}
+     */
+    BASE64_MIME(Encoding.BASE64);
+
+    private final Encoding encoding;
+
+    Format(Encoding encoding) {
+      this.encoding = encoding;
+    }
+
+    private int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+      return switch (this) {
+        case BASE16, BASE32, BASE64_URL -> BaseCodec.encode(src, offset, length, encoding, dst, dstOffset);
+        case BASE64 -> BaseCodec.encodeBasic(src, offset, length, dst, dstOffset);
+        case BASE64_MIME -> BaseCodec.encodeMime(src, offset, length, dst, dstOffset);
+      };
+    }
+  }
+
+  /**
+   * Wraps {@code out} so that the bytes written to the returned stream reach it encoded.
+   * Closing the returned stream finishes the encoding and closes {@code out}.
+   */
+  public static OutputStream encoder(OutputStream out, Format format) {
+    return new EncodingOutputStream(Objects.requireNonNull(out), format, true);
+  }
+
+  /**
+   * Wraps {@code in}, which holds encoded text, so that the returned stream reads the decoded bytes.
+   * Closing the returned stream closes {@code in}.
+   */
+  public static InputStream decoder(InputStream in, Format format) {
+    return new DecodingInputStream(Objects.requireNonNull(in), format);
+  }
+
+  /**
+   * Channel version of {@link #encoder(OutputStream, Format)}, the channel must be in blocking mode.
+   */
+  public static WritableByteChannel encoder(WritableByteChannel channel, Format format) {
+    return Channels.newChannel(encoder(Channels.newOutputStream(channel), format));
+  }
+
+  /**
+   * Channel version of {@link #decoder(InputStream, Format)}, the channel must be in blocking mode.
+   */
+  public static ReadableByteChannel decoder(ReadableByteChannel channel, Format format) {
+    return Channels.newChannel(decoder(Channels.newInputStream(channel), format));
+  }
+
+  /**
+   * Reads {@code in} to the end, decoding it from one format and writing it encoded in another to {@code out}.
+   * Neither stream is closed, {@code out} is flushed.
+   *
+   * @return the number of decoded bytes that passed through
+   * @throws IOException if reading or writing fails or the input is malformed
+   */
+  public static long transcode(InputStream in, Format from, OutputStream out, Format to) throws IOException {
+    var    decoder = new DecodingInputStream(in, from);
+    var    encoder = new EncodingOutputStream(out, to, false);
+    byte[] buffer  = TRANSCODE_BUFFERS.borrow();
+    try {
+      long total = 0;
+      int  read;
+      while ((read = decoder.read(buffer, 0, buffer.length)) != -1) {
+        encoder.write(buffer, 0, read);
+        total += read;
+      }
+      encoder.close();
+      return total;
+    } finally {
+      TRANSCODE_BUFFERS.release(buffer);
+    }
+  }
+
+  /**
+   * Channel version of {@link #transcode(InputStream, Format, OutputStream, Format)}, both channels must be
+   * in blocking mode and neither is closed.
+   */
+  public static long transcode(ReadableByteChannel in, Format from, WritableByteChannel out, Format to)
+    throws IOException {
+    return transcode(Channels.newInputStream(in), from, Channels.newOutputStream(out), to);
+  }
+
+  private static final class EncodingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final Format       format;
+    private final boolean      closeTarget;
+    private final byte[]       pending = new byte[CHUNK];
+    // hex doubles the size, MIME adds the line break that joins it to the previous chunk
+    private final byte[]       encoded = new byte[CHUNK * 2 + 2];
+    private       int          filled;
+    private       boolean      started;
+    private       boolean      closed;
+
+    EncodingOutputStream(OutputStream out, Format format, boolean closeTarget) {
+      this.out         = out;
+      this.format      = format;
+      this.closeTarget = closeTarget;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureOpen();
+      pending[filled++] = (byte) b;
+      if (filled == CHUNK) {
+        encodeChunk(pending, 0, CHUNK);
+        filled = 0;
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      ensureOpen();
+      if (filled > 0) {
+        int n = Math.min(len, CHUNK - filled);
+        System.arraycopy(b, off, pending, filled, n);
+        filled += n;
+        off += n;
+        len -= n;
+        if (filled < CHUNK) return;
+        encodeChunk(pending, 0, CHUNK);
+        filled = 0;
+      }
+      for (; len >= CHUNK; off += CHUNK, len -= CHUNK) {
+        encodeChunk(b, off, CHUNK);
+      }
+      System.arraycopy(b, off, pending, 0, len);
+      filled = len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      closed = true;
+      try {
+        if (filled > 0) encodeChunk(pending, 0, filled);
+        filled = 0;
+      } finally {
+        if (closeTarget) {
+          out.close();
+        } else {
+          out.flush();
+        }
+      }
+    }
+
+    private void encodeChunk(byte[] src, int offset, int length) throws IOException {
+      int n = 0;
+      if (started && format == Format.BASE64_MIME) {
+        encoded[n++] = '\r';
+        encoded[n++] = '\n';
+      }
+      n += format.encode(src, offset, length, encoded, n);
+      started = true;
+      out.write(encoded, 0, n);
+    }
+
+    private void ensureOpen() throws IOException {
+      if (closed) throw new IOException("stream closed");
+    }
+  }
+
+  private static final class DecodingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final Format      format;
+    private final byte[]      table;
+    private final int         bitsPerChar;
+    private final byte[]      input = new byte[CHUNK * 2];
+    private final byte[]      one   = new byte[1];
+    private       int         position;
+    private       int         limit;
+    private       int         buffer;
+    private       int         bits;
+    private       boolean     padded;
+    private       boolean     finished;
+
+    DecodingInputStream(InputStream in, Format format) {
+      this.in          = in;
+      this.format      = format;
+      this.table       = BaseCodec.decodeTable(format.encoding);
+      this.bitsPerChar = BaseCodec.bitsPerChar(format.encoding);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      if (len == 0) return 0;
+      if (finished) return -1;
+      int n = 0;
+      while (n < len) {
+        if (position == limit) {
+          // return what is decoded rather than block for more input
+          if (n > 0) break;
+          if (!fill()) {
+            finish();
+            return -1;
+          }
+        }
+        int c     = input[position++] & 0xFF;
+        int value = c < 128 ? table[c] : BaseCodec.INVALID;
+        if (value < 0) {
+          if (c == '=' && format != Format.BASE16) {
+            padded = true;
+          } else if (format != Format.BASE64_MIME) {
+            throw new IOException("invalid " + format + " character 0x" + Integer.toHexString(c));
+          }
+          continue;
+        }
+        if (padded) throw new IOException("invalid " + format + " input, data after padding");
+        buffer = (buffer << bitsPerChar) | value;
+        bits += bitsPerChar;
+        if (bits >= 8) {
+          bits -= 8;
+          b[off + n++] = (byte) (buffer >>> bits);
+        }
+      }
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private boolean fill() throws IOException {
+      int read;
+      do {
+        read = in.read(input, 0, input.length);
+      } while (read == 0);
+      position = 0;
+      limit    = Math.max(read, 0);
+      return read > 0;
+    }
+
+    private void finish() throws IOException {
+      finished = true;
+      // a trailing group that holds a whole char of bits but no whole byte can't come from an encoder
+      if (bits >= bitsPerChar) throw new IOException("invalid " + format + " input, truncated");
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package today.bonfire.oss.jutils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prefetched random bytes for the small requests of ID and token generation, see
+ * {@link SecureRandoms#buffered(boolean)}.
+ * <p>
+ * Each stripe serves from a block of {@link #BLOCK_SIZE} bytes drawn from the {@link SecureRandoms}
+ * generators. A request claims its range with a single atomic add on the block's cursor and copies it out,
+ * no lock involved. Once half the block is claimed, a virtual thread fills a spare block, which replaces the
+ * current one when that runs out. A request that finds both used up reads from the generators directly
+ * instead of waiting.
+ * <p>
+ * Claimed ranges never overlap and a block is never refilled, every refill is a new array, so no byte is
+ * handed out twice, not even to a reader still copying from a block that has been replaced.
+ */
+@Slf4j
+final class EntropyBuffer {
+
+  static final int BLOCK_SIZE  = 64 * 1024;
+  /**
+   * Larger requests go straight to the generators, they would drain a block for little gain
+   */
+  static final int MAX_REQUEST = 256;
+
+  private static final int LOW_WATER = BLOCK_SIZE / 2;
+
+  /**
+   * The block every stripe starts with, already used up, so blocks are only filled for stripes in use
+   */
+  private static final Block EMPTY = new Block(new byte[0]);
+
+  private final Slice[] slices;
+  private final int     mask;
+
+  EntropyBuffer(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    this.slices = new Slice[size];
+    this.mask   = size - 1;
+    for (int i = 0; i < size; i++) {
+      slices[i] = new Slice();
+    }
+  }
+
+  /**
+   * Fills {@code bytes}, which must not be longer than {@link #MAX_REQUEST}.
+   */
+  void nextBytes(byte[] bytes) {
+    int   length = bytes.length;
+    Slice slice  = slices[SecureRandoms.probe() & mask];
+    while (true) {
+      Block block = slice.current;
+      // checking first keeps callers from pushing the cursor of a used up block ever further
+      if (block.next.get() < block.bytes.length) {
+        int start = block.next.getAndAdd(length);
+        int end   = start + length;
+        if (end <= block.bytes.length) {
+          System.arraycopy(block.bytes, start, bytes, 0, length);
+          if (start < LOW_WATER && end >= LOW_WATER) refill(slice);
+          return;
+        }
+      }
+      Block spare = slice.spare.getAndSet(null);
+      if (spare != null) {
+        // only the thread that took the spare installs it
+        slice.current = spare;
+        continue;
+      }
+      if (slice.current != block) continue;
+      refill(slice);
+      SecureRandoms.nextBytesDirect(bytes);
+      return;
+    }
+  }
+
+  /**
+   * Starts filling a spare block unless one is in progress or ready.
+   */
+  private static void refill(Slice slice) {
+    if (slice.spare.get() != null || !slice.refilling.compareAndSet(false, true)) return;
+    Thread.ofVirtual().name("jutils-entropy-refill").start(() -> {
+      try {
+        var bytes = new byte[BLOCK_SIZE];
+        SecureRandoms.nextBytesDirect(bytes);
+        slice.spare.set(new Block(bytes));
+      } catch (RuntimeException e) {
+        log.warn("refilling the entropy buffer failed, reading from the generators directly", e);
+      } finally {
+        slice.refilling.set(false);
+      }
+    });
+  }
+
+  private static final class Block {
+    private final byte[]        bytes;
+    private final AtomicInteger next = new AtomicInteger();
+
+    Block(byte[] bytes) {
+      this.bytes = bytes;
+    }
+  }
+
+  private static final class Slice {
+    private final AtomicReference<Block> spare     = new AtomicReference<>();
+    private final AtomicBoolean          refilling = new AtomicBoolean();
+    private volatile Block               current   = EMPTY;
+  }
+}
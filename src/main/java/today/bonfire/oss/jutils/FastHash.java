@@ -0,0 +1,393 @@
+package today.bonfire.oss.jutils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Fast non-cryptographic hashes for cache keys, hash tables and shard routing.
+ * <p>
+ * These are many times faster than the {@link Digest} functions but offer no protection against
+ * deliberately crafted collisions, never use them for anything security related. When keys come from
+ * untrusted clients use the seeded variants with a secret random seed to make hash flooding harder.
+ * <ul>
+ *   <li>{@code xxHash64} - 64-bit xxHash (XXH64)</li>
+ *   <li>{@code murmur3_32} - 32-bit MurmurHash3 (x86_32), same as Guava's {@code murmur3_32_fixed}</li>
+ *   <li>{@code murmur3_128} - 128-bit MurmurHash3 (x64_128), same as Guava's {@code murmur3_128} for
+ *   non-negative seeds; the seed is read as unsigned like the reference implementation</li>
+ *   <li>{@code jumpHash} - jump consistent hash, maps a key hash to one of n numbered shards</li>
+ * </ul>
+ * Byte arrays and buffers are hashed as is. A {@link CharSequence} is hashed as its UTF-16LE code units,
+ * the same as Guava's {@code hashUnencodedChars}, which needs no encoding step and no allocation.
+ * A {@code long} is hashed as its 8 little-endian bytes.
+ * None of the methods allocate; the 128-bit variants write their result into a caller supplied array.
+ */
+public final class FastHash {
+
+  private static final VarHandle LONG_LE    = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle INT_LE     = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BB_LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BB_INT_LE  = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long P1 = 0x9E3779B185EBCA87L;
+  private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long P3 = 0x165667B19E3779F9L;
+  private static final long P4 = 0x85EBCA77C2B2AE63L;
+  private static final long P5 = 0x27D4EB2F165667C5L;
+
+  private static final int  M32_C1  = 0xcc9e2d51;
+  private static final int  M32_C2  = 0x1b873593;
+  private static final long M128_C1 = 0x87c37b91114253d5L;
+  private static final long M128_C2 = 0x4cf5ad432745937fL;
+
+  private FastHash() {}
+
+  // ---------------------------------------------------------------- xxHash64
+
+  public static long xxHash64(byte[] data) {
+    return xxHash64(data, 0, data.length, 0);
+  }
+
+  public static long xxHash64(byte[] data, long seed) {
+    return xxHash64(data, 0, data.length, seed);
+  }
+
+  /**
+   * @param data   the bytes to hash
+   * @param offset index of the first byte
+   * @param length number of bytes to hash
+   * @param seed   the seed, 0 for the standard unseeded hash
+   * @return the 64-bit xxHash of the range
+   */
+  public static long xxHash64(byte[] data, int offset, int length, long seed) {
+    Objects.checkFromIndexSize(offset, length, data.length);
+    return xxHash64Core(data, offset, length, seed);
+  }
+
+  /**
+   * Hashes the remaining bytes of the buffer, the buffer's position is not changed.
+   */
+  public static long xxHash64(ByteBuffer data, long seed) {
+    return xxHash64Core(data, data.position(), data.remaining(), seed);
+  }
+
+  public static long xxHash64(CharSequence data) {
+    return xxHash64Core(data, 0, data.length() * 2, 0);
+  }
+
+  public static long xxHash64(CharSequence data, long seed) {
+    return xxHash64Core(data, 0, data.length() * 2, seed);
+  }
+
+  public static long xxHash64(long value) {
+    return xxHash64(value, 0);
+  }
+
+  public static long xxHash64(long value, long seed) {
+    long h = seed + P5 + 8;
+    h ^= xxRound(0, value);
+    h = Long.rotateLeft(h, 27) * P1 + P4;
+    return xxAvalanche(h);
+  }
+
+  private static long xxHash64Core(Object src, int base, int length, long seed) {
+    long h;
+    int  i = 0;
+    if (length >= 32) {
+      long v1    = seed + P1 + P2;
+      long v2    = seed + P2;
+      long v3    = seed;
+      long v4    = seed - P1;
+      int  limit = length - 32;
+      do {
+        v1 = xxRound(v1, getLong(src, base + i));
+        v2 = xxRound(v2, getLong(src, base + i + 8));
+        v3 = xxRound(v3, getLong(src, base + i + 16));
+        v4 = xxRound(v4, getLong(src, base + i + 24));
+        i += 32;
+      } while (i <= limit);
+      h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      h = xxMerge(h, v1);
+      h = xxMerge(h, v2);
+      h = xxMerge(h, v3);
+      h = xxMerge(h, v4);
+    } else {
+      h = seed + P5;
+    }
+    h += length;
+    for (; i + 8 <= length; i += 8) {
+      h ^= xxRound(0, getLong(src, base + i));
+      h = Long.rotateLeft(h, 27) * P1 + P4;
+    }
+    if (i + 4 <= length) {
+      h ^= (getInt(src, base + i) & 0xFFFFFFFFL) * P1;
+      h = Long.rotateLeft(h, 23) * P2 + P3;
+      i += 4;
+    }
+    for (; i < length; i++) {
+      h ^= getByte(src, base + i) * P5;
+      h = Long.rotateLeft(h, 11) * P1;
+    }
+    return xxAvalanche(h);
+  }
+
+  private static long xxRound(long acc, long input) {
+    acc += input * P2;
+    acc = Long.rotateLeft(acc, 31);
+    return acc * P1;
+  }
+
+  private static long xxMerge(long h, long v) {
+    h ^= xxRound(0, v);
+    return h * P1 + P4;
+  }
+
+  private static long xxAvalanche(long h) {
+    h ^= h >>> 33;
+    h *= P2;
+    h ^= h >>> 29;
+    h *= P3;
+    return h ^ (h >>> 32);
+  }
+
+  // ---------------------------------------------------------------- murmur3 32
+
+  public static int murmur3_32(byte[] data) {
+    return murmur3_32(data, 0, data.length, 0);
+  }
+
+  public static int murmur3_32(byte[] data, int seed) {
+    return murmur3_32(data, 0, data.length, seed);
+  }
+
+  /**
+   * @param data   the bytes to hash
+   * @param offset index of the first byte
+   * @param length number of bytes to hash
+   * @param seed   the seed, 0 for the standard unseeded hash
+   * @return the 32-bit MurmurHash3 of the range
+   */
+  public static int murmur3_32(byte[] data, int offset, int length, int seed) {
+    Objects.checkFromIndexSize(offset, length, data.length);
+    return murmur3_32Core(data, offset, length, seed);
+  }
+
+  /**
+   * Hashes the remaining bytes of the buffer, the buffer's position is not changed.
+   */
+  public static int murmur3_32(ByteBuffer data, int seed) {
+    return murmur3_32Core(data, data.position(), data.remaining(), seed);
+  }
+
+  public static int murmur3_32(CharSequence data) {
+    return murmur3_32Core(data, 0, data.length() * 2, 0);
+  }
+
+  public static int murmur3_32(CharSequence data, int seed) {
+    return murmur3_32Core(data, 0, data.length() * 2, seed);
+  }
+
+  public static int murmur3_32(long value) {
+    return murmur3_32(value, 0);
+  }
+
+  public static int murmur3_32(long value, int seed) {
+    int h = murmur3Mix32(seed, (int) value);
+    h = murmur3Mix32(h, (int) (value >>> 32));
+    return murmur3Fmix32(h ^ 8);
+  }
+
+  private static int murmur3_32Core(Object src, int base, int length, int seed) {
+    int h = seed;
+    int i = 0;
+    for (; i + 4 <= length; i += 4) {
+      h = murmur3Mix32(h, getInt(src, base + i));
+    }
+    int tail = length - i;
+    if (tail > 0) {
+      int k = 0;
+      for (int j = tail - 1; j >= 0; j--) {
+        k ^= getByte(src, base + i + j) << (j * 8);
+      }
+      h ^= Integer.rotateLeft(k * M32_C1, 15) * M32_C2;
+    }
+    return murmur3Fmix32(h ^ length);
+  }
+
+  private static int murmur3Mix32(int h, int k) {
+    h ^= Integer.rotateLeft(k * M32_C1, 15) * M32_C2;
+    return Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+  }
+
+  private static int murmur3Fmix32(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    return h ^ (h >>> 16);
+  }
+
+  // ---------------------------------------------------------------- murmur3 128
+
+  /**
+   * @param out receives the two 64-bit halves, {@code out[0]} is the half Guava returns from {@code asLong()}
+   */
+  public static void murmur3_128(byte[] data, long[] out) {
+    murmur3_128(data, 0, data.length, 0, out);
+  }
+
+  public static void murmur3_128(byte[] data, int seed, long[] out) {
+    murmur3_128(data, 0, data.length, seed, out);
+  }
+
+  /**
+   * @param data   the bytes to hash
+   * @param offset index of the first byte
+   * @param length number of bytes to hash
+   * @param seed   the seed, 0 for the standard unseeded hash
+   * @param out    receives the two 64-bit halves of the hash, must have a length of at least 2
+   */
+  public static void murmur3_128(byte[] data, int offset, int length, int seed, long[] out) {
+    Objects.checkFromIndexSize(offset, length, data.length);
+    murmur3_128Core(data, offset, length, seed, out);
+  }
+
+  /**
+   * Hashes the remaining bytes of the buffer, the buffer's position is not changed.
+   */
+  public static void murmur3_128(ByteBuffer data, int seed, long[] out) {
+    murmur3_128Core(data, data.position(), data.remaining(), seed, out);
+  }
+
+  public static void murmur3_128(CharSequence data, long[] out) {
+    murmur3_128Core(data, 0, data.length() * 2, 0, out);
+  }
+
+  public static void murmur3_128(CharSequence data, int seed, long[] out) {
+    murmur3_128Core(data, 0, data.length() * 2, seed, out);
+  }
+
+  public static void murmur3_128(long value, long[] out) {
+    murmur3_128(value, 0, out);
+  }
+
+  public static void murmur3_128(long value, int seed, long[] out) {
+    long h1 = seed & 0xFFFFFFFFL;
+    long h2 = h1;
+    h1 ^= Long.rotateLeft(value * M128_C1, 31) * M128_C2;
+    murmur3Finish128(h1, h2, 8, out);
+  }
+
+  private static void murmur3_128Core(Object src, int base, int length, int seed, long[] out) {
+    long h1 = seed & 0xFFFFFFFFL;
+    long h2 = h1;
+    int  i  = 0;
+    for (; i + 16 <= length; i += 16) {
+      long k1 = getLong(src, base + i);
+      long k2 = getLong(src, base + i + 8);
+      h1 ^= Long.rotateLeft(k1 * M128_C1, 31) * M128_C2;
+      h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+      h2 ^= Long.rotateLeft(k2 * M128_C2, 33) * M128_C1;
+      h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+    }
+    int tail = length - i;
+    if (tail > 8) {
+      long k2 = 0;
+      for (int j = tail - 1; j >= 8; j--) {
+        k2 ^= (long) getByte(src, base + i + j) << ((j - 8) * 8);
+      }
+      h2 ^= Long.rotateLeft(k2 * M128_C2, 33) * M128_C1;
+    }
+    if (tail > 0) {
+      long k1 = 0;
+      for (int j = Math.min(tail, 8) - 1; j >= 0; j--) {
+        k1 ^= (long) getByte(src, base + i + j) << (j * 8);
+      }
+      h1 ^= Long.rotateLeft(k1 * M128_C1, 31) * M128_C2;
+    }
+    murmur3Finish128(h1, h2, length, out);
+  }
+
+  private static void murmur3Finish128(long h1, long h2, int length, long[] out) {
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = murmur3Fmix64(h1);
+    h2 = murmur3Fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    out[0] = h1;
+    out[1] = h2;
+  }
+
+  private static long murmur3Fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    return k ^ (k >>> 33);
+  }
+
+  // ---------------------------------------------------------------- jump consistent hash
+
+  /**
+   * Jump consistent hash (Lamping and Veach): maps a key hash to one of {@code buckets} buckets so
+   * that growing from n to n + 1 buckets moves only about 1/(n + 1) of the keys, all of them into the
+   * new bucket. Buckets are numbered and can only be added or removed at the end, use a
+   * {@link HashRing} or {@link RendezvousHash} when arbitrary nodes come and go.
+   * Same result as Guava's {@code Hashing.consistentHash}.
+   *
+   * @param key     a well mixed key hash, for example from {@link #xxHash64(CharSequence)}
+   * @param buckets the number of buckets, positive
+   * @return the bucket in {@code [0, buckets)}
+   */
+  public static int jumpHash(long key, int buckets) {
+    if (buckets <= 0) {
+      throw new IllegalArgumentException("buckets must be positive");
+    }
+    long bucket = -1;
+    long next   = 0;
+    while (next < buckets) {
+      bucket = next;
+      key    = key * 2862933555777941757L + 1;
+      next   = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+    }
+    return (int) bucket;
+  }
+
+  // ---------------------------------------------------------------- little-endian access
+
+  /*
+   * The algorithms are written once against these accessors. The source is a byte[], a ByteBuffer
+   * or a CharSequence read as UTF-16LE; the type check is trivially predicted for any given call site.
+   * Multi-byte reads on a CharSequence always start at an even byte index.
+   */
+
+  private static long getLong(Object src, int index) {
+    if (src instanceof byte[] bytes) return (long) LONG_LE.get(bytes, index);
+    if (src instanceof ByteBuffer buffer) return (long) BB_LONG_LE.get(buffer, index);
+    var chars = (CharSequence) src;
+    int c     = index >>> 1;
+    return chars.charAt(c)
+           | (long) chars.charAt(c + 1) << 16
+           | (long) chars.charAt(c + 2) << 32
+           | (long) chars.charAt(c + 3) << 48;
+  }
+
+  private static int getInt(Object src, int index) {
+    if (src instanceof byte[] bytes) return (int) INT_LE.get(bytes, index);
+    if (src instanceof ByteBuffer buffer) return (int) BB_INT_LE.get(buffer, index);
+    var chars = (CharSequence) src;
+    int c     = index >>> 1;
+    return chars.charAt(c) | chars.charAt(c + 1) << 16;
+  }
+
+  private static int getByte(Object src, int index) {
+    if (src instanceof byte[] bytes) return bytes[index] & 0xFF;
+    if (src instanceof ByteBuffer buffer) return buffer.get(index) & 0xFF;
+    return (((CharSequence) src).charAt(index >>> 1) >>> ((index & 1) << 3)) & 0xFF;
+  }
+}
@@ -0,0 +1,79 @@
+package today.bonfire.oss.jutils;
+
+/**
+ * A count-min sketch of 4-bit counters that estimates how often a key was seen recently.
+ * <p>
+ * Each key maps to four counters, the estimate is the smallest of them. Once the number of recorded
+ * accesses reaches ten times the cache size every counter is halved, so old popularity fades out.
+ * Not thread-safe, callers guard it with their own lock.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS      = {
+    0x97CB3127L, 0xB1E7AE0FL, 0xC2B2AE3DL, 0x85EBCA77L};
+  private static final long   RESET_MASK = 0x7777777777777777L;
+  private static final int    MAX_COUNT  = 15;
+
+  private final long[] table;
+  private final int    tableMask;
+  private final int    sampleSize;
+  private       int    additions;
+
+  FrequencySketch(int maximumSize) {
+    int size = Integer.highestOneBit(Math.max(2, maximumSize) - 1) << 1;
+    this.table      = new long[size];
+    this.tableMask  = size - 1;
+    this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maximumSize);
+  }
+
+  /**
+   * @return the estimated number of times the key was recorded, at most 15
+   */
+  int frequency(int hashCode) {
+    int hash      = spread(hashCode);
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < SEEDS.length; i++) {
+      long counter = table[index(hash, i)] >>> offset(hash, i);
+      frequency = Math.min(frequency, (int) (counter & 0xF));
+    }
+    return frequency;
+  }
+
+  void increment(int hashCode) {
+    int     hash  = spread(hashCode);
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int idx    = index(hash, i);
+      int offset = offset(hash, i);
+      if (((table[idx] >>> offset) & 0xF) < MAX_COUNT) {
+        table[idx] += 1L << offset;
+        added = true;
+      }
+    }
+    if (added && ++additions >= sampleSize) {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      additions >>>= 1;
+    }
+  }
+
+  private int index(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & tableMask;
+  }
+
+  /**
+   * @return the bit offset of one of the 16 counters in a table entry
+   */
+  private static int offset(int hash, int i) {
+    return ((hash >>> (i << 3)) & 0xF) << 2;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45D9F3B;
+    x = ((x >>> 16) ^ x) * 0x45D9F3B;
+    return (x >>> 16) ^ x;
+  }
+}
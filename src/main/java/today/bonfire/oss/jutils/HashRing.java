@@ -0,0 +1,198 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A consistent hashing ring with virtual nodes for routing keys to shards.
+ * <p>
+ * Every node is placed on the ring at a number of points derived from a {@link Digest} of its name,
+ * so the layout is the same in every process. A key belongs to the first point at or after its hash,
+ * wrapping around. Adding a node moves only the keys that now fall on its points, about 1/n of them,
+ * and removing one moves only its own keys. More virtual nodes spread the keys more evenly; a node
+ * can be given more or fewer points than the default to weight it.
+ * <p>
+ * Keys are hashed with {@link FastHash#xxHash64}, lookups are a binary search over a snapshot of the
+ * ring and neither lock nor allocate. Adding and removing nodes builds a new snapshot under a lock.
+ * <pre>
+ * HashRing ring = Digest.hashRing(DigestHash.SHA_256, 160).add("cache-1").add("cache-2");
+ * String shard = ring.node(userId);
+ * </pre>
+ * Create one with {@link Digest#hashRing(DigestHash, int)}. Instances are thread-safe.
+ */
+public final class HashRing {
+
+  private static final State EMPTY = new State(new long[0], new String[0], Map.of());
+
+  private final DigestHash    algorithm;
+  private final int           virtualNodes;
+  private final ReentrantLock lock  = new ReentrantLock();
+  private volatile State      state = EMPTY;
+
+  HashRing(DigestHash algorithm, int virtualNodes) {
+    if (algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " needs a key and can't place ring nodes");
+    }
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive");
+    }
+    this.algorithm    = algorithm;
+    this.virtualNodes = virtualNodes;
+  }
+
+  /**
+   * Add a node with the default number of virtual nodes, or replace its points if already present.
+   *
+   * @return this ring
+   */
+  public HashRing add(String node) {
+    return add(node, virtualNodes);
+  }
+
+  /**
+   * Add a node with its own number of virtual nodes, for example twice the default for a shard with
+   * twice the capacity. Replaces the points of a node already present.
+   *
+   * @return this ring
+   */
+  public HashRing add(String node, int virtualNodes) {
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive");
+    }
+    long[] added = points(node, virtualNodes);
+    Arrays.sort(added);
+    lock.lock();
+    try {
+      var current = state.nodes.containsKey(node) ? without(state, node) : state;
+      var nodes   = new LinkedHashMap<>(current.nodes);
+      nodes.put(node, virtualNodes);
+      state = merge(current, added, node, Collections.unmodifiableMap(nodes));
+    } finally {
+      lock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Remove a node, its keys move to the nodes that follow its points.
+   *
+   * @return this ring
+   */
+  public HashRing remove(String node) {
+    lock.lock();
+    try {
+      if (state.nodes.containsKey(node)) state = without(state, node);
+    } finally {
+      lock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * @return the node owning the key, null if the ring is empty
+   */
+  public String node(CharSequence key) {
+    return node(FastHash.xxHash64(key));
+  }
+
+  /**
+   * @return the node owning the key, null if the ring is empty
+   */
+  public String node(byte[] key) {
+    return node(FastHash.xxHash64(key));
+  }
+
+  /**
+   * @param keyHash a well mixed 64-bit hash of the key
+   * @return the node owning the key, null if the ring is empty
+   */
+  public String node(long keyHash) {
+    var    current = state;
+    long[] points  = current.points;
+    if (points.length == 0) return null;
+    int idx = Arrays.binarySearch(points, keyHash);
+    if (idx < 0) idx = -idx - 1;
+    return current.owners[idx == points.length ? 0 : idx];
+  }
+
+  /**
+   * @return the nodes on the ring in the order they were added
+   */
+  public Set<String> nodes() {
+    return state.nodes.keySet();
+  }
+
+  /**
+   * @return the number of points on the ring, the sum of all virtual nodes
+   */
+  public int pointCount() {
+    return state.points.length;
+  }
+
+  private long[] points(String node, int count) {
+    var points = new long[count];
+    for (int i = 0; i < count; i++) {
+      var digest = Digest.builder(algorithm).field(node).update(i).toBytes();
+      long point = 0;
+      for (int b = 0; b < Long.BYTES; b++) {
+        point = point << 8 | (digest[b] & 0xFF);
+      }
+      points[i] = point;
+    }
+    return points;
+  }
+
+  /**
+   * Merges the sorted points of one node into the ring. Equal points are ordered by node name so the
+   * ring doesn't depend on the order nodes were added in.
+   */
+  private static State merge(State current, long[] added, String node, Map<String, Integer> nodes) {
+    int      total  = current.points.length + added.length;
+    long[]   points = new long[total];
+    String[] owners = new String[total];
+    int      i      = 0;
+    int      j      = 0;
+    for (int k = 0; k < total; k++) {
+      boolean takeCurrent = j == added.length
+                            || i < current.points.length
+                               && (current.points[i] < added[j]
+                                   || current.points[i] == added[j] && current.owners[i].compareTo(node) < 0);
+      if (takeCurrent) {
+        points[k] = current.points[i];
+        owners[k] = current.owners[i++];
+      } else {
+        points[k] = added[j++];
+        owners[k] = node;
+      }
+    }
+    return new State(points, owners, nodes);
+  }
+
+  private static State without(State current, String node) {
+    int      remaining = current.points.length - current.nodes.get(node);
+    long[]   points    = new long[remaining];
+    String[] owners    = new String[remaining];
+    int      k         = 0;
+    for (int i = 0; i < current.points.length; i++) {
+      if (!current.owners[i].equals(node)) {
+        points[k] = current.points[i];
+        owners[k] = current.owners[i];
+        k++;
+      }
+    }
+    var nodes = new LinkedHashMap<>(current.nodes);
+    nodes.remove(node);
+    return new State(points, owners, Collections.unmodifiableMap(nodes));
+  }
+
+  /**
+   * An immutable snapshot, points sorted ascending with the owner of each point at the same index.
+   */
+  private record State(long[] points, String[] owners, Map<String, Integer> nodes) {}
+}
@@ -0,0 +1,276 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A reusable HMAC signer bound to a single key and algorithm.
+ * <p>
+ * The key is processed once: a prototype {@link Mac} is initialized with it and the per-call instances
+ * are clones of that prototype, so they already carry the inner and outer pad state. Signing a message
+ * is a single digest pass with no key encoding, {@link SecretKeySpec} or {@code init} call.
+ * Instances are thread-safe and meant to be created once per key and shared.
+ * <p>
+ * Create one with {@link Digest#hmacSigner(String, DigestHash)} or {@link Digest#hmacSigner(byte[], DigestHash)}.
+ */
+public final class HmacSigner {
+
+  /**
+   * The largest MAC among the supported algorithms, HMAC-SHA-512
+   */
+  private static final int                 MAX_MAC_LENGTH = 64;
+  private static final StripedPool<byte[]> SCRATCH        = new StripedPool<>(() -> new byte[MAX_MAC_LENGTH * 2]);
+
+  private final DigestHash       algorithm;
+  private final Mac              prototype;
+  private final StripedPool<Mac> macs;
+
+  HmacSigner(byte[] key, DigestHash algorithm) {
+    if (!algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " is not an HMAC algorithm");
+    }
+    this.algorithm = algorithm;
+    try {
+      this.prototype = DigestProviders.newMac(algorithm);
+      this.prototype.init(new SecretKeySpec(key, algorithm.toString()));
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new RuntimeException("HMAC initialization failed", e);
+    }
+    this.macs = new StripedPool<>(this::newMac);
+  }
+
+  private Mac newMac() {
+    try {
+      return (Mac) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(algorithm + " provider does not support cloning", e);
+    }
+  }
+
+  /**
+   * @return the HMAC algorithm this signer was created with
+   */
+  public DigestHash algorithm() {
+    return algorithm;
+  }
+
+  /**
+   * @return the length in bytes of the signatures produced by this signer
+   */
+  public int length() {
+    return prototype.getMacLength();
+  }
+
+  /**
+   * Compute the HMAC of the given data and return the raw bytes
+   *
+   * @param data the input data as bytes
+   * @return raw HMAC value as bytes, null if data is null
+   */
+  public byte[] sign(byte[] data) {
+    if (data == null) return null;
+    Mac mac = macs.borrow();
+    try {
+      return mac.doFinal(data);
+    } finally {
+      mac.reset();
+      macs.release(mac);
+    }
+  }
+
+  /**
+   * Compute the HMAC of the given data and return the raw bytes. StandardCharsets.UTF_8 is used
+   *
+   * @param data the input data
+   * @return raw HMAC value as bytes, null if data is null
+   */
+  public byte[] sign(String data) {
+    if (data == null) return null;
+    Mac mac = macs.borrow();
+    try {
+      DigestIO.feed(data, DigestIO.Sink.of(mac));
+      return mac.doFinal();
+    } finally {
+      mac.reset();
+      macs.release(mac);
+    }
+  }
+
+  /**
+   * Compute the HMAC of the remaining bytes of the buffer. The buffer's position is not changed.
+   *
+   * @param data the input buffer
+   * @return raw HMAC value as bytes, null if data is null
+   */
+  public byte[] sign(ByteBuffer data) {
+    if (data == null) return null;
+    Mac mac = macs.borrow();
+    try {
+      mac.update(data.duplicate());
+      return mac.doFinal();
+    } finally {
+      mac.reset();
+      macs.release(mac);
+    }
+  }
+
+  /**
+   * Compute the HMAC of everything remaining in the stream. The stream is not closed.
+   *
+   * @param in the input stream
+   * @return raw HMAC value as bytes, null if input is null
+   * @throws IOException if reading the stream fails
+   */
+  public byte[] sign(InputStream in) throws IOException {
+    if (in == null) return null;
+    return signSource(DigestIO.of(in));
+  }
+
+  /**
+   * Compute the HMAC of everything remaining in the channel. The channel is not closed.
+   *
+   * @param channel the channel to read from
+   * @return raw HMAC value as bytes, null if input is null
+   * @throws IOException if reading the channel fails
+   */
+  public byte[] sign(ReadableByteChannel channel) throws IOException {
+    if (channel == null) return null;
+    return signSource(DigestIO.of(channel));
+  }
+
+  /**
+   * Compute the HMAC of a file's content with bounded memory, see {@link Digest#digest(Path, DigestHash)}.
+   *
+   * @param path the file to sign
+   * @return raw HMAC value as bytes, null if input is null
+   * @throws IOException if the file cannot be read
+   */
+  public byte[] sign(Path path) throws IOException {
+    if (path == null) return null;
+    return signSource(DigestIO.of(path));
+  }
+
+  private byte[] signSource(DigestIO.Source source) throws IOException {
+    Mac mac = macs.borrow();
+    try {
+      source.feed(DigestIO.Sink.of(mac));
+      return mac.doFinal();
+    } finally {
+      mac.reset();
+      macs.release(mac);
+    }
+  }
+
+  /**
+   * Check an encoded signature against the HMAC of the data. The expected value is decoded into a
+   * pooled buffer and compared in constant time, the computed signature is never turned into a String.
+   * Hex is accepted in either case and base64 in either the url safe or the standard alphabet.
+   *
+   * @param data            the signed data
+   * @param expectedEncoded the signature to check, for example from a request header
+   * @param encoding        the encoding of the expected signature
+   * @return true if the signature matches, false if it does not, is malformed or either input is null
+   */
+  public boolean verify(byte[] data, CharSequence expectedEncoded, Encoding encoding) {
+    if (data == null || expectedEncoded == null) return false;
+    Mac mac = macs.borrow();
+    try {
+      mac.update(data);
+      return finishAndVerify(mac, expectedEncoded, encoding);
+    } finally {
+      mac.reset();
+      macs.release(mac);
+    }
+  }
+
+  /**
+   * Same as {@link #verify(byte[], CharSequence, Encoding)} for UTF-8 encoded string data.
+   */
+  public boolean verify(String data, CharSequence expectedEncoded, Encoding encoding) {
+    if (data == null || expectedEncoded == null) return false;
+    Mac mac = macs.borrow();
+    try {
+      DigestIO.feed(data, DigestIO.Sink.of(mac));
+      return finishAndVerify(mac, expectedEncoded, encoding);
+    } finally {
+      mac.reset();
+      macs.release(mac);
+    }
+  }
+
+  /**
+   * Completes the MAC into a pooled scratch buffer and compares it with the decoded expected value.
+   */
+  static boolean finishAndVerify(Mac mac, CharSequence expectedEncoded, Encoding encoding) {
+    byte[] scratch = SCRATCH.borrow();
+    try {
+      int length = mac.getMacLength();
+      mac.doFinal(scratch, 0);
+      int decoded = BaseCodec.decode(expectedEncoded, encoding, scratch, MAX_MAC_LENGTH);
+      return decoded == length & BaseCodec.constantTimeEquals(scratch, 0, scratch, MAX_MAC_LENGTH, length);
+    } catch (ShortBufferException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      Arrays.fill(scratch, (byte) 0);
+      SCRATCH.release(scratch);
+    }
+  }
+
+  /**
+   * Compute the HMAC and return it as an upper case hexadecimal string,
+   * the same format as {@link Digest#hmacSha256Hex(String, String)}
+   *
+   * @param data the input data
+   * @return hexadecimal encoded HMAC value, null if data is null
+   */
+  public String signHex(String data) {
+    byte[] hmac = sign(data);
+    return hmac != null ? Encoder.encodeToString(hmac, Encoding.BASE16, true) : null;
+  }
+
+  /**
+   * Compute the HMAC and return it as an upper case hexadecimal string
+   *
+   * @param data the input data as bytes
+   * @return hexadecimal encoded HMAC value, null if data is null
+   */
+  public String signHex(byte[] data) {
+    byte[] hmac = sign(data);
+    return hmac != null ? Encoder.encodeToString(hmac, Encoding.BASE16, true) : null;
+  }
+
+  /**
+   * Compute the HMAC and return it base64 url encoded without padding,
+   * the same format as {@link Digest#hmacSha384(String, String)}
+   *
+   * @param data the input data
+   * @return base64 url encoded HMAC value, null if data is null
+   */
+  public String signBase64(String data) {
+    byte[] hmac = sign(data);
+    return hmac != null ? Encoder.toBase64(hmac) : null;
+  }
+
+  /**
+   * Compute the HMAC and return it base64 url encoded without padding
+   *
+   * @param data the input data as bytes
+   * @return base64 url encoded HMAC value, null if data is null
+   */
+  public String signBase64(byte[] data) {
+    byte[] hmac = sign(data);
+    return hmac != null ? Encoder.toBase64(hmac) : null;
+  }
+}
@@ -0,0 +1,587 @@
+package today.bonfire.oss.jutils;
+
+import org.jsoup.nodes.Entities;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single pass, DOM free extraction of the text {@link Encoder#htmlSafe(String)} returns, the same as
+ * {@code new Cleaner(Safelist.none()).clean(Jsoup.parse(html)).text()}.
+ * <p>
+ * It runs the HTML tokenizer states that decide which characters end up as text: tags with their
+ * attributes, comments, doctypes, CDATA, character references with jsoup's rules for missing semicolons,
+ * the raw text of script and style, which is dropped, the raw text of xmp, iframe, noembed and noframes and
+ * the escapable raw text of title and textarea, which is kept. Of the tree building it only follows what
+ * changes the text: head content is dropped, the newline after pre and listing is skipped and inside svg
+ * and math the raw text elements are ordinary elements. Whitespace is then collapsed like
+ * {@code Element.text()}.
+ * <p>
+ * A select or frameset start tag switches jsoup to an insertion mode that decides which text is kept by
+ * the open elements and by earlier tags, so {@link #strip(String)} gives up on it and the caller parses the
+ * document instead. The other known differences are in markup no editor produces: jsoup moves stray text
+ * between table tags before the table, where this keeps the document order, and it nests HTML in svg and
+ * math in ways only a tree can follow, where this goes back to HTML rules at the first HTML or integration
+ * point element.
+ */
+final class HtmlStripper {
+
+  private static final String ISINDEX_PROMPT = "This is a searchable index. Enter search keywords: ";
+
+  /**
+   * Windows-1252 replacements for the numeric references 0x80 to 0x9F
+   */
+  private static final char[] WIN1252 = {
+    '\u20AC', '\u0081', '\u201A', '\u0192', '\u201E', '\u2026', '\u2020', '\u2021',
+    '\u02C6', '\u2030', '\u0160', '\u2039', '\u0152', '\u008D', '\u017D', '\u008F',
+    '\u0090', '\u2018', '\u2019', '\u201C', '\u201D', '\u2022', '\u2013', '\u2014',
+    '\u02DC', '\u2122', '\u0161', '\u203A', '\u0153', '\u009D', '\u017E', '\u0178'
+  };
+
+  /**
+   * HTML elements that end svg and math content
+   */
+  private static final Set<String> FOREIGN_BREAKOUT = Set.of(
+    "b", "big", "blockquote", "body", "br", "center", "code", "dd", "div", "dl", "dt", "em", "embed", "h1", "h2",
+    "h3", "h4", "h5", "h6", "head", "hr", "i", "img", "li", "listing", "menu", "meta", "nobr", "ol", "p", "pre",
+    "ruby", "s", "small", "span", "strong", "strike", "sub", "sup", "table", "tt", "u", "ul", "var");
+
+  /**
+   * svg and math elements whose content follows HTML rules again
+   */
+  private static final Set<String> INTEGRATION_POINTS = Set.of(
+    "foreignobject", "desc", "title", "mi", "mo", "mn", "ms", "mtext");
+
+  private static final int EOF          = -1;
+  private static final int OPEN         = 0;
+  private static final int SELF_CLOSING = 1;
+
+  private final String        in;
+  private final int           length;
+  private final StringBuilder out;
+  private final int[]         codepoints = new int[2];
+  private       int           pos;
+  private       boolean       lastWasWhite = true;
+  private       boolean       bodyStarted;
+  private       int           foreignDepth;
+  private       boolean       needsTree;
+
+  private HtmlStripper(String in) {
+    this.in     = in;
+    this.length = in.length();
+    this.out    = new StringBuilder(length);
+  }
+
+  /**
+   * @return the text of the html, the same instance when it has no markup and no whitespace to collapse, or
+   * null when it has a select or frameset start tag, which needs jsoup's tree builder
+   */
+  static String strip(String html) {
+    return isPlainText(html) ? html : new HtmlStripper(html).run();
+  }
+
+  /**
+   * True when the text needs no work: no markup or references, nothing to collapse, remove or trim.
+   */
+  private static boolean isPlainText(String s) {
+    int length = s.length();
+    if (length == 0) return true;
+    if (s.charAt(0) <= ' ' || s.charAt(length - 1) <= ' ') return false;
+    boolean lastWasSpace = false;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c == '<' || c == '&' || c == '\u00AD' || c == '\u200B') return false;
+      if (c == ' ') {
+        if (lastWasSpace) return false;
+        lastWasSpace = true;
+      } else if (isWhitespace(c)) {
+        return false;
+      } else {
+        lastWasSpace = false;
+      }
+    }
+    return true;
+  }
+
+  private String run() {
+    while (pos < length) {
+      char c = in.charAt(pos);
+      if (c == '<') {
+        markup();
+      } else if (c == '&') {
+        reference();
+      } else {
+        emit(c);
+        pos++;
+      }
+    }
+    return needsTree ? null : trimmed();
+  }
+
+  // text output
+
+  /**
+   * Whitespace, non breaking space included, collapses to a single space, soft hyphens and zero width
+   * spaces are dropped, the same as {@code Element.text()}.
+   */
+  private void emit(int c) {
+    if (c > ' ' || !isSpace((char) c)) bodyStarted = true;
+    if (isWhitespace(c)) {
+      if (!lastWasWhite) {
+        out.append(' ');
+        lastWasWhite = true;
+      }
+      return;
+    }
+    if (c == '\u00AD' || c == '\u200B') return;
+    out.appendCodePoint(c);
+    lastWasWhite = false;
+  }
+
+  /**
+   * Emits raw text, where NUL becomes U+FFFD
+   */
+  private void emitRaw(int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = in.charAt(i);
+      emit(c == 0 ? '\uFFFD' : c);
+    }
+  }
+
+  private String trimmed() {
+    int start = 0;
+    int end   = out.length();
+    while (start < end && out.charAt(start) <= ' ') start++;
+    while (end > start && out.charAt(end - 1) <= ' ') end--;
+    return out.substring(start, end);
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0';
+  }
+
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isAsciiLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  // character references
+
+  /**
+   * Decodes the reference at {@code pos}, or emits a literal {@code '&'} when there is none.
+   */
+  private void reference() {
+    int start = pos++;
+    int cp    = pos < length && in.charAt(pos) == '#' ? numericReference() : namedReference();
+    if (cp == EOF) {
+      pos = start + 1;
+      emit('&');
+    }
+  }
+
+  private int numericReference() {
+    int     i   = pos + 1;
+    boolean hex = i < length && (in.charAt(i) == 'x' || in.charAt(i) == 'X');
+    if (hex) i++;
+    int  digitsStart = i;
+    long value       = 0;
+    for (; i < length; i++) {
+      int digit = Character.digit(in.charAt(i), hex ? 16 : 10);
+      if (digit < 0 || in.charAt(i) > 'f') break;
+      // saturate, anything above the code point range is replaced the same way
+      value = Math.min(value * (hex ? 16 : 10) + digit, 0x110000);
+    }
+    if (i == digitsStart) return EOF;
+    if (i < length && in.charAt(i) == ';') i++;
+    pos = i;
+    int cp = value > 0x10FFFF ? 0xFFFD : (int) value;
+    if (cp >= 0x80 && cp < 0xA0) cp = WIN1252[cp - 0x80];
+    emit(cp);
+    return cp;
+  }
+
+  /**
+   * A name is letters followed by digits. Without a semicolon only the legacy names decode, and a name
+   * that runs into more letters, like {@code &copyright}, is not a reference at all.
+   */
+  private int namedReference() {
+    int i = pos;
+    while (i < length && (isAsciiLetter(in.charAt(i)) || Character.isLetter(in.charAt(i)))) i++;
+    while (i < length && in.charAt(i) >= '0' && in.charAt(i) <= '9') i++;
+    if (i == pos) return EOF;
+    var     name      = in.substring(pos, i);
+    boolean semicolon = i < length && in.charAt(i) == ';';
+    if (!Entities.isBaseNamedEntity(name) && !(semicolon && Entities.isNamedEntity(name))) return EOF;
+    int count = Entities.codepointsForName(name, codepoints);
+    if (count == 0) return EOF;
+    pos = semicolon ? i + 1 : i;
+    for (int k = 0; k < count; k++) {
+      emit(codepoints[k]);
+    }
+    return codepoints[0];
+  }
+
+  // markup
+
+  private void markup() {
+    int next = pos + 1;
+    if (next >= length) {
+      emit('<');
+      pos++;
+      return;
+    }
+    char c = in.charAt(next);
+    if (isAsciiLetter(c)) {
+      startTag();
+    } else if (c == '/') {
+      endTag();
+    } else if (c == '!') {
+      declaration();
+    } else if (c == '?') {
+      skipPast('>', next);
+    } else {
+      emit('<');
+      pos++;
+    }
+  }
+
+  private void startTag() {
+    var name = tagName(pos + 1);
+    int kind = tagRest();
+    if (kind == EOF) return;
+    boolean selfClosing = kind == SELF_CLOSING;
+
+    if (!bodyStarted) {
+      switch (name) {
+        case "html", "head", "base", "basefont", "bgsound", "link", "meta" -> {
+          return;
+        }
+        case "title", "noscript", "noframes", "style", "script" -> {
+          // head content, dropped
+          if (!selfClosing) skipUntilEndTag(name, name.equals("script"));
+          return;
+        }
+        case "template" -> {
+          if (!selfClosing) skipTemplate();
+          return;
+        }
+        default -> bodyStarted = true;
+      }
+    }
+    if (foreignDepth > 0) {
+      if (!FOREIGN_BREAKOUT.contains(name)) {
+        if (name.equals("svg") || name.equals("math")) {
+          if (!selfClosing) foreignDepth++;
+        } else if (INTEGRATION_POINTS.contains(name)) {
+          foreignDepth = 0;
+        } else if (!selfClosing && (name.equals("script") || name.equals("style"))) {
+          skipUntilEndTag(name, name.equals("script"));
+        }
+        return;
+      }
+      foreignDepth = 0;
+    }
+    switch (name) {
+      case "svg", "math" -> {
+        if (!selfClosing) foreignDepth = 1;
+      }
+      case "script" -> {
+        if (!selfClosing) skipUntilEndTag(name, true);
+      }
+      case "style" -> {
+        if (!selfClosing) skipUntilEndTag(name, false);
+      }
+      case "xmp", "iframe", "noembed", "noframes" -> {
+        if (!selfClosing) rawText(name, false);
+      }
+      case "title", "textarea" -> {
+        if (!selfClosing) rawText(name, true);
+      }
+      case "pre", "listing" -> skipNewline();
+      case "select", "frameset" -> {
+        needsTree = true;
+        pos       = length;
+      }
+      case "plaintext" -> {
+        emitRaw(pos, length);
+        pos = length;
+      }
+      case "isindex" -> {
+        for (int i = 0; i < ISINDEX_PROMPT.length(); i++) {
+          emit(ISINDEX_PROMPT.charAt(i));
+        }
+      }
+      default -> {
+      }
+    }
+  }
+
+  private void endTag() {
+    int next = pos + 2;
+    if (next >= length) {
+      emit('<');
+      emit('/');
+      pos = length;
+      return;
+    }
+    char c = in.charAt(next);
+    if (c == '>') {
+      pos = next + 1;
+    } else if (isAsciiLetter(c)) {
+      var name = tagName(next);
+      if (tagRest() == EOF) return;
+      if (!bodyStarted && (name.equals("body") || name.equals("html") || name.equals("br"))) {
+        bodyStarted = true;
+      } else if (foreignDepth > 0 && (name.equals("svg") || name.equals("math"))) {
+        foreignDepth--;
+      }
+    } else {
+      skipPast('>', next);
+    }
+  }
+
+  private void declaration() {
+    int from = pos + 2;
+    if (in.startsWith("--", from)) {
+      comment(from + 2);
+    } else if (in.startsWith("[CDATA[", from)) {
+      int end = in.indexOf("]]>", from + 7);
+      int to  = end < 0 ? length : end;
+      for (int i = from + 7; i < to; i++) {
+        emit(in.charAt(i));
+      }
+      pos = end < 0 ? length : end + 3;
+    } else {
+      // doctype or bogus comment
+      skipPast('>', from);
+    }
+  }
+
+  private void comment(int from) {
+    if (from < length && in.charAt(from) == '>') {
+      pos = from + 1;
+      return;
+    }
+    if (in.startsWith("->", from)) {
+      pos = from + 2;
+      return;
+    }
+    for (int i = from; ; i++) {
+      i = in.indexOf("--", i);
+      if (i < 0) {
+        pos = length;
+        return;
+      }
+      if (in.startsWith(">", i + 2)) {
+        pos = i + 3;
+        return;
+      }
+      if (in.startsWith("!>", i + 2)) {
+        pos = i + 4;
+        return;
+      }
+    }
+  }
+
+  private void skipPast(char c, int from) {
+    int i = in.indexOf(c, from);
+    pos = i < 0 ? length : i + 1;
+  }
+
+  private void skipNewline() {
+    if (pos < length && in.charAt(pos) == '\n') pos++;
+  }
+
+  /**
+   * Reads the tag name starting at {@code from} and leaves {@code pos} after it.
+   */
+  private String tagName(int from) {
+    int i = from;
+    while (i < length) {
+      char c = in.charAt(i);
+      if (isSpace(c) || c == '/' || c == '>' || c == '<') break;
+      i++;
+    }
+    pos = i;
+    return in.substring(from, i).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Skips the attributes and the closing {@code '>'} of a tag, with quoted values that may hold {@code '>'}.
+   * Like jsoup, a {@code '<'} where the next attribute name would start ends the tag and is read again.
+   *
+   * @return whether the tag is self closing, or {@link #EOF} when the input ends inside the tag, which
+   * drops it
+   */
+  private int tagRest() {
+    int     i         = pos;
+    boolean afterName = false;
+    while (true) {
+      while (i < length && isSpace(in.charAt(i))) i++;
+      if (i >= length) break;
+      char c = in.charAt(i);
+      if (c == '>') {
+        pos = i + 1;
+        return OPEN;
+      }
+      if (c == '<' && !afterName) {
+        pos = i;
+        return OPEN;
+      }
+      afterName = false;
+      if (c == '/') {
+        if (++i < length && in.charAt(i) == '>') {
+          pos = i + 1;
+          return SELF_CLOSING;
+        }
+        continue;
+      }
+      // attribute name, its first character may be anything
+      i++;
+      while (i < length && !isSpace(c = in.charAt(i)) && c != '/' && c != '>' && c != '=') i++;
+      while (i < length && isSpace(in.charAt(i))) i++;
+      if (i >= length) break;
+      if (in.charAt(i) != '=') {
+        afterName = true;
+        continue;
+      }
+      i++;
+      while (i < length && isSpace(in.charAt(i))) i++;
+      if (i >= length) break;
+      c = in.charAt(i);
+      if (c == '"' || c == '\'') {
+        int close = in.indexOf(c, i + 1);
+        if (close < 0) break;
+        i = close + 1;
+      } else if (c != '>') {
+        while (i < length && !isSpace(c = in.charAt(i)) && c != '>') i++;
+      }
+    }
+    pos = length;
+    return EOF;
+  }
+
+  /**
+   * Emits the content up to the end tag, with references decoded for title and textarea.
+   */
+  private void rawText(String name, boolean references) {
+    int end = findEndTag(name, pos);
+    int to  = end >= 0 ? end : references ? unclosedEnd(name) : length;
+    while (pos < to) {
+      char c = in.charAt(pos);
+      if (references && c == '&') {
+        reference();
+        // a reference never reaches into the end tag, its name stops at '<'
+      } else {
+        emit(c == 0 ? '\uFFFD' : c);
+        pos++;
+      }
+    }
+    if (end >= 0) {
+      tagName(end + 2);
+      tagRest();
+    }
+  }
+
+  /**
+   * Skips the content and the end tag. Script content follows the comment like escapes, inside which
+   * a nested {@code <script>} hides the next {@code </script>}.
+   */
+  private void skipUntilEndTag(String name, boolean script) {
+    int end;
+    if (script) {
+      end = findScriptEnd(pos);
+    } else {
+      end = findEndTag(name, pos);
+    }
+    if (end < 0) {
+      pos = name.equals("title") ? unclosedEnd(name) : length;
+      return;
+    }
+    tagName(end + 2);
+    tagRest();
+  }
+
+  /**
+   * Where a title or textarea without end tag stops: jsoup ends it at the first tag that no
+   * {@code "</name"} follows, instead of at the end of the input.
+   */
+  private int unclosedEnd(String name) {
+    var seq  = "</" + name;
+    int last = length - seq.length();
+    while (last >= pos && !in.regionMatches(true, last, seq, 0, seq.length())) last--;
+    for (int i = Math.max(pos, last + 1); ; i++) {
+      i = in.indexOf('<', i);
+      if (i < 0 || i + 1 >= length) return length;
+      if (isAsciiLetter(in.charAt(i + 1))) return i;
+    }
+  }
+
+  private void skipTemplate() {
+    int depth = 1;
+    int i     = pos;
+    while (depth > 0) {
+      i = in.indexOf('<', i);
+      if (i < 0) {
+        pos = length;
+        return;
+      }
+      if (isTag(i, "<", "template")) {
+        depth++;
+      } else if (isTag(i, "</", "template")) {
+        depth--;
+      }
+      i++;
+    }
+    tagName(i + 1);
+    tagRest();
+  }
+
+  private int findEndTag(String name, int from) {
+    for (int i = from; ; i++) {
+      i = in.indexOf("</", i);
+      if (i < 0 || isTag(i, "</", name)) return i;
+    }
+  }
+
+  private int findScriptEnd(int from) {
+    boolean escaped       = false;
+    boolean doubleEscaped = false;
+    for (int i = from; i < length; i++) {
+      char c = in.charAt(i);
+      if (c == '<') {
+        if (isTag(i, "</", "script")) {
+          if (!doubleEscaped) return i;
+          doubleEscaped = false;
+        } else if (!escaped && in.startsWith("<!--", i)) {
+          escaped = true;
+          i += 3;
+        } else if (escaped && isTag(i, "<", "script")) {
+          doubleEscaped = true;
+        }
+      } else if (c == '-' && escaped && in.startsWith("-->", i)) {
+        escaped       = false;
+        doubleEscaped = false;
+        i += 2;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * True when {@code prefix} and the tag name, in any case, start at {@code i} and are followed by
+   * whitespace, {@code '/'} or {@code '>'}.
+   */
+  private boolean isTag(int i, String prefix, String name) {
+    int after = i + prefix.length() + name.length();
+    if (after >= length || !in.startsWith(prefix, i)
+        || !in.regionMatches(true, i + prefix.length(), name, 0, name.length())) {
+      return false;
+    }
+    char c = in.charAt(after);
+    return isSpace(c) || c == '/' || c == '>';
+  }
+}
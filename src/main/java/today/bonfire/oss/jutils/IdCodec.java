@@ -0,0 +1,477 @@
+package today.bonfire.oss.jutils;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Compact text for numeric IDs in URLs: {@code long}, {@code int} and {@link UUID} values straight to base62,
+ * Crockford base32 or base58 and back, plus ZigZag and varint for binary forms.
+ * <p>
+ * Values are read as unsigned. The shortest form drops leading zero digits, the fixed width form keeps them
+ * up to the width of the type. Every alphabet is in ASCII order, so fixed width strings sort the same as the
+ * unsigned values, which keeps database index locality for IDs that grow over time. UUIDs are always fixed
+ * width and sort like their 16 bytes, not like {@link UUID#compareTo}, which compares signed halves.
+ * <p>
+ * Digits come from lookup tables: base32 by shifting, base62 and base58 by division, with 128 bit values held
+ * as four 32 bit limbs, so there is no {@link java.math.BigInteger} and no intermediate array. The only
+ * allocation is the result String, none for the array methods.
+ */
+public final class IdCodec {
+
+  private static final long LIMB = 0xFFFFFFFFL;
+
+  private IdCodec() {}
+
+  public enum Alphabet {
+    /**
+     * digits, upper case then lower case letters
+     */
+    BASE62("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"),
+    /**
+     * Crockford's base32, digits and upper case letters without I, L, O and U. Decoding ignores case and
+     * reads I and L as 1 and O as 0.
+     */
+    CROCKFORD32("0123456789ABCDEFGHJKMNPQRSTVWXYZ"),
+    /**
+     * the Bitcoin base58 alphabet, base62 without 0, O, I and l
+     */
+    BASE58("123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz");
+
+    private final byte[] digits;
+    private final byte[] values = new byte[128];
+    private final int    radix;
+    /**
+     * Bits per digit when the radix is a power of two, 0 otherwise
+     */
+    private final int    shift;
+    /**
+     * radix^k as unsigned longs, up to the last power that fits
+     */
+    private final long[] powers;
+    /**
+     * The largest unsigned long that can take another digit without overflow
+     */
+    private final long   maxBeforeDigit;
+    /**
+     * The largest power of the radix below 2^31, so a remainder shifted by 32 bits still fits a long
+     */
+    private final long   chunk;
+    private final int    chunkDigits;
+    private final int    intWidth;
+    private final int    longWidth;
+    private final int    uuidWidth;
+
+    Alphabet(String digits) {
+      this.digits = digits.getBytes(StandardCharsets.ISO_8859_1);
+      this.radix  = digits.length();
+      this.shift  = Integer.bitCount(radix) == 1 ? Integer.numberOfTrailingZeros(radix) : 0;
+      Arrays.fill(values, (byte) -1);
+      for (int i = 0; i < radix; i++) {
+        char c = digits.charAt(i);
+        values[c] = (byte) i;
+        if (shift != 0) values[Character.toLowerCase(c)] = (byte) i;
+      }
+      if (shift != 0) {
+        values['I'] = values['i'] = values['L'] = values['l'] = 1;
+        values['O'] = values['o'] = 0;
+      }
+      this.intWidth       = width(32);
+      this.longWidth      = width(64);
+      this.uuidWidth      = width(128);
+      this.maxBeforeDigit = Long.divideUnsigned(-1L, radix);
+      this.powers         = new long[longWidth];
+      powers[0] = 1;
+      for (int i = 1; i < longWidth; i++) {
+        powers[i] = powers[i - 1] * radix;
+      }
+      long c = radix;
+      int  k = 1;
+      while (c * radix < Integer.MAX_VALUE) {
+        c *= radix;
+        k++;
+      }
+      this.chunk       = c;
+      this.chunkDigits = k;
+    }
+
+    private int width(int bits) {
+      return (int) Math.ceil(bits / (Math.log(radix) / Math.log(2)));
+    }
+
+    /**
+     * @return the number of digits of a fixed width {@code int}
+     */
+    public int intWidth() {
+      return intWidth;
+    }
+
+    /**
+     * @return the number of digits of a fixed width {@code long}
+     */
+    public int longWidth() {
+      return longWidth;
+    }
+
+    /**
+     * @return the number of digits of a UUID
+     */
+    public int uuidWidth() {
+      return uuidWidth;
+    }
+
+    private int digit(char c) {
+      return c < 128 ? values[c] : -1;
+    }
+  }
+
+  // ---------------------------------------------------------------- long and int
+
+  /**
+   * @return the unsigned value in the fewest digits, "0" for zero
+   */
+  public static String encode(long value, Alphabet alphabet) {
+    var out = new byte[length(value, alphabet)];
+    writeDigits(value, alphabet, out, 0, out.length);
+    return new String(out, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * @return the unsigned value in {@link Alphabet#longWidth()} digits, ordered like {@link Long#compareUnsigned}
+   */
+  public static String encodeFixed(long value, Alphabet alphabet) {
+    var out = new byte[alphabet.longWidth];
+    writeDigits(value, alphabet, out, 0, out.length);
+    return new String(out, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * @return the unsigned value in the fewest digits, "0" for zero
+   */
+  public static String encode(int value, Alphabet alphabet) {
+    return encode(Integer.toUnsignedLong(value), alphabet);
+  }
+
+  /**
+   * @return the unsigned value in {@link Alphabet#intWidth()} digits, ordered like {@link Integer#compareUnsigned}
+   */
+  public static String encodeFixed(int value, Alphabet alphabet) {
+    var out = new byte[alphabet.intWidth];
+    writeDigits(Integer.toUnsignedLong(value), alphabet, out, 0, out.length);
+    return new String(out, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Writes the shortest form as ASCII into a caller supplied array, without allocating.
+   *
+   * @return the number of bytes written, at most {@link Alphabet#longWidth()}
+   * @throws IndexOutOfBoundsException if the digits don't fit into dst, nothing is written then
+   */
+  public static int encode(long value, Alphabet alphabet, byte[] dst, int offset) {
+    int length = length(value, alphabet);
+    Objects.checkFromIndexSize(offset, length, dst.length);
+    writeDigits(value, alphabet, dst, offset, length);
+    return length;
+  }
+
+  /**
+   * Writes the fixed width form as ASCII into a caller supplied array, without allocating.
+   *
+   * @return the number of bytes written, {@link Alphabet#longWidth()}
+   * @throws IndexOutOfBoundsException if the digits don't fit into dst, nothing is written then
+   */
+  public static int encodeFixed(long value, Alphabet alphabet, byte[] dst, int offset) {
+    Objects.checkFromIndexSize(offset, alphabet.longWidth, dst.length);
+    writeDigits(value, alphabet, dst, offset, alphabet.longWidth);
+    return alphabet.longWidth;
+  }
+
+  /**
+   * Decodes the shortest or the fixed width form, or any other number of leading zero digits.
+   *
+   * @return the unsigned value
+   * @throws IllegalArgumentException if value is empty, has a character outside the alphabet or exceeds
+   *                                  64 bits
+   */
+  public static long decodeLong(CharSequence value, Alphabet alphabet) {
+    int length = value.length();
+    if (length == 0) throw invalid(value, alphabet);
+    long result = 0;
+    for (int i = 0; i < length; i++) {
+      int digit = alphabet.digit(value.charAt(i));
+      if (digit < 0) throw invalid(value, alphabet);
+      long next = result * alphabet.radix + digit;
+      // multiplying loses the high bits exactly when the value gets smaller than what it was built from
+      if (Long.compareUnsigned(result, alphabet.maxBeforeDigit) > 0
+          || Long.compareUnsigned(next, digit) < 0) {
+        throw overflow(value, 64);
+      }
+      result = next;
+    }
+    return result;
+  }
+
+  /**
+   * Decodes the shortest or the fixed width form of an {@code int}.
+   *
+   * @return the unsigned value
+   * @throws IllegalArgumentException if value is empty, has a character outside the alphabet or exceeds
+   *                                  32 bits
+   */
+  public static int decodeInt(CharSequence value, Alphabet alphabet) {
+    long result = decodeLong(value, alphabet);
+    if (result >>> 32 != 0) throw overflow(value, 32);
+    return (int) result;
+  }
+
+  private static int length(long value, Alphabet alphabet) {
+    if (alphabet.shift != 0) {
+      return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + alphabet.shift - 1) / alphabet.shift);
+    }
+    int n = 1;
+    while (n < alphabet.longWidth && Long.compareUnsigned(value, alphabet.powers[n]) >= 0) n++;
+    return n;
+  }
+
+  /**
+   * Writes the lowest {@code width} digits, the last one first
+   */
+  private static void writeDigits(long value, Alphabet alphabet, byte[] dst, int offset, int width) {
+    byte[] digits = alphabet.digits;
+    int    pos    = offset + width;
+    if (alphabet.shift != 0) {
+      int mask = alphabet.radix - 1;
+      while (pos > offset) {
+        dst[--pos] = digits[(int) value & mask];
+        value >>>= alphabet.shift;
+      }
+      return;
+    }
+    // a constant radix once inlined, which the JIT turns into a multiplication
+    switch (alphabet) {
+      case BASE62 -> writeDivided(value, 62, digits, dst, offset, pos);
+      case BASE58 -> writeDivided(value, 58, digits, dst, offset, pos);
+      default -> writeDivided(value, alphabet.radix, digits, dst, offset, pos);
+    }
+  }
+
+  private static void writeDivided(long value, int radix, byte[] digits, byte[] dst, int offset, int pos) {
+    if (value < 0) {
+      // one unsigned step, then the value fits the faster signed division
+      long q = Long.divideUnsigned(value, radix);
+      dst[--pos] = digits[(int) (value - q * radix)];
+      value      = q;
+    }
+    while (pos > offset) {
+      long q = value / radix;
+      dst[--pos] = digits[(int) (value - q * radix)];
+      value      = q;
+    }
+  }
+
+  // ---------------------------------------------------------------- UUID
+
+  /**
+   * @return the 128 bits of the UUID in {@link Alphabet#uuidWidth()} digits, ordered like its bytes
+   */
+  public static String encode(UUID uuid, Alphabet alphabet) {
+    var out = new byte[alphabet.uuidWidth];
+    writeDigits(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), alphabet, out, 0);
+    return new String(out, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Writes the UUID as ASCII into a caller supplied array, without allocating.
+   *
+   * @return the number of bytes written, {@link Alphabet#uuidWidth()}
+   * @throws IndexOutOfBoundsException if the digits don't fit into dst, nothing is written then
+   */
+  public static int encode(UUID uuid, Alphabet alphabet, byte[] dst, int offset) {
+    Objects.checkFromIndexSize(offset, alphabet.uuidWidth, dst.length);
+    writeDigits(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), alphabet, dst, offset);
+    return alphabet.uuidWidth;
+  }
+
+  /**
+   * Decodes a UUID, leading zero digits may be left out.
+   *
+   * @throws IllegalArgumentException if value is empty, has a character outside the alphabet or exceeds
+   *                                  128 bits
+   */
+  public static UUID decodeUuid(CharSequence value, Alphabet alphabet) {
+    int length = value.length();
+    if (length == 0) throw invalid(value, alphabet);
+    long a = 0, b = 0, c = 0, d = 0;
+    for (int i = 0; i < length; i++) {
+      int digit = alphabet.digit(value.charAt(i));
+      if (digit < 0) throw invalid(value, alphabet);
+      d = d * alphabet.radix + digit;
+      c = c * alphabet.radix + (d >>> 32);
+      b = b * alphabet.radix + (c >>> 32);
+      a = a * alphabet.radix + (b >>> 32);
+      d &= LIMB;
+      c &= LIMB;
+      b &= LIMB;
+      if (a >>> 32 != 0) throw overflow(value, 128);
+    }
+    return new UUID(a << 32 | b, c << 32 | d);
+  }
+
+  private static void writeDigits(long high, long low, Alphabet alphabet, byte[] dst, int offset) {
+    byte[] digits = alphabet.digits;
+    int    pos    = offset + alphabet.uuidWidth;
+    if (alphabet.shift != 0) {
+      int mask  = alphabet.radix - 1;
+      int shift = alphabet.shift;
+      while (pos > offset) {
+        dst[--pos] = digits[(int) low & mask];
+        low        = low >>> shift | high << (64 - shift);
+        high >>>= shift;
+      }
+      return;
+    }
+    // divide the four limbs by the largest power of the radix that keeps each step in a long,
+    // the remainder then gives that many digits with int sized divisions
+    long a = high >>> 32, b = high & LIMB, c = low >>> 32, d = low & LIMB;
+    long chunk = alphabet.chunk;
+    int  radix = alphabet.radix;
+    while (pos > offset) {
+      long r = a % chunk;
+      a /= chunk;
+      long t = r << 32 | b;
+      b = t / chunk;
+      t = (t % chunk) << 32 | c;
+      c = t / chunk;
+      t = (t % chunk) << 32 | d;
+      d = t / chunk;
+      int rem = (int) (t % chunk);
+      for (int k = 0; k < alphabet.chunkDigits && pos > offset; k++) {
+        dst[--pos] = digits[rem % radix];
+        rem /= radix;
+      }
+    }
+  }
+
+  // ---------------------------------------------------------------- ZigZag and varint
+
+  /**
+   * Maps signed to unsigned so small magnitudes stay small: 0, -1, 1, -2 become 0, 1, 2, 3.
+   */
+  public static long zigZag(long value) {
+    return value << 1 ^ value >> 63;
+  }
+
+  public static long unZigZag(long value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  public static int zigZag(int value) {
+    return value << 1 ^ value >> 31;
+  }
+
+  public static int unZigZag(int value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  /**
+   * @return the number of bytes of the unsigned varint, 1 to 10
+   */
+  public static int varLongSize(long value) {
+    return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+  }
+
+  /**
+   * Writes the value as an unsigned LEB128 varint, the protobuf encoding, 7 bits per byte with the low
+   * bits first. Combine with {@link #zigZag(long)} for signed values.
+   *
+   * @return the number of bytes written, {@link #varLongSize(long)}
+   * @throws IndexOutOfBoundsException if the varint doesn't fit into dst, nothing is written then
+   */
+  public static int writeVarLong(long value, byte[] dst, int offset) {
+    int size = varLongSize(value);
+    Objects.checkFromIndexSize(offset, size, dst.length);
+    for (int i = offset, end = offset + size - 1; i < end; i++) {
+      dst[i] = (byte) (value | 0x80);
+      value >>>= 7;
+    }
+    dst[offset + size - 1] = (byte) value;
+    return size;
+  }
+
+  /**
+   * Reads a varint written by {@link #writeVarLong}. It takes {@link #varLongSize(long)} bytes of the result,
+   * as only the shortest encoding is accepted.
+   *
+   * @throws IllegalArgumentException if the varint is longer than 10 bytes, not the shortest encoding or
+   *                                  runs past the end of src
+   */
+  public static long readVarLong(byte[] src, int offset) {
+    Objects.checkIndex(offset, src.length);
+    long result = 0;
+    for (int i = offset, shift = 0; i < src.length && shift < 64; i++, shift += 7) {
+      byte b = src[i];
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        checkShortest(b, i - offset, shift);
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("malformed varint at index " + offset);
+  }
+
+  /**
+   * Writes the value as a varint at the buffer's position, see {@link #writeVarLong}.
+   *
+   * @throws BufferOverflowException if the buffer has less room than {@link #varLongSize(long)}, nothing
+   *                                 is written then
+   */
+  public static void putVarLong(long value, ByteBuffer dst) {
+    if (varLongSize(value) > dst.remaining()) throw new BufferOverflowException();
+    while ((value & ~0x7FL) != 0) {
+      dst.put((byte) (value | 0x80));
+      value >>>= 7;
+    }
+    dst.put((byte) value);
+  }
+
+  /**
+   * Reads a varint at the buffer's position and advances it, see {@link #readVarLong}.
+   *
+   * @throws BufferUnderflowException if the varint runs past the limit
+   * @throws IllegalArgumentException if the varint is longer than 10 bytes or not the shortest encoding
+   */
+  public static long getVarLong(ByteBuffer src) {
+    long result = 0;
+    for (int shift = 0, n = 0; shift < 64; shift += 7, n++) {
+      byte b = src.get();
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        checkShortest(b, n, shift);
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("malformed varint, longer than 10 bytes");
+  }
+
+  /**
+   * A last byte of zero after others, or bits beyond 64 in the tenth byte, mean a longer than needed or
+   * overflowing encoding.
+   */
+  private static void checkShortest(byte last, int index, int shift) {
+    if ((index > 0 && last == 0) || (shift == 63 && last > 1)) {
+      throw new IllegalArgumentException("malformed varint, not the shortest encoding of a 64 bit value");
+    }
+  }
+
+  private static IllegalArgumentException invalid(CharSequence value, Alphabet alphabet) {
+    return new IllegalArgumentException("invalid " + alphabet + " value: " + value);
+  }
+
+  private static IllegalArgumentException overflow(CharSequence value, int bits) {
+    return new IllegalArgumentException("value exceeds " + bits + " bits: " + value);
+  }
+}
@@ -0,0 +1,145 @@
+package today.bonfire.oss.jutils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link VectorCodec} on 256 bit vectors. Only loaded by {@link VectorCodec#load()} when the
+ * {@code jdk.incubator.vector} module is present.
+ * <p>
+ * Characters are computed rather than looked up: a hex digit is {@code '0' + n}, plus the gap to the letters
+ * when {@code n > 9}, a base32 digit is {@code 'a' + n}, minus the gap to {@code '2'} when {@code n > 25}.
+ * Decoding checks a whole vector of chars against the alphabet ranges with one branch. Base32 splits the 40 bits
+ * of a group into halves, quarters and 5 bit values in three lane wise steps, and joins them back the same way.
+ * Every reinterpret names its species, so the JIT compiles it to a plain register move even when the
+ * generic reinterpret methods have seen other shapes.
+ */
+final class IncubatorVectorCodec extends VectorCodec {
+
+  private static final VectorSpecies<Byte>  BYTES_64  = ByteVector.SPECIES_64;
+  private static final VectorSpecies<Byte>  BYTES_128 = ByteVector.SPECIES_128;
+  private static final VectorSpecies<Byte>  BYTES_256 = ByteVector.SPECIES_256;
+  private static final VectorSpecies<Short> SHORTS    = ShortVector.SPECIES_256;
+
+  /**
+   * Spreads 4 groups of 5 bytes into the 4 longs of a vector, each group's bytes reversed in the low 40 bits,
+   * so the long holds the group big endian as in the scalar loop
+   */
+  private static final VectorShuffle<Byte> SPREAD_GROUPS = VectorShuffle.fromOp(BYTES_256, j -> {
+    int group = j / 8;
+    int k     = j % 8;
+    return k < 5 ? group * 5 + 4 - k : 0;
+  });
+  /**
+   * Packs the 5 bytes in the low 40 bits of both longs, reversed, next to each other
+   */
+  private static final VectorShuffle<Byte> PACK_GROUPS   = VectorShuffle.fromOp(BYTES_128, j -> {
+    if (j >= 10) return 0;
+    return j < 5 ? 4 - j : 8 + 9 - j;
+  });
+
+  @Override
+  boolean isSupported() {
+    return ByteVector.SPECIES_PREFERRED.vectorBitSize() >= 256;
+  }
+
+  @Override
+  int encodeBase16(byte[] src, int offset, int length, boolean upperCase, byte[] dst, int dstOffset) {
+    short letterGap = (short) (upperCase ? 'A' - '0' - 10 : 'a' - '0' - 10);
+    int   step      = BYTES_128.length();
+    int   i         = 0;
+    for (int out = dstOffset; i + step <= length; i += step, out += 2 * step) {
+      var bytes = (ShortVector) ByteVector.fromArray(BYTES_128, src, offset + i)
+                                          .convertShape(VectorOperators.B2S, SHORTS, 0);
+      bytes = bytes.and((short) 0xFF);
+      var high = hexDigits(bytes.lanewise(VectorOperators.LSHR, 4), letterGap);
+      var low  = hexDigits(bytes.and((short) 0xF), letterGap);
+      // the first char in the low byte of each short
+      ((ByteVector) high.or(low.lanewise(VectorOperators.LSHL, 8)).reinterpretShape(BYTES_256, 0)).intoArray(dst, out);
+    }
+    return i;
+  }
+
+  private static ShortVector hexDigits(ShortVector nibbles, short letterGap) {
+    var letters = nibbles.compare(VectorOperators.GT, (short) 9);
+    return nibbles.add((short) '0').add(ShortVector.broadcast(SHORTS, letterGap), letters);
+  }
+
+  @Override
+  int encodeBase32(byte[] src, int offset, int length, boolean upperCase, byte[] dst, int dstOffset) {
+    byte first    = (byte) (upperCase ? 'A' : 'a');
+    byte digitGap = (byte) ('2' - 26 - first);
+    int  groups   = BYTES_256.length() / 8;
+    int  i        = 0;
+    // the vector load reads past the groups it encodes
+    for (int out = dstOffset; i + BYTES_256.length() <= length; i += groups * 5, out += groups * 8) {
+      var bits     = (LongVector) ByteVector.fromArray(BYTES_256, src, offset + i).rearrange(SPREAD_GROUPS)
+                                            .reinterpretShape(LongVector.SPECIES_256, 0);
+      // each step puts the first half of every lane into the lower half of the lane
+      var halves   = (IntVector) bits.lanewise(VectorOperators.LSHR, 20).and(0xFFFFFL)
+                                     .or(bits.and(0xFFFFFL).lanewise(VectorOperators.LSHL, 32))
+                                     .reinterpretShape(IntVector.SPECIES_256, 0);
+      var quarters = (ShortVector) halves.lanewise(VectorOperators.LSHR, 10)
+                                         .or(halves.and(0x3FF).lanewise(VectorOperators.LSHL, 16))
+                                         .reinterpretShape(SHORTS, 0);
+      var values   = (ByteVector) quarters.lanewise(VectorOperators.LSHR, 5)
+                                          .or(quarters.and((short) 0x1F).lanewise(VectorOperators.LSHL, 8))
+                                          .reinterpretShape(BYTES_256, 0);
+      values.add(first).add(digitGap, values.compare(VectorOperators.GT, (byte) 25)).intoArray(dst, out);
+    }
+    return i;
+  }
+
+  @Override
+  int decodeBase16(char[] src, int offset, int length, byte[] dst, int dstOffset) {
+    int step = SHORTS.length();
+    int i    = 0;
+    for (int out = dstOffset; i + step <= length; i += step, out += step / 2) {
+      var chars   = ShortVector.fromCharArray(SHORTS, src, offset + i);
+      var digits  = chars.sub((short) '0');
+      var letters = chars.or((short) 0x20).sub((short) ('a' - 10));
+      var isDigit = digits.compare(VectorOperators.UNSIGNED_LT, (short) 10);
+      VectorMask<Short> valid = isDigit.or(letters.sub((short) 10).compare(VectorOperators.UNSIGNED_LT, (short) 6));
+      if (!valid.allTrue()) return -1;
+      // each int holds the high nibble in its low short and the low nibble in its high short
+      var nibbles = (IntVector) letters.blend(digits, isDigit).reinterpretShape(IntVector.SPECIES_256, 0);
+      var bytes   = nibbles.lanewise(VectorOperators.LSHL, 4).or(nibbles.lanewise(VectorOperators.LSHR, 16)).and(0xFF);
+      ((ByteVector) bytes.convertShape(VectorOperators.I2B, BYTES_64, 0)).intoArray(dst, out);
+    }
+    return i;
+  }
+
+  @Override
+  int decodeBase32(char[] src, int offset, int length, byte[] dst, int dstOffset) {
+    int step = SHORTS.length();
+    int i    = 0;
+    // the 16 byte store writes 6 bytes past the 10 decoded, which the next step or the caller overwrites
+    for (int out = dstOffset; i + 2 * step <= length; i += step, out += step / 8 * 5) {
+      var chars   = ShortVector.fromCharArray(SHORTS, src, offset + i);
+      var letters = chars.or((short) 0x20).sub((short) 'a');
+      var digits  = chars.sub((short) ('2' - 26));
+      var isDigit = digits.sub((short) 26).compare(VectorOperators.UNSIGNED_LT, (short) 6);
+      VectorMask<Short> valid = isDigit.or(letters.compare(VectorOperators.UNSIGNED_LT, (short) 26));
+      if (!valid.allTrue()) return -1;
+      var values   = (ShortVector) letters.blend(digits, isDigit).convertShape(VectorOperators.S2B, BYTES_128, 0)
+                                          .reinterpretShape(ShortVector.SPECIES_128, 0);
+      // each step joins the value in the lower half of every lane, shifted up, with the one in the upper half
+      var quarters = (IntVector) values.lanewise(VectorOperators.LSHL, 5).and((short) 0x3E0)
+                                       .or(values.lanewise(VectorOperators.LSHR, 8))
+                                       .reinterpretShape(IntVector.SPECIES_128, 0);
+      var halves   = (LongVector) quarters.lanewise(VectorOperators.LSHL, 10).and(0xFFC00)
+                                          .or(quarters.lanewise(VectorOperators.LSHR, 16))
+                                          .reinterpretShape(LongVector.SPECIES_128, 0);
+      var bits     = halves.lanewise(VectorOperators.LSHL, 20).and(0xFF_FFF0_0000L)
+                           .or(halves.lanewise(VectorOperators.LSHR, 32));
+      ((ByteVector) bits.reinterpretShape(BYTES_128, 0)).rearrange(PACK_GROUPS).intoArray(dst, out);
+    }
+    return i;
+  }
+}
@@ -0,0 +1,196 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Key derivation functions behind {@link PasswordHasher}: PBKDF2 (RFC 8018) and scrypt (RFC 7914).
+ * Both work on raw password bytes and clear their intermediate buffers before returning.
+ */
+final class Kdf {
+
+  private Kdf() {}
+
+  /**
+   * @param algorithm an HMAC algorithm
+   */
+  static byte[] pbkdf2(DigestHash algorithm, byte[] password, byte[] salt, int iterations, int length) {
+    Mac mac;
+    try {
+      mac = DigestProviders.newMac(algorithm);
+      // HMAC zero pads the key to the block size, so an empty key is the same as a single zero byte,
+      // which SecretKeySpec does accept
+      mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, algorithm.toString()));
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new RuntimeException("PBKDF2 initialization failed", e);
+    }
+    int    hLen  = mac.getMacLength();
+    byte[] out   = new byte[length];
+    byte[] u     = new byte[hLen];
+    byte[] t     = new byte[hLen];
+    byte[] index = new byte[4];
+    try {
+      for (int block = 1, offset = 0; offset < length; block++, offset += hLen) {
+        index[0] = (byte) (block >>> 24);
+        index[1] = (byte) (block >>> 16);
+        index[2] = (byte) (block >>> 8);
+        index[3] = (byte) block;
+        mac.update(salt);
+        mac.update(index);
+        mac.doFinal(u, 0);
+        System.arraycopy(u, 0, t, 0, hLen);
+        for (int i = 1; i < iterations; i++) {
+          mac.update(u);
+          mac.doFinal(u, 0);
+          for (int k = 0; k < hLen; k++) {
+            t[k] ^= u[k];
+          }
+        }
+        System.arraycopy(t, 0, out, offset, Math.min(hLen, length - offset));
+      }
+    } catch (ShortBufferException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      Arrays.fill(u, (byte) 0);
+      Arrays.fill(t, (byte) 0);
+    }
+    return out;
+  }
+
+  /**
+   * @param n the CPU/memory cost, a power of two greater than 1
+   * @param r the block size
+   * @param p the parallelization, the lanes are computed one after another
+   */
+  static byte[] scrypt(byte[] password, byte[] salt, int n, int r, int p, int length) {
+    int    words = 32 * r;
+    byte[] b     = pbkdf2(DigestHash.HMAC_SHA_256, password, salt, 1, p * 128 * r);
+    int[]  x     = new int[words];
+    int[]  y     = new int[words];
+    int[]  v     = new int[words * n];
+    int[]  t     = new int[16];
+    try {
+      for (int lane = 0; lane < p; lane++) {
+        int base = lane * 128 * r;
+        for (int k = 0; k < words; k++) {
+          x[k] = readIntLE(b, base + k * 4);
+        }
+        roMix(x, y, v, t, n, r);
+        for (int k = 0; k < words; k++) {
+          writeIntLE(b, base + k * 4, x[k]);
+        }
+      }
+      return pbkdf2(DigestHash.HMAC_SHA_256, password, b, 1, length);
+    } finally {
+      Arrays.fill(b, (byte) 0);
+      Arrays.fill(x, 0);
+      Arrays.fill(y, 0);
+      Arrays.fill(v, 0);
+      Arrays.fill(t, 0);
+    }
+  }
+
+  private static void roMix(int[] x, int[] y, int[] v, int[] t, int n, int r) {
+    int words = 32 * r;
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(x, 0, v, i * words, words);
+      blockMix(x, y, t, r);
+    }
+    int last = (2 * r - 1) * 16;
+    for (int i = 0; i < n; i++) {
+      int j = (x[last] & (n - 1)) * words;
+      for (int k = 0; k < words; k++) {
+        x[k] ^= v[j + k];
+      }
+      blockMix(x, y, t, r);
+    }
+  }
+
+  /**
+   * BlockMix with Salsa20/8, the even output blocks go to the first half and the odd ones to the second.
+   */
+  private static void blockMix(int[] b, int[] y, int[] t, int r) {
+    System.arraycopy(b, (2 * r - 1) * 16, t, 0, 16);
+    for (int i = 0; i < 2 * r; i++) {
+      for (int k = 0; k < 16; k++) {
+        t[k] ^= b[i * 16 + k];
+      }
+      salsa20_8(t);
+      System.arraycopy(t, 0, y, ((i & 1) * r + (i >>> 1)) * 16, 16);
+    }
+    System.arraycopy(y, 0, b, 0, 32 * r);
+  }
+
+  private static void salsa20_8(int[] b) {
+    int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7];
+    int x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+    for (int i = 0; i < 8; i += 2) {
+      x4 ^= Integer.rotateLeft(x0 + x12, 7);
+      x8 ^= Integer.rotateLeft(x4 + x0, 9);
+      x12 ^= Integer.rotateLeft(x8 + x4, 13);
+      x0 ^= Integer.rotateLeft(x12 + x8, 18);
+      x9 ^= Integer.rotateLeft(x5 + x1, 7);
+      x13 ^= Integer.rotateLeft(x9 + x5, 9);
+      x1 ^= Integer.rotateLeft(x13 + x9, 13);
+      x5 ^= Integer.rotateLeft(x1 + x13, 18);
+      x14 ^= Integer.rotateLeft(x10 + x6, 7);
+      x2 ^= Integer.rotateLeft(x14 + x10, 9);
+      x6 ^= Integer.rotateLeft(x2 + x14, 13);
+      x10 ^= Integer.rotateLeft(x6 + x2, 18);
+      x3 ^= Integer.rotateLeft(x15 + x11, 7);
+      x7 ^= Integer.rotateLeft(x3 + x15, 9);
+      x11 ^= Integer.rotateLeft(x7 + x3, 13);
+      x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+      x1 ^= Integer.rotateLeft(x0 + x3, 7);
+      x2 ^= Integer.rotateLeft(x1 + x0, 9);
+      x3 ^= Integer.rotateLeft(x2 + x1, 13);
+      x0 ^= Integer.rotateLeft(x3 + x2, 18);
+      x6 ^= Integer.rotateLeft(x5 + x4, 7);
+      x7 ^= Integer.rotateLeft(x6 + x5, 9);
+      x4 ^= Integer.rotateLeft(x7 + x6, 13);
+      x5 ^= Integer.rotateLeft(x4 + x7, 18);
+      x11 ^= Integer.rotateLeft(x10 + x9, 7);
+      x8 ^= Integer.rotateLeft(x11 + x10, 9);
+      x9 ^= Integer.rotateLeft(x8 + x11, 13);
+      x10 ^= Integer.rotateLeft(x9 + x8, 18);
+      x12 ^= Integer.rotateLeft(x15 + x14, 7);
+      x13 ^= Integer.rotateLeft(x12 + x15, 9);
+      x14 ^= Integer.rotateLeft(x13 + x12, 13);
+      x15 ^= Integer.rotateLeft(x14 + x13, 18);
+    }
+    b[0] += x0;
+    b[1] += x1;
+    b[2] += x2;
+    b[3] += x3;
+    b[4] += x4;
+    b[5] += x5;
+    b[6] += x6;
+    b[7] += x7;
+    b[8] += x8;
+    b[9] += x9;
+    b[10] += x10;
+    b[11] += x11;
+    b[12] += x12;
+    b[13] += x13;
+    b[14] += x14;
+    b[15] += x15;
+  }
+
+  private static int readIntLE(byte[] b, int offset) {
+    return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | b[offset + 3] << 24;
+  }
+
+  private static void writeIntLE(byte[] b, int offset, int value) {
+    b[offset]     = (byte) value;
+    b[offset + 1] = (byte) (value >>> 8);
+    b[offset + 2] = (byte) (value >>> 16);
+    b[offset + 3] = (byte) (value >>> 24);
+  }
+}
@@ -0,0 +1,102 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.util.Arrays;
+
+/**
+ * The result of a {@link TreeHash}: the hash of every chunk and the root of the tree built over them.
+ * Keep it around to check or extend the same content later without hashing it all again.
+ */
+public final class MerkleTree {
+
+  private final DigestHash algorithm;
+  private final int        chunkSize;
+  private final long       length;
+  private final int        digestLength;
+  private final byte[]     leaves;
+  private final byte[]     root;
+
+  MerkleTree(DigestHash algorithm, int chunkSize, long length, int digestLength, byte[] leaves, byte[] root) {
+    this.algorithm    = algorithm;
+    this.chunkSize    = chunkSize;
+    this.length       = length;
+    this.digestLength = digestLength;
+    this.leaves       = leaves;
+    this.root         = root;
+  }
+
+  public DigestHash algorithm() {
+    return algorithm;
+  }
+
+  public int chunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * @return the number of bytes that were hashed
+   */
+  public long length() {
+    return length;
+  }
+
+  public int leafCount() {
+    return leaves.length / digestLength;
+  }
+
+  /**
+   * @param index the chunk index
+   * @return a copy of the hash of the chunk
+   */
+  public byte[] leaf(int index) {
+    return Arrays.copyOfRange(leaves, index * digestLength, (index + 1) * digestLength);
+  }
+
+  /**
+   * @return a copy of the root hash
+   */
+  public byte[] root() {
+    return root.clone();
+  }
+
+  /**
+   * @return the root hash encoded by {@link Encoder#encode(byte[], Encoding)}
+   */
+  public String root(Encoding encoding) {
+    return Encoder.encode(root, encoding);
+  }
+
+  int digestLength() {
+    return digestLength;
+  }
+
+  byte[] leaves() {
+    return leaves;
+  }
+
+  /**
+   * @return true if both trees have the same algorithm, chunk size, length and root
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof MerkleTree other)) return false;
+    return algorithm == other.algorithm
+           && chunkSize == other.chunkSize
+           && length == other.length
+           && Arrays.equals(root, other.root);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(root);
+  }
+
+  @Override
+  public String toString() {
+    return "MerkleTree{" + algorithm + ", chunkSize=" + chunkSize + ", length=" + length
+           + ", root=" + root(Encoding.BASE16) + "}";
+  }
+}
@@ -0,0 +1,290 @@
+package today.bonfire.oss.jutils;
+
+import lombok.extern.slf4j.Slf4j;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Password hashing with PBKDF2 or scrypt, stored in the PHC string format:
+ * <pre>
+ * $pbkdf2-sha256$i=600000$&lt;salt&gt;$&lt;hash&gt;
+ * $scrypt$ln=15,r=8,p=1$&lt;salt&gt;$&lt;hash&gt;
+ * </pre>
+ * Salt and hash are standard base64 without padding. The encoded value carries its own parameters,
+ * so {@link #verify(CharSequence, String)} checks any value this class produced, whatever the
+ * settings of the hasher doing the check; use {@link #needsRehash(String)} to upgrade old hashes
+ * after a successful login.
+ * <p>
+ * Hashing is deliberately slow, so it never runs on the calling thread. Every call is executed on a
+ * dedicated pool of platform threads, by default half the available processors with a bounded queue;
+ * a burst of logins then waits in that queue instead of pinning every carrier thread of the virtual
+ * thread scheduler. The blocking methods park the caller until the pool is done, the async ones return
+ * immediately. When the queue is full the call fails with {@link RejectedExecutionException}.
+ * <p>
+ * Create one with {@link Digest#passwordHasher()}, {@link Digest#pbkdf2(DigestHash, int)} or
+ * {@link Digest#scrypt(int, int, int)}. Instances are immutable and thread-safe.
+ */
+@Slf4j
+public final class PasswordHasher {
+
+  public static final int DEFAULT_PBKDF2_ITERATIONS = 600_000;
+
+  private static final int            SALT_LENGTH      = 16;
+  private static final int            HASH_LENGTH      = 32;
+  private static final int            MAX_ITERATIONS   = 10_000_000;
+  /**
+   * 1 GiB, stored parameters above this are rejected rather than allocated
+   */
+  private static final long           MAX_SCRYPT_BYTES = 1L << 30;
+  private static final SecureRandom   RANDOM           = new SecureRandom();
+  private static final Base64.Encoder B64_ENCODER      = Base64.getEncoder().withoutPadding();
+
+  private final String   id;
+  private final String   params;
+  private final Executor executor;
+
+  private PasswordHasher(String id, String params, Executor executor) {
+    this.id       = id;
+    this.params   = params;
+    this.executor = executor;
+  }
+
+  static PasswordHasher pbkdf2(DigestHash algorithm, int iterations) {
+    if (iterations < 1 || iterations > MAX_ITERATIONS) {
+      throw new IllegalArgumentException("iterations must be between 1 and " + MAX_ITERATIONS);
+    }
+    return new PasswordHasher(pbkdf2Id(algorithm), "i=" + iterations, DefaultPool.EXECUTOR);
+  }
+
+  static PasswordHasher scrypt(int logN, int r, int p) {
+    if (!validScrypt(logN, r, p)) {
+      throw new IllegalArgumentException("invalid scrypt parameters ln=" + logN + ",r=" + r + ",p=" + p);
+    }
+    return new PasswordHasher("scrypt", "ln=" + logN + ",r=" + r + ",p=" + p, DefaultPool.EXECUTOR);
+  }
+
+  /**
+   * @return a copy of this hasher that runs on the given executor instead of the shared password pool
+   */
+  public PasswordHasher withExecutor(Executor executor) {
+    return new PasswordHasher(id, params, executor);
+  }
+
+  /**
+   * Hash a password with a new random salt, blocking until the pool has computed it.
+   *
+   * @param password the password, wrap a char[] with {@link CharBuffer#wrap(char[])} to avoid a String
+   * @return the encoded hash, null if password is null
+   */
+  public String hash(CharSequence password) {
+    if (password == null) return null;
+    return await(hashAsync(password));
+  }
+
+  /**
+   * Same as {@link #hash(CharSequence)} without waiting. The password is copied before returning,
+   * so the caller may clear its array right away.
+   */
+  public CompletableFuture<String> hashAsync(CharSequence password) {
+    if (password == null) return CompletableFuture.completedFuture(null);
+    byte[] salt = new byte[SALT_LENGTH];
+    RANDOM.nextBytes(salt);
+    return submit(password, bytes -> {
+      byte[] hash = derive(id, params, bytes, salt, HASH_LENGTH);
+      return "$" + id + "$" + params + "$" + B64_ENCODER.encodeToString(salt) + "$" + B64_ENCODER.encodeToString(hash);
+    });
+  }
+
+  /**
+   * Check a password against a value produced by {@link #hash(CharSequence)}, blocking until the pool
+   * has computed it. The comparison is constant time.
+   *
+   * @return true if the password matches, false if it does not, the encoded value is malformed or
+   * has parameters beyond the supported limits, or any input is null
+   */
+  public boolean verify(CharSequence password, String encoded) {
+    return await(verifyAsync(password, encoded));
+  }
+
+  /**
+   * Same as {@link #verify(CharSequence, String)} without waiting.
+   */
+  public CompletableFuture<Boolean> verifyAsync(CharSequence password, String encoded) {
+    var parsed = Encoded.parse(encoded);
+    if (password == null || parsed == null) return CompletableFuture.completedFuture(false);
+    return submit(password, bytes -> {
+      byte[] actual = derive(parsed.id, parsed.params, bytes, parsed.salt, parsed.hash.length);
+      return MessageDigest.isEqual(actual, parsed.hash);
+    });
+  }
+
+  /**
+   * @return true if the encoded value was not produced with this hasher's algorithm and parameters,
+   * or is malformed
+   */
+  public boolean needsRehash(String encoded) {
+    var parsed = Encoded.parse(encoded);
+    return parsed == null || !parsed.id.equals(id) || !parsed.params.equals(params);
+  }
+
+  @Override
+  public String toString() {
+    return "PasswordHasher{" + id + "$" + params + "}";
+  }
+
+  private <T> CompletableFuture<T> submit(CharSequence password, Function<byte[], T> task) {
+    byte[] bytes = utf8(password);
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return task.apply(bytes);
+        } finally {
+          Arrays.fill(bytes, (byte) 0);
+        }
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      Arrays.fill(bytes, (byte) 0);
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) throw cause;
+      throw e;
+    }
+  }
+
+  /**
+   * Encodes to UTF-8 with unpaired surrogates replaced, like {@link String#getBytes}. The buffer is
+   * sized for the worst case up front and cleared afterwards, so only the returned copy holds the password.
+   */
+  private static byte[] utf8(CharSequence password) {
+    var buffer  = new byte[password.length() * 3];
+    var out     = ByteBuffer.wrap(buffer);
+    var encoder = StandardCharsets.UTF_8.newEncoder()
+                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    encoder.encode(CharBuffer.wrap(password), out, true);
+    encoder.flush(out);
+    byte[] bytes = Arrays.copyOf(buffer, out.position());
+    Arrays.fill(buffer, (byte) 0);
+    return bytes;
+  }
+
+  private static byte[] derive(String id, String params, byte[] password, byte[] salt, int length) {
+    if (id.equals("scrypt")) {
+      int[] s = scryptParams(params);
+      return Kdf.scrypt(password, salt, 1 << s[0], s[1], s[2], length);
+    }
+    int iterations = Integer.parseInt(params.substring(2));
+    return Kdf.pbkdf2(pbkdf2Algorithm(id), password, salt, iterations, length);
+  }
+
+  private static String pbkdf2Id(DigestHash algorithm) {
+    return switch (algorithm) {
+      case HMAC_SHA_256 -> "pbkdf2-sha256";
+      case HMAC_SHA_384 -> "pbkdf2-sha384";
+      case HMAC_SHA_512 -> "pbkdf2-sha512";
+      default -> throw new IllegalArgumentException("PBKDF2 needs an HMAC algorithm, not " + algorithm);
+    };
+  }
+
+  private static DigestHash pbkdf2Algorithm(String id) {
+    return switch (id) {
+      case "pbkdf2-sha256" -> DigestHash.HMAC_SHA_256;
+      case "pbkdf2-sha384" -> DigestHash.HMAC_SHA_384;
+      case "pbkdf2-sha512" -> DigestHash.HMAC_SHA_512;
+      default -> null;
+    };
+  }
+
+  /**
+   * @return {ln, r, p}, or null if the parameter string is malformed
+   */
+  private static int[] scryptParams(String params) {
+    var parts = params.split(",", -1);
+    if (parts.length != 3 || !parts[0].startsWith("ln=") || !parts[1].startsWith("r=") || !parts[2].startsWith("p=")) {
+      return null;
+    }
+    try {
+      return new int[]{Integer.parseInt(parts[0].substring(3)),
+                       Integer.parseInt(parts[1].substring(2)),
+                       Integer.parseInt(parts[2].substring(2))};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static boolean validScrypt(int logN, int r, int p) {
+    return logN >= 1 && logN <= 30 && r >= 1 && p >= 1
+           && 128L * r * (1L << logN) <= MAX_SCRYPT_BYTES
+           && (long) p * r <= (1 << 30) / 128;
+  }
+
+  /**
+   * A parsed and range checked PHC string.
+   */
+  private record Encoded(String id, String params, byte[] salt, byte[] hash) {
+
+    static Encoded parse(String encoded) {
+      if (encoded == null) return null;
+      var parts = encoded.split("\\$", -1);
+      if (parts.length != 5 || !parts[0].isEmpty()) return null;
+      String id     = parts[1];
+      String params = parts[2];
+      try {
+        if (id.equals("scrypt")) {
+          int[] s = scryptParams(params);
+          if (s == null || !validScrypt(s[0], s[1], s[2])) return null;
+        } else if (pbkdf2Algorithm(id) != null && params.startsWith("i=")) {
+          int iterations = Integer.parseInt(params.substring(2));
+          if (iterations < 1 || iterations > MAX_ITERATIONS) return null;
+        } else {
+          return null;
+        }
+        var salt = Base64.getDecoder().decode(parts[3]);
+        var hash = Base64.getDecoder().decode(parts[4]);
+        if (salt.length == 0 || hash.length < 16 || hash.length > 64) return null;
+        return new Encoded(id, params, salt, hash);
+      } catch (IllegalArgumentException e) {
+        // NumberFormatException included
+        return null;
+      }
+    }
+  }
+
+  /**
+   * The shared pool, created on first use.
+   */
+  private static final class DefaultPool {
+    private static final int                THREADS  = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int                QUEUE    = 1024 * THREADS;
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+
+    private static ThreadPoolExecutor newExecutor() {
+      log.debug("Creating password hashing pool with {} threads", THREADS);
+      var factory = Thread.ofPlatform().name("jutils-password-", 0).daemon(true).factory();
+      return new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                                    new ArrayBlockingQueue<>(QUEUE), factory, new ThreadPoolExecutor.AbortPolicy());
+    }
+  }
+}
@@ -1,16 +1,16 @@
 package today.bonfire.oss.jutils;
 
-import com.google.common.io.BaseEncoding;
-import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.StringUtils;
+import today.bonfire.oss.jutils.constants.Encoding;
 
-import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Locale;
 
 /**
  * Utility class for generating random numbers, tokens, and IDs.
+ * All randomness comes from the striped generators of {@link SecureRandoms}, so concurrent callers don't
+ * queue on a single {@link java.security.SecureRandom}.
  */
 public class RandUtils {
   /**
@@ -47,7 +47,6 @@ public class RandUtils {
    */
   private static final char[] CI_ALPHABET_32 = "23456789abcdefghijklmnpqrstvwxyz".toCharArray();
 
-  private static final SecureRandom   secureRandom         = new SecureRandom();
   private static final Base64.Encoder BASE64ENCODER_NOPADD = Base64.getUrlEncoder().withoutPadding();
 
   /**
@@ -62,7 +61,7 @@ public class RandUtils {
     if (bound <= start) {
       throw new IllegalArgumentException("bound must be greater than start");
     }
-    return RandomUtils.secureStrong().randomInt(start, bound);
+    return SecureRandoms.nextInt(start, bound);
   }
 
   /**
@@ -77,7 +76,7 @@ public class RandUtils {
     if (bound <= start) {
       throw new IllegalArgumentException("bound must be greater than start");
     }
-    return RandomUtils.secureStrong().randomLong(start, bound);
+    return SecureRandoms.nextLong(start, bound);
   }
 
   /**
@@ -115,7 +114,7 @@ public class RandUtils {
       throw new IllegalArgumentException("byteLength must be positive");
     }
     byte[] randomBytes = new byte[byteLength];
-    secureRandom.nextBytes(randomBytes);
+    SecureRandoms.nextBytes(randomBytes);
     return randomBytes;
   }
 
@@ -148,7 +147,7 @@ public class RandUtils {
     int    mask = alphabet.length;
     char[] res  = new char[size];
     byte[] bytes = new byte[size + 4];
-    secureRandom.nextBytes(bytes);
+    SecureRandoms.nextBytes(bytes);
 
     for (int i = 0; i < size; i++) {
       res[i] = alphabet[Math.floorMod(bytes[i], mask)];
@@ -184,8 +183,8 @@ public class RandUtils {
    */
   public static String genBucketName() {
     byte[] bytes = new byte[20];
-    secureRandom.nextBytes(bytes);
-    return BaseEncoding.base32().omitPadding().lowerCase().encode(bytes);
+    SecureRandoms.nextBytes(bytes);
+    return Encoder.toBase32(bytes);
   }
 
   /**
@@ -228,7 +227,7 @@ public class RandUtils {
    */
   public static String tuid(int size) {
     var time = time();
-    var rand = BaseEncoding.base32().omitPadding().encode(generateByteArray(size));
+    var rand = Encoder.encodeToString(generateByteArray(size), Encoding.BASE32, true);
     return time.toUpperCase(Locale.ROOT) + rand;
   }
 
@@ -0,0 +1,135 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rendezvous (highest random weight) hashing for routing keys to shards.
+ * <p>
+ * Each key scores every node and goes to the one with the highest score, so removing a node moves
+ * only its own keys and adding one moves only the keys it now wins, about 1/n of them. Unlike a
+ * {@link HashRing} it needs no virtual nodes and spreads keys evenly with a handful of nodes, but a
+ * lookup costs one hash per node, which suits up to a few hundred nodes.
+ * <p>
+ * A node's seed is derived from a {@link Digest} of its name, so routing is the same in every process.
+ * Keys are hashed with {@link FastHash#xxHash64} and scored with a seeded xxHash64 of the key hash;
+ * lookups neither lock nor allocate. Create one with {@link Digest#rendezvous(DigestHash)}.
+ * Instances are thread-safe.
+ */
+public final class RendezvousHash {
+
+  private final DigestHash    algorithm;
+  private final ReentrantLock lock  = new ReentrantLock();
+  private volatile State      state = new State(new String[0], new long[0]);
+
+  RendezvousHash(DigestHash algorithm) {
+    if (algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " needs a key and can't seed rendezvous nodes");
+    }
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * Add a node, nothing happens if it is already present.
+   *
+   * @return this router
+   */
+  public RendezvousHash add(String node) {
+    var  digest = Digest.builder(algorithm).field(node).toBytes();
+    long seed   = 0;
+    for (int b = 0; b < Long.BYTES; b++) {
+      seed = seed << 8 | (digest[b] & 0xFF);
+    }
+    lock.lock();
+    try {
+      var current = state;
+      if (indexOf(current, node) >= 0) return this;
+      int      n     = current.nodes.length;
+      String[] nodes = Arrays.copyOf(current.nodes, n + 1);
+      long[]   seeds = Arrays.copyOf(current.seeds, n + 1);
+      nodes[n] = node;
+      seeds[n] = seed;
+      state    = new State(nodes, seeds);
+    } finally {
+      lock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Remove a node, its keys move to their next highest scoring node.
+   *
+   * @return this router
+   */
+  public RendezvousHash remove(String node) {
+    lock.lock();
+    try {
+      var current = state;
+      int idx     = indexOf(current, node);
+      if (idx < 0) return this;
+      int      n     = current.nodes.length - 1;
+      String[] nodes = new String[n];
+      long[]   seeds = new long[n];
+      System.arraycopy(current.nodes, 0, nodes, 0, idx);
+      System.arraycopy(current.nodes, idx + 1, nodes, idx, n - idx);
+      System.arraycopy(current.seeds, 0, seeds, 0, idx);
+      System.arraycopy(current.seeds, idx + 1, seeds, idx, n - idx);
+      state = new State(nodes, seeds);
+    } finally {
+      lock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * @return the node owning the key, null if there are no nodes
+   */
+  public String node(CharSequence key) {
+    return node(FastHash.xxHash64(key));
+  }
+
+  /**
+   * @return the node owning the key, null if there are no nodes
+   */
+  public String node(byte[] key) {
+    return node(FastHash.xxHash64(key));
+  }
+
+  /**
+   * @param keyHash a 64-bit hash of the key
+   * @return the node owning the key, null if there are no nodes
+   */
+  public String node(long keyHash) {
+    var    current = state;
+    String best    = null;
+    long   top     = 0;
+    for (int i = 0; i < current.nodes.length; i++) {
+      long score = FastHash.xxHash64(keyHash, current.seeds[i]);
+      int  cmp   = Long.compareUnsigned(score, top);
+      if (best == null || cmp > 0 || cmp == 0 && current.nodes[i].compareTo(best) < 0) {
+        best = current.nodes[i];
+        top  = score;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return the nodes in the order they were added
+   */
+  public List<String> nodes() {
+    return List.of(state.nodes);
+  }
+
+  private static int indexOf(State state, String node) {
+    for (int i = 0; i < state.nodes.length; i++) {
+      if (state.nodes[i].equals(node)) return i;
+    }
+    return -1;
+  }
+
+  private record State(String[] nodes, long[] seeds) {}
+}
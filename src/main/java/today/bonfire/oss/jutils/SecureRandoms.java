@@ -0,0 +1,191 @@
+package today.bonfire.oss.jutils;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The striped pool of {@link SecureRandom} generators behind {@link RandUtils}.
+ * <p>
+ * A single shared generator serializes every caller on its internal lock, which with thousands of virtual
+ * threads minting IDs becomes the bottleneck. Here each stripe owns an independently seeded generator,
+ * created on first use, and a {@link ReentrantLock}. There is one stripe per two cores, up to 64; a
+ * generator call is short, so a few probes find a free one. A thread starts at the stripe its id hashes to
+ * and takes the first free one of a few, waiting on its home stripe only when all of them are busy. The
+ * lock also keeps the generator's own {@code synchronized} methods uncontended, so a virtual thread never
+ * blocks while pinned to its carrier.
+ * <p>
+ * The algorithm defaults to {@code DRBG}, the NIST SP 800-90A generator, which self-seeds every instance
+ * from the system entropy source. It can be set at startup with the system property
+ * {@code jutils.random.algorithm}, for example {@code -Djutils.random.algorithm=NativePRNGNonBlocking}, or
+ * later with {@link #use(String)}.
+ * <p>
+ * Small requests can also be served from prefetched blocks, see {@link #buffered(boolean)}, enabled at startup
+ * with {@code -Djutils.random.buffered=true}.
+ */
+public final class SecureRandoms {
+
+  static final String ALGORITHM_PROPERTY = "jutils.random.algorithm";
+  static final String DEFAULT_ALGORITHM  = "DRBG";
+  static final String BUFFERED_PROPERTY  = "jutils.random.buffered";
+
+  private static final int PROBES = 3;
+
+  private static volatile Stripes       stripes;
+  private static volatile EntropyBuffer buffer;
+
+  static {
+    var name = System.getProperty(ALGORITHM_PROPERTY);
+    use(name == null || name.isBlank() ? DEFAULT_ALGORITHM : name.trim());
+    buffered(Boolean.getBoolean(BUFFERED_PROPERTY));
+  }
+
+  private SecureRandoms() {}
+
+  /**
+   * Switch every stripe to generators of the algorithm. Generators already in use finish their call,
+   * new ones are created lazily. Synchronized with {@link #buffered(boolean)}, so neither undoes the
+   * buffer change of a concurrent call to the other.
+   *
+   * @throws IllegalArgumentException if no provider implements the algorithm
+   */
+  public static void use(String algorithm) {
+    try {
+      SecureRandom.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("no SecureRandom algorithm " + algorithm, e);
+    }
+    synchronized (SecureRandoms.class) {
+      stripes = new Stripes(algorithm, defaultStripes());
+      if (buffer != null) buffer = new EntropyBuffer(defaultStripes());
+    }
+  }
+
+  /**
+   * Serve requests of up to 256 bytes from 64 KiB blocks of random bytes, prefetched per stripe and
+   * refilled on a virtual thread. That takes the per call cost of the generator off ID and token generation,
+   * at the price of keeping unused random bytes in memory. Every byte is handed out at most once. Off by
+   * default.
+   */
+  public static synchronized void buffered(boolean enabled) {
+    buffer = enabled ? new EntropyBuffer(defaultStripes()) : null;
+  }
+
+  /**
+   * @return whether small requests are served from prefetched blocks
+   */
+  public static boolean isBuffered() {
+    return buffer != null;
+  }
+
+  /**
+   * @return the algorithm of the generators
+   */
+  public static String algorithm() {
+    return stripes.algorithm;
+  }
+
+  static void nextBytes(byte[] bytes) {
+    var current = buffer;
+    if (current != null && bytes.length <= EntropyBuffer.MAX_REQUEST) {
+      current.nextBytes(bytes);
+    } else {
+      nextBytesDirect(bytes);
+    }
+  }
+
+  /**
+   * Fills the bytes from a generator, never from the buffer.
+   */
+  static void nextBytesDirect(byte[] bytes) {
+    var stripe = acquire();
+    try {
+      stripe.random().nextBytes(bytes);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  static int nextInt(int origin, int bound) {
+    var stripe = acquire();
+    try {
+      return stripe.random().nextInt(origin, bound);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  static long nextLong(long origin, long bound) {
+    var stripe = acquire();
+    try {
+      return stripe.random().nextLong(origin, bound);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * @return a stripe locked by the caller
+   */
+  private static Stripe acquire() {
+    var current = stripes;
+    int home    = probe();
+    for (int i = 0; i < PROBES; i++) {
+      var stripe = current.stripes[(home + i) & current.mask];
+      if (stripe.lock.tryLock()) return stripe;
+    }
+    var stripe = current.stripes[home & current.mask];
+    stripe.lock.lock();
+    return stripe;
+  }
+
+  static int defaultStripes() {
+    return Math.min(64, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  static int probe() {
+    long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+    return (int) (id >>> 32);
+  }
+
+  private static final class Stripes {
+    private final String   algorithm;
+    private final Stripe[] stripes;
+    private final int      mask;
+
+    Stripes(String algorithm, int count) {
+      int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+      this.algorithm = algorithm;
+      this.stripes   = new Stripe[size];
+      this.mask      = size - 1;
+      for (int i = 0; i < size; i++) {
+        stripes[i] = new Stripe(algorithm);
+      }
+    }
+  }
+
+  private static final class Stripe {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final String        algorithm;
+    private       SecureRandom  random;
+
+    Stripe(String algorithm) {
+      this.algorithm = algorithm;
+    }
+
+    /**
+     * The generator, created and seeded on first use. Only called while holding the lock.
+     */
+    SecureRandom random() {
+      if (random == null) {
+        try {
+          random = SecureRandom.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+          // checked by use()
+          throw new IllegalStateException(e);
+        }
+      }
+      return random;
+    }
+  }
+}
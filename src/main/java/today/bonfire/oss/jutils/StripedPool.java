@@ -0,0 +1,77 @@
+package today.bonfire.oss.jutils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A small lock-free pool of reusable objects, striped by thread id.
+ * <p>
+ * Items are borrowed by swapping a slot to null and returned by swapping it back, so nothing is
+ * bound to a thread. This keeps the number of live instances proportional to the number of cores
+ * rather than the number of threads, which matters when millions of virtual threads share the pool.
+ * When every probed slot is empty a new item is created; when every probed slot is full on release
+ * the item is simply dropped.
+ *
+ * @param <T> the pooled type, must not be shared between borrowers while borrowed
+ */
+final class StripedPool<T> {
+
+  private static final int PROBES = 4;
+
+  private final AtomicReferenceArray<T> slots;
+  private final int                     mask;
+  private final Supplier<T>             factory;
+
+  StripedPool(Supplier<T> factory) {
+    this(defaultStripes(), factory);
+  }
+
+  StripedPool(int stripes, Supplier<T> factory) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    this.slots   = new AtomicReferenceArray<>(size);
+    this.mask    = size - 1;
+    this.factory = factory;
+  }
+
+  static int defaultStripes() {
+    return Math.min(64, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  /**
+   * Takes an item from the pool or creates a new one if none is available near this thread's stripe.
+   *
+   * @return an item owned exclusively by the caller until {@link #release(Object)}
+   */
+  T borrow() {
+    int start = stripe();
+    for (int i = 0; i < PROBES; i++) {
+      int idx = (start + i) & mask;
+      if (slots.get(idx) != null) {
+        T item = slots.getAndSet(idx, null);
+        if (item != null) return item;
+      }
+    }
+    return factory.get();
+  }
+
+  /**
+   * Returns an item to the pool. The caller must have reset any state it left on the item.
+   *
+   * @param item the item to return, ignored if null
+   * @return false if the item was dropped, so the caller can free native resources it holds
+   */
+  boolean release(T item) {
+    if (item == null) return false;
+    int start = stripe();
+    for (int i = 0; i < PROBES; i++) {
+      int idx = (start + i) & mask;
+      if (slots.get(idx) == null && slots.compareAndSet(idx, null, item)) return true;
+    }
+    return false;
+  }
+
+  private int stripe() {
+    long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+    return (int) (id >>> 32);
+  }
+}
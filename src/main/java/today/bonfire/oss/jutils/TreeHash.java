@@ -0,0 +1,256 @@
+package today.bonfire.oss.jutils;
+
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel Merkle tree hashing of large content.
+ * <p>
+ * The input is split into fixed-size chunks that are hashed in parallel on a {@link ForkJoinPool},
+ * files through memory mapped regions, so the wall clock time scales with the number of cores.
+ * The chunk hashes are then combined pairwise up to a single root. Leaves are hashed as
+ * {@code H(0x00 || chunk)} and inner nodes as {@code H(0x01 || left || right)}, an odd node is carried
+ * up unchanged; the prefixes keep a leaf from ever being mistaken for an inner node.
+ * <p>
+ * The root is not the same value as a plain digest of the content, and it depends on the chunk size.
+ * Create one with {@link Digest#treeHash(DigestHash)} or {@link Digest#treeHash(DigestHash, int)}.
+ * Instances are immutable and thread-safe.
+ */
+public final class TreeHash {
+
+  /**
+   * 1 MiB
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  private static final byte LEAF_PREFIX = 0x00;
+  private static final byte NODE_PREFIX = 0x01;
+
+  private final DigestHash   algorithm;
+  private final int          chunkSize;
+  private final int          digestLength;
+  private final ForkJoinPool pool;
+
+  TreeHash(DigestHash algorithm, int chunkSize, ForkJoinPool pool) {
+    if (algorithm.isHmac()) {
+      throw new IllegalArgumentException(algorithm + " needs a key and can't be used for tree hashing");
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    var md = DigestPool.borrowDigest(algorithm);
+    this.digestLength = md.getDigestLength();
+    DigestPool.releaseDigest(algorithm, md);
+    this.algorithm = algorithm;
+    this.chunkSize = chunkSize;
+    this.pool      = pool;
+  }
+
+  /**
+   * @return a copy of this tree hash that runs on the given pool instead of the common pool
+   */
+  public TreeHash withPool(ForkJoinPool pool) {
+    return new TreeHash(algorithm, chunkSize, pool);
+  }
+
+  public int chunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Hash the remaining bytes of the buffer, for example a region mapped by the caller.
+   * The buffer's position is not changed.
+   */
+  public MerkleTree hash(ByteBuffer buffer) {
+    try {
+      return hash(buffer.duplicate().slice(), buffer.remaining(), null, new BitSet());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Hash a file, mapping its chunks into memory.
+   *
+   * @throws IOException if the file can't be read
+   */
+  public MerkleTree hash(Path path) throws IOException {
+    return rehash(path, null, new BitSet());
+  }
+
+  /**
+   * Hash a file that only had data appended since {@code previous} was computed. All complete chunks
+   * of the previous tree are reused, only the last partial chunk and the new chunks are hashed. Whether
+   * the old content really is unchanged is not checked, use {@link #verify(Path, MerkleTree)} for that.
+   *
+   * @throws IOException if the file can't be read
+   */
+  public MerkleTree append(Path path, MerkleTree previous) throws IOException {
+    return rehash(path, previous, new BitSet());
+  }
+
+  /**
+   * Hash a file reusing the chunk hashes of {@code previous}, except for the chunks flagged in
+   * {@code changed} and any chunk whose size differs from before because the file grew or shrank.
+   *
+   * @throws IOException if the file can't be read
+   */
+  public MerkleTree rehash(Path path, MerkleTree previous, BitSet changed) throws IOException {
+    checkCompatible(previous);
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      return hash(channel, size, previous, changed);
+    }
+  }
+
+  /**
+   * Re-hash every chunk of a file in parallel and compare with the expected tree.
+   *
+   * @return the indexes of the chunks that differ, including chunks only present on one side;
+   * empty if the file matches
+   * @throws IOException if the file can't be read
+   */
+  public BitSet verify(Path path, MerkleTree expected) throws IOException {
+    checkCompatible(expected);
+    var actual    = hash(path);
+    var different = new BitSet();
+    int common    = Math.min(actual.leafCount(), expected.leafCount());
+    for (int i = 0; i < common; i++) {
+      if (!MessageDigest.isEqual(actual.leaf(i), expected.leaf(i))) different.set(i);
+    }
+    different.set(common, Math.max(actual.leafCount(), expected.leafCount()));
+    return different;
+  }
+
+  private void checkCompatible(MerkleTree tree) {
+    if (tree != null && (tree.algorithm() != algorithm || tree.chunkSize() != chunkSize)) {
+      throw new IllegalArgumentException("tree was built with " + tree.algorithm() + "/" + tree.chunkSize()
+                                         + ", not " + algorithm + "/" + chunkSize);
+    }
+  }
+
+  /**
+   * @param source a FileChannel or a ByteBuffer positioned at 0
+   */
+  private MerkleTree hash(Object source, long size, MerkleTree previous, BitSet changed) throws IOException {
+    long count = Math.max(1, (size + chunkSize - 1) / chunkSize);
+    if (count > Integer.MAX_VALUE / digestLength) {
+      throw new IllegalArgumentException("too many chunks, use a larger chunk size");
+    }
+    var leaves = new byte[(int) count * digestLength];
+    var todo   = new BitSet((int) count);
+    for (int i = 0; i < count; i++) {
+      if (previous == null || changed.get(i) || !sameChunk(previous, size, i)) {
+        todo.set(i);
+      } else {
+        System.arraycopy(previous.leaves(), i * digestLength, leaves, i * digestLength, digestLength);
+      }
+    }
+    try {
+      pool.invoke(new LeafTask(source, size, leaves, todo, 0, (int) count));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return new MerkleTree(algorithm, chunkSize, size, digestLength, leaves, root(leaves));
+  }
+
+  /**
+   * A chunk hash can be reused if the chunk had exactly the same byte range in the previous tree.
+   */
+  private boolean sameChunk(MerkleTree previous, long size, int index) {
+    if (index >= previous.leafCount()) return false;
+    long start = (long) index * chunkSize;
+    return Math.min(size, start + chunkSize) == Math.min(previous.length(), start + chunkSize);
+  }
+
+  private byte[] root(byte[] leaves) {
+    var md = DigestPool.borrowDigest(algorithm);
+    try {
+      byte[] level = leaves;
+      int    count = leaves.length / digestLength;
+      while (count > 1) {
+        int    parents = (count + 1) / 2;
+        byte[] next    = new byte[parents * digestLength];
+        for (int p = 0; p < parents; p++) {
+          int left = 2 * p;
+          if (left + 1 < count) {
+            md.update(NODE_PREFIX);
+            md.update(level, left * digestLength, 2 * digestLength);
+            md.digest(next, p * digestLength, digestLength);
+          } else {
+            System.arraycopy(level, left * digestLength, next, p * digestLength, digestLength);
+          }
+        }
+        level = next;
+        count = parents;
+      }
+      return level == leaves ? leaves.clone() : level;
+    } catch (DigestException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      DigestPool.releaseDigest(algorithm, md);
+    }
+  }
+
+  @SuppressWarnings("serial") // fork-join tasks are never serialized
+  private final class LeafTask extends RecursiveAction {
+    private final Object source;
+    private final long   size;
+    private final byte[] leaves;
+    private final BitSet todo;
+    private final int    from;
+    private final int    to;
+
+    LeafTask(Object source, long size, byte[] leaves, BitSet todo, int from, int to) {
+      this.source = source;
+      this.size   = size;
+      this.leaves = leaves;
+      this.todo   = todo;
+      this.from   = from;
+      this.to     = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new LeafTask(source, size, leaves, todo, from, mid),
+                  new LeafTask(source, size, leaves, todo, mid, to));
+        return;
+      }
+      if (!todo.get(from)) return;
+      var md = DigestPool.borrowDigest(algorithm);
+      try {
+        long offset = (long) from * chunkSize;
+        int  length = (int) Math.min(chunkSize, size - offset);
+        md.update(LEAF_PREFIX);
+        md.update(chunk(offset, length));
+        md.digest(leaves, from * digestLength, digestLength);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e);
+      } finally {
+        DigestPool.releaseDigest(algorithm, md);
+      }
+    }
+
+    private ByteBuffer chunk(long offset, int length) throws IOException {
+      if (source instanceof FileChannel channel) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      }
+      return ((ByteBuffer) source).slice((int) offset, length);
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package today.bonfire.oss.jutils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Percent encoding and decoding with UTF-8, for form values and the RFC 3986 URI components.
+ * <p>
+ * Every method scans the input once before doing any work and returns the input itself when nothing has to
+ * change, which for typical parameter names and values means no allocation at all. Otherwise the output
+ * is built in a single pass, escapes use upper case hex.
+ * <p>
+ * {@link Component#FORM} is {@code application/x-www-form-urlencoded} and gives the same results as
+ * {@link java.net.URLEncoder} and {@link java.net.URLDecoder} with UTF-8, including the {@code '?'}
+ * replacement of unpaired surrogates and {@link IllegalArgumentException} for malformed escapes.
+ */
+public final class UrlCodec {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private UrlCodec() {}
+
+  /**
+   * Where an encoded value goes, which decides the characters that stay as they are.
+   */
+  public enum Component {
+    /**
+     * form encoding: letters, digits and {@code .-*_} stay, space becomes {@code '+'}, same as {@link java.net.URLEncoder}
+     */
+    FORM(ascii("ALPHA DIGIT .-*_")),
+    /**
+     * a single path segment: RFC 3986 pchar, so {@code '/'} is escaped
+     */
+    PATH_SEGMENT(ascii("ALPHA DIGIT -._~ !$&'()*+,;= :@")),
+    /**
+     * a query parameter name or value: RFC 3986 query characters except the {@code &=+} separators,
+     * which would change the meaning of the query
+     */
+    QUERY(ascii("ALPHA DIGIT -._~ !$'()*,; :@ /?")),
+    /**
+     * a fragment: RFC 3986 fragment characters
+     */
+    FRAGMENT(ascii("ALPHA DIGIT -._~ !$&'()*+,;= :@ /?"));
+
+    /**
+     * Bit c is set when ASCII character c is left unescaped, split over two words
+     */
+    private final long low;
+    private final long high;
+
+    Component(long[] allowed) {
+      this.low  = allowed[0];
+      this.high = allowed[1];
+    }
+
+    private boolean allowed(int c) {
+      return c < 64 ? (low >>> c & 1) != 0 : c < 128 && (high >>> (c - 64) & 1) != 0;
+    }
+
+    private static long[] ascii(String spec) {
+      var allowed = new long[2];
+      for (var part : spec.split(" ")) {
+        var chars = switch (part) {
+          case "ALPHA" -> "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+          case "DIGIT" -> "0123456789";
+          default -> part;
+        };
+        for (int i = 0; i < chars.length(); i++) {
+          char c = chars.charAt(i);
+          allowed[c >>> 6] |= 1L << (c & 63);
+        }
+      }
+      return allowed;
+    }
+  }
+
+  /**
+   * Percent encodes the value for the component.
+   *
+   * @return the encoded value, the same instance if nothing needs escaping, null if value is null
+   */
+  public static String encode(String value, Component component) {
+    if (value == null) return null;
+    int first = firstToEncode(value, component);
+    if (first == value.length()) return value;
+    var sb = new StringBuilder(value.length() + 16);
+    sb.append(value, 0, first);
+    encodeTo(value, first, component, sb);
+    return sb.toString();
+  }
+
+  /**
+   * Appends the percent encoded value to {@code dst}, a Writer for example.
+   *
+   * @throws IOException if appending fails
+   */
+  public static void encode(CharSequence value, Component component, Appendable dst) throws IOException {
+    int first = firstToEncode(value, component);
+    dst.append(value, 0, first);
+    if (first < value.length()) encodeTo(value, first, component, dst);
+  }
+
+  /**
+   * Appends the percent encoded value to {@code dst}.
+   */
+  public static void encode(CharSequence value, Component component, StringBuilder dst) {
+    int first = firstToEncode(value, component);
+    dst.append(value, 0, first);
+    if (first < value.length()) encodeTo(value, first, component, dst);
+  }
+
+  /**
+   * Percent encodes raw bytes, for example a value that is already UTF-8, without decoding them first.
+   *
+   * @return the encoded value
+   */
+  public static String encode(byte[] bytes, int offset, int length, Component component) {
+    Objects.checkFromIndexSize(offset, length, bytes.length);
+    int end   = offset + length;
+    int first = offset;
+    while (first < end && bytes[first] >= 0 && component.allowed(bytes[first])) first++;
+    if (first == end) return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    var sb = new StringBuilder(length + 16);
+    for (int i = offset; i < first; i++) {
+      sb.append((char) bytes[i]);
+    }
+    for (int i = first; i < end; i++) {
+      int b = bytes[i] & 0xFF;
+      if (component.allowed(b)) {
+        sb.append((char) b);
+      } else if (b == ' ' && component == Component.FORM) {
+        sb.append('+');
+      } else {
+        appendEscape(sb, b);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Decodes percent escapes as UTF-8, and {@code '+'} as space for {@link Component#FORM}. Characters that
+   * the component would have escaped are accepted as they are.
+   *
+   * @return the decoded value, the same instance if it has nothing to decode, null if value is null
+   * @throws IllegalArgumentException if a {@code '%'} is not followed by two hex digits
+   */
+  public static String decode(String value, Component component) {
+    if (value == null) return null;
+    boolean form   = component == Component.FORM;
+    int     length = value.length();
+    int     first  = 0;
+    while (first < length) {
+      char c = value.charAt(first);
+      if (c == '%' || (form && c == '+')) break;
+      first++;
+    }
+    if (first == length) return value;
+
+    var    sb    = new StringBuilder(length);
+    byte[] bytes = null;
+    sb.append(value, 0, first);
+    for (int i = first; i < length; ) {
+      char c = value.charAt(i);
+      if (c == '%') {
+        // a run of escapes is one UTF-8 sequence, or several
+        if (bytes == null) bytes = new byte[(length - i) / 3];
+        int n = 0;
+        while (i < length && value.charAt(i) == '%') {
+          if (i + 2 >= length) throw malformed(value, i);
+          int hi = Character.digit(value.charAt(i + 1), 16);
+          int lo = Character.digit(value.charAt(i + 2), 16);
+          if ((hi | lo) < 0) throw malformed(value, i);
+          bytes[n++] = (byte) ((hi << 4) | lo);
+          i += 3;
+        }
+        sb.append(new String(bytes, 0, n, StandardCharsets.UTF_8));
+      } else {
+        sb.append(form && c == '+' ? ' ' : c);
+        i++;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Decodes percent encoded bytes, such as a raw request target, into a String. The decoded octets and
+   * any non ASCII input bytes are read as UTF-8.
+   *
+   * @throws IllegalArgumentException if a {@code '%'} is not followed by two hex digits
+   */
+  public static String decode(byte[] bytes, int offset, int length, Component component) {
+    Objects.checkFromIndexSize(offset, length, bytes.length);
+    boolean form  = component == Component.FORM;
+    int     end   = offset + length;
+    int     first = offset;
+    while (first < end && bytes[first] != '%' && !(form && bytes[first] == '+')) first++;
+    if (first == end) return new String(bytes, offset, length, StandardCharsets.UTF_8);
+
+    var out = new byte[length];
+    int n   = first - offset;
+    System.arraycopy(bytes, offset, out, 0, n);
+    for (int i = first; i < end; ) {
+      byte b = bytes[i];
+      if (b == '%') {
+        if (i + 2 >= end) throw malformed(new String(bytes, offset, length, StandardCharsets.ISO_8859_1), i - offset);
+        int hi = Character.digit(bytes[i + 1], 16);
+        int lo = Character.digit(bytes[i + 2], 16);
+        if ((hi | lo) < 0) throw malformed(new String(bytes, offset, length, StandardCharsets.ISO_8859_1), i - offset);
+        out[n++] = (byte) ((hi << 4) | lo);
+        i += 3;
+      } else {
+        out[n++] = form && b == '+' ? (byte) ' ' : b;
+        i++;
+      }
+    }
+    return new String(out, 0, n, StandardCharsets.UTF_8);
+  }
+
+  private static int firstToEncode(CharSequence value, Component component) {
+    int length = value.length();
+    int i      = 0;
+    while (i < length && component.allowed(value.charAt(i))) i++;
+    return i;
+  }
+
+  private static void encodeTo(CharSequence value, int from, Component component, StringBuilder dst) {
+    try {
+      encodeTo(value, from, component, (Appendable) dst);
+    } catch (IOException e) {
+      // StringBuilder does not throw
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void encodeTo(CharSequence value, int from, Component component, Appendable dst) throws IOException {
+    for (int i = from, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      if (component.allowed(c)) {
+        dst.append(c);
+      } else if (c == ' ' && component == Component.FORM) {
+        dst.append('+');
+      } else if (c < 0x80) {
+        appendEscape(dst, c);
+      } else if (c < 0x800) {
+        appendEscape(dst, 0xC0 | (c >> 6));
+        appendEscape(dst, 0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, value.charAt(++i));
+        appendEscape(dst, 0xF0 | (cp >> 18));
+        appendEscape(dst, 0x80 | ((cp >> 12) & 0x3F));
+        appendEscape(dst, 0x80 | ((cp >> 6) & 0x3F));
+        appendEscape(dst, 0x80 | (cp & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        appendEscape(dst, '?');
+      } else {
+        appendEscape(dst, 0xE0 | (c >> 12));
+        appendEscape(dst, 0x80 | ((c >> 6) & 0x3F));
+        appendEscape(dst, 0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private static void appendEscape(Appendable dst, int b) throws IOException {
+    dst.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+  }
+
+  private static void appendEscape(StringBuilder dst, int b) {
+    dst.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+  }
+
+  private static IllegalArgumentException malformed(String value, int index) {
+    return new IllegalArgumentException("invalid percent escape at index " + index + " of " + value);
+  }
+}
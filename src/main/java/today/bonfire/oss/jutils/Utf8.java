@@ -0,0 +1,190 @@
+package today.bonfire.oss.jutils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * UTF-8 transcoding into caller supplied buffers, for hot paths that would otherwise allocate a byte array
+ * per {@link Encoder#toByteArray(String)} or a throwaway array per {@link Encoder#toStr(byte[])}.
+ * <p>
+ * Pure ASCII, the common case for keys, IDs and protocol text, is detected with a word at a time scan and
+ * copied without decoding. Only the part from the first non ASCII character on goes through a
+ * {@link CharsetEncoder} or {@link CharsetDecoder}, borrowed from a pool so neither they nor their state are
+ * allocated per call.
+ * <p>
+ * Unlike {@link String#getBytes} and {@code new String(bytes, UTF_8)}, which silently substitute, malformed
+ * input is reported: unpaired surrogates when encoding and invalid byte sequences when decoding. The methods
+ * return a negative value or null instead of throwing, so callers can reject bad input cheaply.
+ */
+public final class Utf8 {
+
+  private static final VarHandle LONG_LE   = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final long      HIGH_BITS = 0x8080808080808080L;
+
+  /**
+   * Largest input the String decoder converts in a pooled char array, larger ones get their own
+   */
+  private static final int SCRATCH_CHARS = 4096;
+
+  private static final StripedPool<CharsetEncoder> ENCODERS = new StripedPool<>(
+    () -> StandardCharsets.UTF_8.newEncoder()
+                                .onMalformedInput(CodingErrorAction.REPORT)
+                                .onUnmappableCharacter(CodingErrorAction.REPORT));
+  private static final StripedPool<CharsetDecoder> DECODERS = new StripedPool<>(
+    () -> StandardCharsets.UTF_8.newDecoder()
+                                .onMalformedInput(CodingErrorAction.REPORT)
+                                .onUnmappableCharacter(CodingErrorAction.REPORT));
+  private static final StripedPool<char[]>         SCRATCH  = new StripedPool<>(() -> new char[SCRATCH_CHARS]);
+
+  private Utf8() {}
+
+  /**
+   * True when every byte of the range is ASCII, checked 8 bytes at a time.
+   */
+  public static boolean isAscii(byte[] src, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    return firstNonAscii(src, offset, offset + length) == offset + length;
+  }
+
+  /**
+   * @return the exact UTF-8 length of well formed text, an unpaired surrogate counts as the single byte
+   * {@link String#getBytes} substitutes for it
+   */
+  public static int encodedLength(CharSequence src) {
+    int length = src.length();
+    int bytes  = length;
+    for (int i = 0; i < length; i++) {
+      char c = src.charAt(i);
+      if (c < 0x80) continue;
+      if (c < 0x800) {
+        bytes++;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(src.charAt(i + 1))) {
+        // 4 bytes for the pair of chars
+        bytes += 2;
+        i++;
+      } else if (!Character.isSurrogate(c)) {
+        bytes += 2;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes the text as UTF-8 into a caller supplied array, without allocating.
+   *
+   * @param src       the text to encode
+   * @param dst       the target, with room for {@link #encodedLength(CharSequence)} bytes
+   * @param dstOffset where to start writing
+   * @return the number of bytes written, or {@code -(index + 1)} for the index of an unpaired surrogate in
+   * src, dst may be partly written then
+   * @throws IndexOutOfBoundsException if the encoded text doesn't fit into dst, which may be partly written then
+   */
+  public static int encode(CharSequence src, byte[] dst, int dstOffset) {
+    Objects.checkIndex(dstOffset, dst.length + 1);
+    int length = src.length();
+    int room   = dst.length - dstOffset;
+    int i      = 0;
+    for (int ascii = Math.min(length, room); i < ascii; i++) {
+      char c = src.charAt(i);
+      if (c >= 0x80) break;
+      dst[dstOffset + i] = (byte) c;
+    }
+    if (i == length) return length;
+    if (i == room) throw new IndexOutOfBoundsException("dst too small");
+
+    CharsetEncoder encoder = ENCODERS.borrow();
+    try {
+      var in     = CharBuffer.wrap(src, i, length);
+      var out    = ByteBuffer.wrap(dst, dstOffset + i, room - i);
+      var result = encoder.encode(in, out, true);
+      if (result.isUnderflow()) result = encoder.flush(out);
+      if (result.isError()) return -(in.position() + 1);
+      if (result.isOverflow()) throw new IndexOutOfBoundsException("dst too small");
+      return out.position() - dstOffset;
+    } finally {
+      encoder.reset();
+      ENCODERS.release(encoder);
+    }
+  }
+
+  /**
+   * Decodes UTF-8 into a caller supplied array, without allocating. ASCII is widened with a plain loop the
+   * JIT vectorizes.
+   *
+   * @param dst       the target, {@code length} chars always suffice
+   * @param dstOffset where to start writing
+   * @return the number of chars written, or {@code -(index + 1)} for the index in src of the first malformed
+   * byte sequence, dst may be partly written then
+   * @throws IndexOutOfBoundsException if the decoded text doesn't fit into dst, which may be partly written then
+   */
+  public static int decode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    int end   = offset + length;
+    int ascii = firstNonAscii(src, offset, end);
+    Objects.checkFromIndexSize(dstOffset, ascii - offset, dst.length);
+    for (int i = offset, j = dstOffset; i < ascii; i++, j++) {
+      dst[j] = (char) src[i];
+    }
+    if (ascii == end) return length;
+
+    CharsetDecoder decoder = DECODERS.borrow();
+    try {
+      int start  = dstOffset + ascii - offset;
+      var in     = ByteBuffer.wrap(src, ascii, end - ascii);
+      var out    = CharBuffer.wrap(dst, start, dst.length - start);
+      var result = decoder.decode(in, out, true);
+      if (result.isUnderflow()) result = decoder.flush(out);
+      if (result.isError()) return -(in.position() + 1);
+      if (result.isOverflow()) throw new IndexOutOfBoundsException("dst too small");
+      return out.position() - dstOffset;
+    } finally {
+      decoder.reset();
+      DECODERS.release(decoder);
+    }
+  }
+
+  /**
+   * Decodes UTF-8 to a String. Pure ASCII is copied straight into the String's compact Latin-1 form,
+   * other text is decoded through a pooled char array.
+   *
+   * @return the text, or null if the bytes are not well formed UTF-8
+   */
+  public static String decode(byte[] src, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, src.length);
+    if (firstNonAscii(src, offset, offset + length) == offset + length) {
+      return new String(src, offset, length, StandardCharsets.ISO_8859_1);
+    }
+    if (length > SCRATCH_CHARS) {
+      var chars = new char[length];
+      int n     = decode(src, offset, length, chars, 0);
+      return n < 0 ? null : new String(chars, 0, n);
+    }
+    char[] scratch = SCRATCH.borrow();
+    try {
+      int n = decode(src, offset, length, scratch, 0);
+      return n < 0 ? null : new String(scratch, 0, n);
+    } finally {
+      SCRATCH.release(scratch);
+    }
+  }
+
+  /**
+   * @return the index of the first byte with the high bit set, or end
+   */
+  private static int firstNonAscii(byte[] src, int from, int end) {
+    int i = from;
+    for (; i + 8 <= end; i += 8) {
+      if (((long) LONG_LE.get(src, i) & HIGH_BITS) != 0) break;
+    }
+    while (i < end && src[i] >= 0) i++;
+    return i;
+  }
+}
@@ -0,0 +1,75 @@
+package today.bonfire.oss.jutils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The bulk loops of {@link BaseCodec} for hex and base32, vectorized with the incubating
+ * {@code jdk.incubator.vector} API by {@link IncubatorVectorCodec}.
+ * <p>
+ * This class has no reference to the incubator module, so it loads on every JVM. The implementation is only
+ * looked up when the module is in the boot layer, that is when the application runs with
+ * {@code --add-modules jdk.incubator.vector}, and only used when the CPU has 256 bit vectors. Everywhere
+ * else {@link #load()} returns null and {@link BaseCodec} stays on its scalar table driven path.
+ * The system property {@code jutils.codec.vector=false} keeps the scalar path even with the module.
+ * <p>
+ * Every method handles a prefix of the range in whole vector steps and leaves the rest to the scalar path.
+ */
+@Slf4j
+abstract class VectorCodec {
+
+  static final String VECTOR_PROPERTY = "jutils.codec.vector";
+
+  private static final String MODULE         = "jdk.incubator.vector";
+  private static final String IMPLEMENTATION = "today.bonfire.oss.jutils.IncubatorVectorCodec";
+
+  /**
+   * @return the vector codec, null if the module is missing, the CPU lacks 256 bit vectors or it is disabled
+   */
+  static VectorCodec load() {
+    if (!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) return null;
+    if (ModuleLayer.boot().findModule(MODULE).isEmpty()) return null;
+    try {
+      var codec = (VectorCodec) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+      if (!codec.isSupported()) return null;
+      log.debug("encoding hex and base32 with {}", MODULE);
+      return codec;
+    } catch (ReflectiveOperationException | LinkageError e) {
+      log.warn("{} is present but could not be used, encoding without it", MODULE, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return whether the CPU has the vector size the loops are written for
+   */
+  abstract boolean isSupported();
+
+  /**
+   * Writes two hex chars per byte of a prefix of the range.
+   *
+   * @return the number of bytes encoded
+   */
+  abstract int encodeBase16(byte[] src, int offset, int length, boolean upperCase, byte[] dst, int dstOffset);
+
+  /**
+   * Writes 8 base32 chars per 5 bytes of a prefix of the range.
+   *
+   * @return the number of bytes encoded, a multiple of 5
+   */
+  abstract int encodeBase32(byte[] src, int offset, int length, boolean upperCase, byte[] dst, int dstOffset);
+
+  /**
+   * Decodes a prefix of the hex chars in either case.
+   *
+   * @return the number of chars decoded, a multiple of 2, or -1 if the prefix holds a char that is not hex
+   */
+  abstract int decodeBase16(char[] src, int offset, int length, byte[] dst, int dstOffset);
+
+  /**
+   * Decodes a prefix of the unpadded base32 chars in either case. Up to 6 bytes after the decoded ones may be
+   * overwritten, so dst must have room for all of src, whose remaining chars the caller decodes after.
+   *
+   * @return the number of chars decoded, a multiple of 8, or -1 if the prefix holds a char that is not base32
+   */
+  abstract int decodeBase32(char[] src, int offset, int length, byte[] dst, int dstOffset);
+}
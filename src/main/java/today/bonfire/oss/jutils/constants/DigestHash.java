@@ -21,6 +21,13 @@ public enum DigestHash {
     this.value = value;
   }
 
+  /**
+   * @return true if this is a keyed HMAC algorithm rather than a plain message digest
+   */
+  public boolean isHmac() {
+    return value.startsWith("Hmac");
+  }
+
   @Override
   public String toString() {
     return value;
@@ -0,0 +1,19 @@
+package today.bonfire.oss.jutils.constants;
+
+/**
+ * Text encodings used by {@code Encoder} for binary values such as digests and signatures.
+ */
+public enum Encoding {
+  /**
+   * lower case hexadecimal, same as {@code Encoder.toBase16}
+   */
+  BASE16,
+  /**
+   * lower case base32 without padding, same as {@code Encoder.toBase32}
+   */
+  BASE32,
+  /**
+   * url safe base64 without padding, same as {@code Encoder.toBase64}
+   */
+  BASE64
+}
@@ -1,10 +1,9 @@
 package today.bonfire.oss.jutils.web;
 
 import org.apache.commons.lang3.StringUtils;
+import today.bonfire.oss.jutils.UrlCodec;
 import today.bonfire.oss.jutils.constants.CC;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -36,9 +35,9 @@ public class QueryParams {
 
     for (String pair : pairs) {
       String[] keyValue = pair.split("=");
-      String key = URLDecoder.decode(keyValue[0].trim(), StandardCharsets.UTF_8);
+      String key = UrlCodec.decode(keyValue[0].trim(), UrlCodec.Component.FORM);
       String value = keyValue.length > 1
-                     ? URLDecoder.decode(keyValue[1].trim(), StandardCharsets.UTF_8)
+                     ? UrlCodec.decode(keyValue[1].trim(), UrlCodec.Component.FORM)
                      : null;
 
       queryParams.params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
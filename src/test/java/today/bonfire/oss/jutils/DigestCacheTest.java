@@ -0,0 +1,99 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class DigestCacheTest {
+
+  @Test
+  public void testCachedValuesMatchDigest() {
+    var cache = Digest.cache(100);
+    for (int round = 0; round < 2; round++) {
+      assertThat(cache.base64Sha256("user@example.com")).isEqualTo(Digest.base64Sha256("user@example.com"));
+      assertThat(cache.sha256("user@example.com")).isEqualTo(Digest.sha256("user@example.com"));
+      assertThat(cache.digest(new StringBuilder("tenant-1"), DigestHash.SHA_3_256, Encoding.BASE32))
+        .isEqualTo(Digest.base32Sha3_256("tenant-1"));
+      assertThat(cache.hmac("data", "key", DigestHash.HMAC_SHA_384, Encoding.BASE64))
+        .isEqualTo(Digest.hmacSha384("data", "key"));
+      assertThat(cache.hmac("data", "key", DigestHash.HMAC_SHA_256, Encoding.BASE16))
+        .isEqualTo(Digest.hmacSha256Hex("data", "key").toLowerCase());
+      assertThat(cache.hmacSha256Hex("data", "key")).isEqualTo(Digest.hmacSha256Hex("data", "key"));
+    }
+    assertThat(cache.missCount()).isEqualTo(6);
+    assertThat(cache.hitCount()).isEqualTo(6);
+    assertThat(cache.size()).isEqualTo(6);
+    assertThat(cache.hmacSha256Hex(null, "key")).isNull();
+    assertThat(cache.base64Sha256(null)).isNull();
+  }
+
+  @Test
+  public void testHmacEntriesAreSeparatedByKey() {
+    var cache  = Digest.cache(100);
+    var signer = Digest.hmacSigner("key-a", DigestHash.HMAC_SHA_256);
+    var a      = cache.hmac("data", "key-a", DigestHash.HMAC_SHA_256, Encoding.BASE64);
+    assertThat(cache.hmac("data", "key-b", DigestHash.HMAC_SHA_256, Encoding.BASE64)).isNotEqualTo(a);
+    assertThat(cache.hmac(signer, "data", Encoding.BASE64)).isEqualTo(a);
+    assertThat(cache.hmac(signer, "data", Encoding.BASE64)).isEqualTo(a);
+    assertThat(cache.missCount()).isEqualTo(3);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> cache.hmac("data", "key", DigestHash.SHA_256, Encoding.BASE64));
+  }
+
+  @Test
+  public void testFrequentEntriesSurviveAScan() {
+    var cache = Digest.cache(100);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 50; i++) {
+        cache.sha256("hot-" + i);
+      }
+    }
+    for (int i = 0; i < 10_000; i++) {
+      cache.sha256("cold-" + i);
+    }
+    assertThat(cache.size()).isLessThanOrEqualTo(100);
+    assertThat(cache.evictionCount()).isPositive();
+
+    long hits = cache.hitCount();
+    for (int i = 0; i < 50; i++) {
+      cache.sha256("hot-" + i);
+    }
+    assertThat(cache.hitCount() - hits).isGreaterThanOrEqualTo(45);
+
+    cache.invalidateAll();
+    assertThat(cache.size()).isZero();
+    cache.sha256("hot-0");
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testConcurrentUseStaysBounded() throws Exception {
+    var cache = Digest.cache(64);
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var futures = new ArrayList<Future<Boolean>>();
+      for (int t = 0; t < 200; t++) {
+        int seed = t;
+        futures.add(executor.submit(() -> {
+          boolean ok = true;
+          for (int i = 0; i < 500; i++) {
+            var value = "v" + ((seed * 31 + i) % 300);
+            ok &= cache.sha256(value).equals(Digest.sha256(value));
+          }
+          return ok;
+        }));
+      }
+      for (var future : futures) {
+        assertThat(future.get()).isTrue();
+      }
+    }
+    assertThat(cache.size()).isLessThanOrEqualTo(64);
+    assertThat(cache.hitCount() + cache.missCount()).isEqualTo(200 * 500);
+  }
+}
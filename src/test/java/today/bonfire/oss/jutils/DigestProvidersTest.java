@@ -0,0 +1,174 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.security.MessageDigest;
+import java.security.MessageDigestSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class DigestProvidersTest {
+
+  @AfterEach
+  public void restoreDefaults() {
+    for (DigestHash hash : DigestHash.values()) {
+      DigestProviders.useDefault(hash);
+    }
+  }
+
+  @Test
+  public void testPinnedProviderIsUsedByThePools() throws Exception {
+    var expected = MessageDigest.getInstance("SHA-256").digest("abc".getBytes());
+    DigestProviders.use(DigestHash.SHA_256, "SUN");
+    DigestProviders.use(DigestHash.HMAC_SHA_256, "SunJCE");
+
+    assertThat(DigestProviders.pinned(DigestHash.SHA_256).getName()).isEqualTo("SUN");
+    var md = DigestPool.borrowDigest(DigestHash.SHA_256);
+    assertThat(md.getProvider().getName()).isEqualTo("SUN");
+    DigestPool.releaseDigest(DigestHash.SHA_256, md);
+    assertThat(Digest.getDigest(DigestHash.SHA_256).getProvider().getName()).isEqualTo("SUN");
+    assertThat(Digest.digestToBytes("abc".getBytes(), DigestHash.SHA_256)).isEqualTo(expected);
+    assertThat(Digest.hmacSha256Hex("data", "key")).isNotNull();
+
+    DigestProviders.useDefault(DigestHash.SHA_256);
+    assertThat(DigestProviders.pinned(DigestHash.SHA_256)).isNull();
+  }
+
+  @Test
+  public void testPinTakesEffectForDigestsBorrowedBefore() throws Exception {
+    var forwarding = new ForwardingProvider();
+    var borrowed   = new ArrayList<MessageDigest>();
+    for (int i = 0; i < 16; i++) {
+      borrowed.add(DigestPool.borrowDigest(DigestHash.SHA_256));
+    }
+    DigestProviders.use(DigestHash.SHA_256, forwarding);
+    for (MessageDigest md : borrowed) {
+      DigestPool.releaseDigest(DigestHash.SHA_256, md);
+    }
+    for (int i = 0; i < 32; i++) {
+      var md = DigestPool.borrowDigest(DigestHash.SHA_256);
+      assertThat(md.getProvider()).isSameAs(forwarding);
+      borrowed.add(md);
+    }
+    borrowed.forEach(md -> DigestPool.releaseDigest(DigestHash.SHA_256, md));
+  }
+
+  @Test
+  public void testPinUnderConcurrentLoad() throws Exception {
+    var forwarding = new ForwardingProvider();
+    var expected   = MessageDigest.getInstance("SHA-256").digest("abc".getBytes());
+    var pinned     = new AtomicBoolean();
+    var started    = new CountDownLatch(8);
+    var workers    = new ArrayList<Future<Integer>>();
+    try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+      for (int t = 0; t < 8; t++) {
+        workers.add(pool.submit(() -> {
+          started.countDown();
+          int checked = 0;
+          for (int i = 0; i < 20_000 || checked < 1000; i++) {
+            boolean after = pinned.get();
+            var     md    = DigestPool.borrowDigest(DigestHash.SHA_256);
+            try {
+              assertThat(md.digest("abc".getBytes())).isEqualTo(expected);
+              if (after) {
+                assertThat(md.getProvider()).isSameAs(forwarding);
+                checked++;
+              }
+            } finally {
+              DigestPool.releaseDigest(DigestHash.SHA_256, md);
+            }
+          }
+          return checked;
+        }));
+      }
+      started.await();
+      DigestProviders.use(DigestHash.SHA_256, forwarding);
+      pinned.set(true);
+      for (Future<Integer> worker : workers) {
+        assertThat(worker.get()).isGreaterThanOrEqualTo(1000);
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsProvidersWithoutTheAlgorithm() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> DigestProviders.use(DigestHash.SHA_256, "no-such-provider"));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> DigestProviders.use(DigestHash.HMAC_SHA_256, Security.getProvider("SUN")));
+    assertThat(DigestProviders.pinned(DigestHash.HMAC_SHA_256)).isNull();
+  }
+
+  @Test
+  public void testAutoSelectPinsARegisteredProviderForEveryAlgorithm() {
+    var chosen = DigestProviders.autoSelect(Duration.ofMillis(2));
+    assertThat(chosen).containsOnlyKeys(DigestHash.values());
+    for (var entry : chosen.entrySet()) {
+      assertThat(DigestProviders.pinned(entry.getKey()).getName()).isEqualTo(entry.getValue());
+    }
+    assertThat(Digest.sha256("abc")).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+  }
+
+  /**
+   * A second SHA-256 provider, forwarding to SUN
+   */
+  private static final class ForwardingProvider extends Provider {
+    ForwardingProvider() {
+      super("JutilsForwarding", "1.0", "SHA-256 forwarded to SUN");
+      putService(new Service(this, "MessageDigest", "SHA-256", ForwardingSpi.class.getName(), null, null) {
+        @Override
+        public Object newInstance(Object constructorParameter) throws NoSuchAlgorithmException {
+          return new ForwardingSpi(MessageDigest.getInstance("SHA-256", Security.getProvider("SUN")));
+        }
+      });
+    }
+  }
+
+  private static final class ForwardingSpi extends MessageDigestSpi implements Cloneable {
+    private MessageDigest md;
+
+    ForwardingSpi(MessageDigest md) {
+      this.md = md;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+      md.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+      md.update(input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+      return md.digest();
+    }
+
+    @Override
+    protected void engineReset() {
+      md.reset();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+      var copy = (ForwardingSpi) super.clone();
+      copy.md = (MessageDigest) md.clone();
+      return copy;
+    }
+  }
+}
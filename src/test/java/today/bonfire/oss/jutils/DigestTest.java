@@ -0,0 +1,332 @@
+package today.bonfire.oss.jutils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import today.bonfire.oss.jutils.constants.DigestHash;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Slf4j
+public class DigestTest {
+
+  private static final String INPUT = "hello world, this is jutils";
+  private static final String KEY   = "secret-key";
+
+  private static byte[] referenceDigest(String value, String algorithm) throws Exception {
+    return MessageDigest.getInstance(algorithm).digest(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] referenceHmac(String value, String key, String algorithm) throws Exception {
+    var mac = Mac.getInstance(algorithm);
+    mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), algorithm));
+    return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDigestsMatchJca() throws Exception {
+    assertThat(Digest.sha256(INPUT))
+      .isEqualTo(HexFormat.of().formatHex(referenceDigest(INPUT, "SHA-256")));
+    assertThat(Digest.base64Sha256(INPUT))
+      .isEqualTo(Encoder.toBase64(referenceDigest(INPUT, "SHA-256")));
+    assertThat(Digest.base64Sha384(INPUT))
+      .isEqualTo(Encoder.toBase64(referenceDigest(INPUT, "SHA-384")));
+    assertThat(Digest.base64Sha512(INPUT))
+      .isEqualTo(Encoder.toBase64(referenceDigest(INPUT, "SHA-512")));
+    assertThat(Digest.base64Sha3_256(INPUT))
+      .isEqualTo(Encoder.toBase64(referenceDigest(INPUT, "SHA3-256")));
+    assertThat(Digest.base32Sha3_256(INPUT))
+      .isEqualTo(Encoder.toBase32(referenceDigest(INPUT, "SHA3-256")));
+    assertThat(Digest.base64Sha3_384(INPUT))
+      .isEqualTo(Encoder.toBase64(referenceDigest(INPUT, "SHA3-384")));
+    assertThat(Digest.base64Sha3_512(INPUT))
+      .isEqualTo(Encoder.toBase64(referenceDigest(INPUT, "SHA3-512")));
+    assertThat(Digest.sha256(null)).isNull();
+  }
+
+  @Test
+  public void testFusedEncodingMatchesEncoder() {
+    var random = new Random(7);
+    for (int length = 0; length <= 70; length++) {
+      var bytes = new byte[length];
+      random.nextBytes(bytes);
+      for (Encoding encoding : Encoding.values()) {
+        var scratch = new byte[3 + BaseCodec.encodedLength(length, encoding)];
+        assertThat(BaseCodec.encodeToString(bytes, 0, length, encoding, scratch, 3))
+          .isEqualTo(Encoder.encode(bytes, encoding));
+      }
+    }
+    for (DigestHash hash : List.of(DigestHash.SHA_256, DigestHash.SHA_384, DigestHash.SHA_3_512)) {
+      var expected = Digest.digest(INPUT, hash);
+      for (Encoding encoding : Encoding.values()) {
+        assertThat(Digest.digest(INPUT, hash, encoding)).isEqualTo(Encoder.encode(expected, encoding));
+        assertThat(Digest.builder(hash).update(INPUT).to(encoding)).isEqualTo(Encoder.encode(expected, encoding));
+      }
+    }
+  }
+
+  @Test
+  public void testHmacsMatchJca() throws Exception {
+    assertThat(Digest.hmacSha256(INPUT, KEY)).isEqualTo(referenceHmac(INPUT, KEY, "HmacSHA256"));
+    assertThat(Digest.hmacSha256Hex(INPUT, KEY))
+      .isEqualTo(HexFormat.of().withUpperCase().formatHex(referenceHmac(INPUT, KEY, "HmacSHA256")));
+    assertThat(Digest.hmacSha384(INPUT, KEY))
+      .isEqualTo(Encoder.toBase64(referenceHmac(INPUT, KEY, "HmacSHA384")));
+    assertThat(Digest.hmacSha512(INPUT, KEY))
+      .isEqualTo(Encoder.toBase64(referenceHmac(INPUT, KEY, "HmacSHA512")));
+    assertThat(Digest.hmacSha256(INPUT, null)).isNull();
+  }
+
+  @Test
+  public void testHmacSignerMatchesStaticHmac() {
+    var signer = Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_256);
+    assertThat(signer.sign(INPUT)).isEqualTo(Digest.hmacSha256(INPUT, KEY));
+    assertThat(signer.signHex(INPUT)).isEqualTo(Digest.hmacSha256Hex(INPUT, KEY));
+    assertThat(signer.length()).isEqualTo(32);
+    assertThat(signer.sign((String) null)).isNull();
+
+    assertThat(Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_384).signBase64(INPUT))
+      .isEqualTo(Digest.hmacSha384(INPUT, KEY));
+    assertThat(Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_512).signBase64(INPUT))
+      .isEqualTo(Digest.hmacSha512(INPUT, KEY));
+  }
+
+  @Test
+  public void testHmacSignerRejectsPlainDigest() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Digest.hmacSigner(KEY, DigestHash.SHA_256));
+  }
+
+  @Test
+  public void testStreamingDigestsMatchInMemoryDigest(@TempDir Path dir) throws Exception {
+    var random = new Random(42);
+    for (int size : new int[]{0, 100, DigestIO.BUFFER_SIZE + 7, (int) DigestIO.MAP_THRESHOLD * 3 + 11}) {
+      var data = new byte[size];
+      random.nextBytes(data);
+      var file = Files.write(dir.resolve("data-" + size), data);
+      for (var hash : new DigestHash[]{DigestHash.SHA_256, DigestHash.SHA_3_512}) {
+        var expected = MessageDigest.getInstance(hash.toString()).digest(data);
+        assertThat(Digest.digest(file, hash)).isEqualTo(expected);
+        assertThat(Digest.digest(new ByteArrayInputStream(data), hash)).isEqualTo(expected);
+        assertThat(Digest.digest(Channels.newChannel(new ByteArrayInputStream(data)), hash)).isEqualTo(expected);
+        try (var channel = FileChannel.open(file)) {
+          assertThat(Digest.digest(channel, hash)).isEqualTo(expected);
+        }
+        var buffer = ByteBuffer.wrap(data);
+        assertThat(Digest.digest(buffer, hash)).isEqualTo(expected);
+        assertThat(buffer.position()).isZero();
+        assertThat(Digest.digest(file, hash, Encoding.BASE64)).isEqualTo(Encoder.toBase64(expected));
+        assertThat(Digest.digest(file, hash, Encoding.BASE16)).isEqualTo(Encoder.toBase16(expected));
+      }
+      var signer = Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_256);
+      assertThat(signer.sign(file)).isEqualTo(signer.sign(data));
+      assertThat(signer.sign(new ByteArrayInputStream(data))).isEqualTo(signer.sign(data));
+    }
+    assertThat(Digest.digest((Path) null, DigestHash.SHA_256)).isNull();
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Digest.digest(ByteBuffer.allocate(1), DigestHash.HMAC_SHA_256));
+  }
+
+  @Test
+  public void testCharSequenceDigestMatchesUtf8Bytes() throws Exception {
+    var random = new Random(7);
+    var values = new ArrayList<String>(List.of("", "plain ascii", "héllo wörld", "日本語テキスト", "emoji 😀 pair",
+                                               "lone \uD800 high", "lone \uDC00 low", "end \uD83D"));
+    for (int size : new int[]{DigestIO.BUFFER_SIZE - 3, DigestIO.BUFFER_SIZE * 2 + 1}) {
+      var sb = new StringBuilder(size);
+      while (sb.length() < size) {
+        sb.appendCodePoint(random.nextInt(4) == 0 ? random.nextInt(0x10FFFF) : 'a' + random.nextInt(26));
+      }
+      values.add(sb.toString());
+    }
+    for (var value : values) {
+      var bytes = value.getBytes(StandardCharsets.UTF_8);
+      assertThat(Digest.digest(new StringBuilder(value), DigestHash.SHA_256))
+        .isEqualTo(MessageDigest.getInstance("SHA-256").digest(bytes));
+      assertThat(Digest.sha256(value))
+        .isEqualTo(HexFormat.of().formatHex(referenceDigest(value, "SHA-256")));
+      assertThat(Digest.base64Sha256(value)).isEqualTo(Encoder.toBase64(referenceDigest(value, "SHA-256")));
+      assertThat(Digest.base64Sha3_256(value)).isEqualTo(Encoder.toBase64(referenceDigest(value, "SHA3-256")));
+      assertThat(Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_256).sign(value))
+        .isEqualTo(referenceHmac(value, KEY, "HmacSHA256"));
+    }
+  }
+
+  @Test
+  public void testDigestAllMatchesSingleDigests() {
+    var values = new ArrayList<String>();
+    for (int i = 0; i < BulkDigest.LEAF_SIZE * 5 + 3; i++) {
+      values.add("user" + i + "@example.com");
+    }
+    var packed = Digest.digestAll(values, DigestHash.SHA_256);
+    assertThat(packed).hasSize(values.size() * 32);
+    var encoded = Digest.digestAll(new LinkedList<>(values), DigestHash.SHA_3_256, Encoding.BASE64);
+    for (int i = 0; i < values.size(); i++) {
+      assertThat(Arrays.copyOfRange(packed, i * 32, i * 32 + 32))
+        .isEqualTo(Digest.digest(values.get(i), DigestHash.SHA_256));
+      assertThat(encoded.get(i)).isEqualTo(Digest.base64Sha3_256(values.get(i)));
+    }
+    assertThat(Digest.digestAll(List.of(), DigestHash.SHA_256)).isEmpty();
+    assertThatExceptionOfType(NullPointerException.class)
+      .isThrownBy(() -> Digest.digestAll(Arrays.asList("a", null), DigestHash.SHA_256));
+  }
+
+  @Test
+  public void testVerifyHmacAcceptsOnlyMatchingSignatures() throws Exception {
+    var signer = Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_256);
+    var raw    = referenceHmac(INPUT, KEY, "HmacSHA256");
+    var hex    = Digest.hmacSha256Hex(INPUT, KEY);
+
+    assertThat(Digest.verifyHmac(INPUT, KEY, hex, DigestHash.HMAC_SHA_256, Encoding.BASE16)).isTrue();
+    assertThat(signer.verify(INPUT, hex.toLowerCase(), Encoding.BASE16)).isTrue();
+    assertThat(signer.verify(INPUT, Encoder.toBase64(raw), Encoding.BASE64)).isTrue();
+    assertThat(signer.verify(INPUT, Base64.getEncoder().encodeToString(raw), Encoding.BASE64)).isTrue();
+    assertThat(signer.verify(INPUT, Encoder.toBase32(raw), Encoding.BASE32)).isTrue();
+    assertThat(signer.verify(INPUT.getBytes(StandardCharsets.UTF_8), hex, Encoding.BASE16)).isTrue();
+    assertThat(Digest.verifyHmac(INPUT, KEY, Digest.hmacSha512(INPUT, KEY), DigestHash.HMAC_SHA_512, Encoding.BASE64))
+      .isTrue();
+
+    var tampered = (hex.charAt(0) == 'A' ? 'B' : 'A') + hex.substring(1);
+    assertThat(signer.verify(INPUT, tampered, Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT + "x", hex, Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT, hex.substring(2), Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT, hex + "00", Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT, hex, Encoding.BASE64)).isFalse();
+    assertThat(signer.verify(INPUT, "not hex!", Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT, "", Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT, "ab".repeat(200), Encoding.BASE16)).isFalse();
+    assertThat(signer.verify(INPUT, null, Encoding.BASE16)).isFalse();
+    assertThat(Digest.verifyHmac(INPUT, null, hex, DigestHash.HMAC_SHA_256, Encoding.BASE16)).isFalse();
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Digest.verifyHmac(INPUT, KEY, hex, DigestHash.SHA_256, Encoding.BASE16));
+  }
+
+  @Test
+  public void testBuilderMatchesConcatenatedInput() throws Exception {
+    var text = "tenant-42|héllo 😀";
+    var expected = MessageDigest.getInstance("SHA-256");
+    expected.update(text.getBytes(StandardCharsets.UTF_8));
+    expected.update(ByteBuffer.allocate(12).putLong(42L).putInt(7).array());
+    expected.update(new byte[]{1, 2, 3});
+    var bytes = expected.digest();
+
+    var builder = Digest.builder(DigestHash.SHA_256)
+                        .update(new StringBuilder(text))
+                        .update(42L)
+                        .update(7)
+                        .update(new byte[]{1, 2, 3});
+    assertThat(builder.toBytes()).isEqualTo(bytes);
+    assertThatExceptionOfType(IllegalStateException.class).isThrownBy(builder::toBytes);
+
+    assertThat(Digest.builder(DigestHash.SHA_256).update("ab").update("c").toBase64())
+      .isEqualTo(Digest.base64Sha256("abc"));
+    assertThat(Digest.builder(DigestHash.SHA_256).update("abc").toHex()).isEqualTo(Digest.sha256("abc"));
+    assertThat(Digest.builder(DigestHash.SHA_3_256).update("abc").toBase32()).isEqualTo(Digest.base32Sha3_256("abc"));
+  }
+
+  @Test
+  public void testBuilderFieldsAreLengthPrefixed() {
+    assertThat(Digest.builder(DigestHash.SHA_256).field("ab").field("c").toBase64())
+      .isNotEqualTo(Digest.builder(DigestHash.SHA_256).field("a").field("bc").toBase64());
+    assertThat(Digest.builder(DigestHash.SHA_256).field((String) null).toBase64())
+      .isNotEqualTo(Digest.builder(DigestHash.SHA_256).field("").toBase64());
+    var text = "héllo 😀 \uD800";
+    assertThat(Digest.builder(DigestHash.SHA_256).field(text).toBase64())
+      .isEqualTo(Digest.builder(DigestHash.SHA_256).field(text.getBytes(StandardCharsets.UTF_8)).toBase64());
+  }
+
+  @Test
+  public void testPooledDigestsAreIsolatedAcrossVirtualThreads() throws Exception {
+    var expected       = Digest.base64Sha256(INPUT);
+    var signer         = Digest.hmacSigner(KEY, DigestHash.HMAC_SHA_384);
+    var expectedSigned = Digest.hmacSha384(INPUT, KEY);
+    var futures        = new ArrayList<Future<String>>();
+    try (var executor = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < 10_000; i++) {
+        final int n = i;
+        futures.add(executor.submit(() -> switch (n % 3) {
+          case 0 -> Digest.base64Sha256(INPUT);
+          case 1 -> signer.signBase64(INPUT);
+          default -> Digest.hmacSha512(INPUT + n, KEY);
+        }));
+      }
+      for (int i = 0; i < futures.size(); i += 3) {
+        assertThat(futures.get(i).get()).isEqualTo(expected);
+        if (i + 1 < futures.size()) assertThat(futures.get(i + 1).get()).isEqualTo(expectedSigned);
+      }
+    }
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void comparePooledWithGetInstance() throws Exception {
+    var       data       = INPUT.getBytes(StandardCharsets.UTF_8);
+    final int iterations = 2_000_000;
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        Digest.getDigest(DigestHash.SHA_256).digest(data);
+      }
+      long getInstance = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        Digest.digestToBytes(data, DigestHash.SHA_256);
+      }
+      long pooled = System.nanoTime() - start;
+      log.info("sha256 getInstance: {} ns/op, pooled: {} ns/op",
+               getInstance / iterations, pooled / iterations);
+    }
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void compareFusedWithEncoderAllocations() {
+    var       threads    = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long      threadId   = Thread.currentThread().threadId();
+    final int iterations = 1_000_000;
+    for (int round = 0; round < 3; round++) {
+      long bytes = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        Encoder.toBase32(Digest.digest(INPUT, DigestHash.SHA_3_256));
+      }
+      long separateTime  = System.nanoTime() - start;
+      long separateBytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+      bytes = threads.getThreadAllocatedBytes(threadId);
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        Digest.base32Sha3_256(INPUT);
+      }
+      long fusedTime  = System.nanoTime() - start;
+      long fusedBytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+      log.info("base32 sha3-256 separate: {} ns/op {} B/op, fused: {} ns/op {} B/op",
+               separateTime / iterations, separateBytes / iterations,
+               fusedTime / iterations, fusedBytes / iterations);
+    }
+  }
+}
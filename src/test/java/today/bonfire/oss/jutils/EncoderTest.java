@@ -0,0 +1,415 @@
+package today.bonfire.oss.jutils;
+
+import com.google.common.io.BaseEncoding;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.constants.Encoding;
+
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Slf4j
+public class EncoderTest {
+
+  private static final int[] LENGTHS = {0, 1, 2, 3, 4, 5, 14, 15, 16, 57, 58, 2999, 3000, 3001, 9007};
+
+  private static byte[] randomBytes(int size) {
+    var bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testTableDrivenCodecsMatchGuava() {
+    var base16 = BaseEncoding.base16();
+    var base32 = BaseEncoding.base32().omitPadding();
+    for (int length = 0; length < 100; length++) {
+      var bytes = randomBytes(length);
+      assertThat(Encoder.toBase16(bytes)).isEqualTo(base16.lowerCase().encode(bytes));
+      assertThat(Encoder.encodeToString(bytes, Encoding.BASE16, true)).isEqualTo(base16.encode(bytes));
+      assertThat(Encoder.toBase32(bytes)).isEqualTo(base32.lowerCase().encode(bytes));
+      assertThat(Encoder.encodeToString(bytes, Encoding.BASE32, true)).isEqualTo(base32.encode(bytes));
+      assertThat(Encoder.toBase64(bytes)).isEqualTo(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+      for (Encoding encoding : Encoding.values()) {
+        var decoded = new byte[length];
+        assertThat(Encoder.decode(Encoder.encode(bytes, encoding), encoding, decoded, 0)).isEqualTo(length);
+        assertThat(decoded).isEqualTo(bytes);
+      }
+    }
+    assertThat(Digest.hmacSha256Hex("data", "key")).isEqualTo(
+      "5031FE3D989C6D1537A013FA6E739DA23463FDAEC3B70137D828E36ACE221BD0");
+    assertThat(RandUtils.genBucketName()).hasSize(32).matches("[a-z2-7]+");
+  }
+
+  @Test
+  public void testLongInputMatchesGuava() {
+    var base16 = BaseEncoding.base16();
+    var base32 = BaseEncoding.base32().omitPadding();
+    var random = new Random(17);
+    for (int length : new int[]{31, 32, 33, 39, 40, 41, 63, 64, 100, 511, 512, 513, 1000, 4099, 9007}) {
+      var bytes = randomBytes(length);
+      var hex   = base16.lowerCase().encode(bytes);
+      var b32   = base32.lowerCase().encode(bytes);
+      assertThat(Encoder.toBase16(bytes)).isEqualTo(hex);
+      assertThat(Encoder.encodeToString(bytes, Encoding.BASE16, true)).isEqualTo(hex.toUpperCase());
+      assertThat(Encoder.toBase32(bytes)).isEqualTo(b32);
+      assertThat(Encoder.encodeToString(bytes, Encoding.BASE32, true)).isEqualTo(b32.toUpperCase());
+      assertThat(Encoder.fromBase16(hex)).isEqualTo(bytes);
+      assertThat(Encoder.fromBase16(hex.toUpperCase())).isEqualTo(bytes);
+      assertThat(Encoder.decode(new StringBuilder(hex), Encoding.BASE16)).isEqualTo(bytes);
+      assertThat(Encoder.fromBase32(b32)).isEqualTo(bytes);
+      assertThat(Encoder.fromBase32(b32.toUpperCase())).isEqualTo(bytes);
+      assertThat(Encoder.decode(new StringBuilder(b32), Encoding.BASE32)).isEqualTo(bytes);
+
+      for (char bad : "/:@G`g{\u00E9\u0141".toCharArray()) {
+        int at = random.nextInt(hex.length());
+        assertThatExceptionOfType(IllegalArgumentException.class)
+          .isThrownBy(() -> Encoder.fromBase16(hex.substring(0, at) + bad + hex.substring(at + 1)));
+      }
+      for (char bad : "0189@[`{=\u00E1\u0161".toCharArray()) {
+        int at = random.nextInt(b32.length() - 1);
+        assertThatExceptionOfType(IllegalArgumentException.class)
+          .isThrownBy(() -> Encoder.fromBase32(b32.substring(0, at) + bad + b32.substring(at + 1)));
+      }
+    }
+  }
+
+  private static final String[] HTML_CORPUS = {
+    "", "plain comment", "  padded\tand\n\nsplit  ", "a&nbsp;b", "a\u00ADb\u200Bc", "\u0001x\u0001", "x\u0000y",
+    "<p>Hello <b>world</b></p><p>again</p>", "a<br>b", "<div>x</div>\n\n<div>y</div>", "<ul><li>one<li>two</ul>",
+    "<a href=\"https://x.y/?a=1&b=2\" title='say \"hi\" >'>link</a> after", "<a b = \"x>\" >d", "x<a ='y'>b",
+    "x<a b=c/>d", "x<a title=\"x", "a <b", "a<3 b", "a< b", "a<", "a</", "a</>b", "a</ x>b", "a<1b",
+    "a<!-- c -->b", "x<!--->y", "x<!-->y", "x<!--a--!>y", "x<!--a-- >b-->y", "x<!--a", "a<!x>b", "a<?xml x?>b",
+    "x<!doctype html>y", "a<!", "a<![CDATA[x<b>&amp;]]>b", "x<![cdata[a]]>y", "x<![CDATA[a",
+    "&copyright &copy &amp; &ampx; &amp;; &#65 &#x41; &#0; &#128; &#x9F; &#x81; &#xD800; &#99999999; &#x110000;",
+    "&lt;script&gt;alert(1)&lt;/script&gt;", "&frac12;&frac12x&sup2;&notin;&notin&notit;", "&AMP;&Amp;&lt=",
+    "a&#;b&#x;c&#xZ;", "&#x1F600;&#128512", "&amp\u4E2D", "a&", "a & b", "&NotNestedGreaterGreater;&nGt;",
+    "<script>alert('<b>x</b>')</script>after", "x<script/><b>a</b>", "x<SCRIPT>y</SCRIPT >z",
+    "x<script>y</script\tfoo>z", "a<script>x</scriptx>y</script>z", "x<script>a<!--<script>b</script>c--></script>d",
+    "x<script>a<!--b</script>c", "x<script>a</script", "x<style>p{}</STYLE>z", "x<style/>a</style>b",
+    "<textarea>&lt;a&gt;<b>x</b></textarea>", "x<textarea/><b>a</b>", "x<textarea>\n\na", "x<TEXTAREA>a</TextArea>b",
+    "<textarea>a</textareax>b</textarea>c", "x<textarea>a</textarea", "<textarea>\u0000</textarea>",
+    "<xmp><b>x</b>&amp;</xmp>", "x<xmp/><b>a</b>", "<iframe>i<b>j</b></iframe>", "x<noembed><b>a</b></noembed>",
+    "<plaintext><b>&amp;", "x<plaintext/><b>a</b>", "x<pre>\na", "x<listing>\na", "x<pre>\n a</pre>",
+    "<title>t</title>x", "x<title>t</title>", "<title/>a</title>b", "x<title>a<!--b</title>-->c",
+    "<head><title>t</title></head>z", "<meta charset=x><title>t</title>z", "<html><title>t</title>x",
+    "<body><title>t</title>x", "</p><title>t</title>x", "</body><title>t</title>x", "</br><title>t</title>x",
+    "<!-- c --><title>t</title>x", "   <title>t</title>x", "<base href=x>t", "<link rel=x><noscript>n</noscript>",
+    "<noscript>n</noscript>x", "x<noscript><b>n</b>&amp;</noscript>", "<noframes><b>x</b></noframes>y",
+    "x<noframes><b>x</b>&amp;</noframes>y", "<template>t</template>y", "x<template><b>a</b></template>y",
+    "<template><template>a</template>b</template>c", "<frameset>x", "<div><frameset>x", "x<frameset>y",
+    "x<svg><title><b>y</b>&amp;</title></svg>", "x<svg><style>s</style></svg>", "<svg><![CDATA[x]]></svg>",
+    "x<math><mi>a</mi></math>", "x<svg><textarea>\\na</textarea>", "x<svg><pre>\\na</pre>",
+    "x<svg><g><title><b>a</b></title></g></svg><title><b>b</b></title>", "x<svg><svg></svg><title><b>a</b></title>",
+    "x<svg/><title><b>a</b></title>", "<title>t<p>a", "x<textarea>y<p>a</textareax", "x<title>y<p>a</titl",
+    "x<textarea>y</p>a",
+    "x<hi<title><i>a</i></title>", "x<b a<title><i>a</i></title>", "x<b a <title><i>a</i></title>",
+    "x<b a=b <title><i>a</i></title>", "x<b a='b'<title><i>a</i></title>", "x</b <title><i>a</i></title>",
+    "x<b/<title><i>a</i></title>", "x<svg><div><title><b>a</b></title>", "x<svg><xmp><b>a</b></xmp>",
+    "x<select><option>a</option><option>b</select>", "<input><frameset>&amp;", "<button><frameset>x",
+    "<pre><frameset>x", "<div><select><b><style></a>y", "<select><title>x</h2>", "x<svg><select>y</select></svg>",
+    "x<isindex>y", "x<image>y",
+    "<body>a</body>b</html>c", "<html><body></body></html>", "x<a\u0000b>c", "<p>\u3000x\u3000</p>", "a\u2028b"
+  };
+
+  @Test
+  public void testHtmlSafeMatchesJsoup() {
+    for (var html : HTML_CORPUS) {
+      assertThat(Encoder.htmlSafe(html)).as(html).isEqualTo(Encoder.htmlSafe(html, true));
+    }
+    // random user comments built from fragments, table markup left out as jsoup reorders its text
+    var fragments = new String[]{
+      "hi", " ", "  ", "\n", "\t", "&nbsp;", "&amp;", "&lt;", "&copy", "&#169;", "&#x1F600;", "&", "<", ">", "\"",
+      "'", "=", "/", "<b>", "</b>", "<i>", "</i>", "<p>", "</p>", "<br/>", "<a href=\"x\">", "<a href='y>z'>", "</a>",
+      "<!--", "-->", "<script>", "</script>", "<style>", "</style>", "<textarea>", "</textarea>", "<title>", "</title>",
+      "<pre>", "</pre>", "<code>", "</code>", "<div class=c>", "</div>", "<img src=x onerror=alert(1)>", "<select>",
+      "</select>", "<option>", "</option>", "<frameset>", "<input>", "é", "😀"
+    };
+    var random = new Random(7);
+    for (int round = 0; round < 20_000; round++) {
+      var sb = new StringBuilder();
+      for (int i = random.nextInt(12); i >= 0; i--) {
+        sb.append(fragments[random.nextInt(fragments.length)]);
+      }
+      var html = sb.toString();
+      assertThat(Encoder.htmlSafe(html)).as(html).isEqualTo(Encoder.htmlSafe(html, true));
+    }
+    var plain = "no markup here, just text!";
+    assertThat(Encoder.htmlSafe(plain)).isSameAs(plain);
+    assertThat(Encoder.htmlSafe(null)).isNull();
+  }
+
+  @Test
+  public void testEncodeIntoBuffersMatchesStringEncoding() throws Exception {
+    for (int length : LENGTHS) {
+      var src = randomBytes(length + 4);
+      for (Encoding encoding : Encoding.values()) {
+        var expected = Encoder.encode(Arrays.copyOfRange(src, 2, 2 + length), encoding);
+        assertThat(Encoder.encodedLength(length, encoding)).isEqualTo(expected.length());
+
+        var array = new byte[expected.length() + 3];
+        assertThat(Encoder.encode(src, 2, length, encoding, array, 3)).isEqualTo(expected.length());
+        assertThat(new String(array, 3, expected.length(), StandardCharsets.US_ASCII)).isEqualTo(expected);
+
+        var sb = new StringBuilder("x");
+        assertThat(Encoder.encode(src, 2, length, encoding, sb)).isEqualTo(expected.length());
+        assertThat(sb.toString()).isEqualTo("x" + expected);
+
+        var writer = new StringWriter();
+        assertThat(Encoder.encode(src, 2, length, encoding, (Appendable) writer)).isEqualTo(expected.length());
+        assertThat(writer.toString()).isEqualTo(expected);
+
+        for (var dst : new ByteBuffer[]{ByteBuffer.allocate(expected.length()), ByteBuffer.allocateDirect(expected.length())}) {
+          var in = ByteBuffer.allocateDirect(length).put(src, 2, length).flip();
+          assertThat(Encoder.encode(in, encoding, dst)).isEqualTo(expected.length());
+          assertThat(in.hasRemaining()).isFalse();
+          assertThat(StandardCharsets.US_ASCII.decode(dst.flip()).toString()).isEqualTo(expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMimeIntoBuffersMatchesJdk() {
+    for (int length : LENGTHS) {
+      var src      = randomBytes(length);
+      var expected = Base64.getMimeEncoder().encodeToString(src);
+      assertThat(Encoder.mimeEncodedLength(length)).isEqualTo(expected.length());
+      var array = new byte[expected.length()];
+      assertThat(Encoder.encodeBase64Mime(src, 0, length, array, 0)).isEqualTo(expected.length());
+      assertThat(new String(array, StandardCharsets.US_ASCII)).isEqualTo(expected);
+      var sb = new StringBuilder();
+      assertThat(Encoder.encodeBase64Mime(src, 0, length, sb)).isEqualTo(expected.length());
+      assertThat(sb.toString()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testDecodeIntoBuffers() {
+    for (int length : LENGTHS) {
+      var src = randomBytes(length);
+      for (Encoding encoding : Encoding.values()) {
+        var encoded = Encoder.encode(src, encoding);
+        assertThat(Encoder.maxDecodedLength(encoded.length(), encoding)).isEqualTo(length);
+
+        var array = new byte[length + 1];
+        assertThat(Encoder.decode(encoded, encoding, array, 1)).isEqualTo(length);
+        assertThat(Arrays.copyOfRange(array, 1, length + 1)).isEqualTo(src);
+
+        var direct = ByteBuffer.allocateDirect(length);
+        assertThat(Encoder.decode(encoded, encoding, direct)).isEqualTo(length);
+        var decoded = new byte[length];
+        direct.flip().get(decoded);
+        assertThat(decoded).isEqualTo(src);
+      }
+      var padded = ByteBuffer.allocate(length);
+      assertThat(Encoder.decode(Base64.getEncoder().encodeToString(src), Encoding.BASE64, padded)).isEqualTo(length);
+      assertThat(padded.array()).isEqualTo(src);
+    }
+  }
+
+  @Test
+  public void testDecodeToBytesRoundTripsBinary() {
+    for (int length : LENGTHS) {
+      var src = randomBytes(length);
+      assertThat(Encoder.fromBase64(Encoder.toBase64(src))).isEqualTo(src);
+      assertThat(Encoder.fromBase64(Base64.getEncoder().encodeToString(src))).isEqualTo(src);
+      assertThat(Encoder.fromBase32(Encoder.toBase32(src))).isEqualTo(src);
+      assertThat(Encoder.fromBase32(Encoder.encodeToString(src, Encoding.BASE32, true))).isEqualTo(src);
+      assertThat(Encoder.fromBase16(Encoder.toBase16(src).toUpperCase())).isEqualTo(src);
+      assertThat(Encoder.fromBase64Mime(Encoder.encodeBase64Mime(src))).isEqualTo(src);
+      for (Encoding encoding : Encoding.values()) {
+        assertThat(Encoder.decode(Encoder.encode(src, encoding), encoding)).isEqualTo(src);
+      }
+    }
+    assertThat(Encoder.fromBase64(null)).isNull();
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Encoder.fromBase32("a1"));
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Encoder.fromBase16("abc"));
+  }
+
+  @Test
+  public void testValidationAgreesWithDecoding() {
+    for (int length : LENGTHS) {
+      var src = randomBytes(length);
+      assertThat(Encoder.isValidBase64Url(Encoder.toBase64(src))).isTrue();
+      assertThat(Encoder.isValidBase32(Encoder.toBase32(src))).isTrue();
+      assertThat(Encoder.isValidHex(Encoder.toBase16(src))).isTrue();
+    }
+    var random = new Random(3);
+    var chars  = "aZz09-_+/=*gé";
+    for (int round = 0; round < 5000; round++) {
+      var sb = new StringBuilder();
+      for (int i = random.nextInt(10); i > 0; i--) {
+        sb.append(chars.charAt(random.nextInt(chars.length())));
+      }
+      var value = sb.toString();
+      assertThat(Encoder.isValidBase32(value)).as(value).isEqualTo(decodes(value, Encoding.BASE32));
+      assertThat(Encoder.isValidHex(value)).as(value).isEqualTo(decodes(value, Encoding.BASE16));
+      boolean urlSafe = value.indexOf('+') < 0 && value.indexOf('/') < 0;
+      assertThat(Encoder.isValidBase64Url(value)).as(value).isEqualTo(urlSafe && decodes(value, Encoding.BASE64));
+    }
+    assertThat(Encoder.isValidBase64Url("ab+c")).isFalse();
+    assertThat(Encoder.isValidBase64Url(null)).isFalse();
+    assertThat(Encoder.isValidHex("0A")).isTrue();
+    assertThat(Encoder.isValidHex("0A=")).isFalse();
+  }
+
+  @Test
+  public void testPaddingMustBeCanonical() {
+    for (var value : new String[]{"QUJD", "QQ", "QQ==", "QUI", "QUI="}) {
+      assertThat(Encoder.isValidBase64Url(value)).as(value).isTrue();
+      assertThat(Encoder.fromBase64(value)).as(value).isEqualTo(Base64.getDecoder().decode(value));
+    }
+    for (var value : new String[]{"QUJD=", "QUJD==", "QUJD====", "QQ=", "QQ===", "QQ=====", "QUI==", "Q=", "="}) {
+      assertThat(Encoder.isValidBase64Url(value)).as(value).isFalse();
+      assertThatExceptionOfType(IllegalArgumentException.class).as(value).isThrownBy(() -> Encoder.fromBase64(value));
+      assertThatExceptionOfType(IllegalArgumentException.class).as(value)
+                                                               .isThrownBy(() -> Base64.getDecoder().decode(value));
+    }
+    var base32 = BaseEncoding.base32();
+    for (int length = 1; length <= 10; length++) {
+      var padded = base32.encode(randomBytes(length));
+      assertThat(Encoder.isValidBase32(padded)).as(padded).isTrue();
+      assertThat(Encoder.fromBase32(padded)).as(padded).isEqualTo(base32.decode(padded));
+      // one pad too many, and one too few where that still leaves padding
+      if (!padded.endsWith("==")) continue;
+      for (var value : new String[]{padded + "=", padded.substring(0, padded.length() - 1)}) {
+        assertThat(Encoder.isValidBase32(value)).as(value).isFalse();
+        assertThatExceptionOfType(IllegalArgumentException.class).as(value).isThrownBy(() -> Encoder.fromBase32(value));
+      }
+    }
+    assertThat(Encoder.isValidBase32("ME=")).isFalse();
+    // a padded group inside a long input, where the ByteBuffer decode splits it into chunks
+    var chunked = "QQ==".repeat(1000);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Encoder.decode(chunked, Encoding.BASE64, ByteBuffer.allocateDirect(3000)));
+  }
+
+  private static boolean decodes(String value, Encoding encoding) {
+    try {
+      Encoder.decode(value, encoding);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testDeflateToBase64RoundTrips() {
+    var json = "{\"user\":\"alice\",\"roles\":[\"admin\",\"editor\"],\"theme\":\"dark\",\"locale\":\"en\"}";
+    for (int repeat : new int[]{0, 1, 2, 50, 5000}) {
+      var data  = Encoder.toByteArray(json.repeat(repeat));
+      var token = Encoder.deflateToBase64(data);
+      assertThat(Encoder.isValidBase64Url(token.substring(1))).isTrue();
+      assertThat(Encoder.inflateFromBase64(token)).isEqualTo(data);
+      if (repeat > 1) assertThat(token).startsWith("1").hasSizeLessThan(Encoder.toBase64(data).length());
+    }
+    var random = randomBytes(500);
+    assertThat(Encoder.deflateToBase64(random)).isEqualTo("0" + Encoder.toBase64(random));
+    var small = Encoder.toByteArray("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+    assertThat(Encoder.deflateToBase64(small)).startsWith("0");
+    assertThat(Encoder.inflateFromBase64(Encoder.deflateToBase64(small, null, 0))).isEqualTo(small);
+    assertThat(Encoder.deflateToBase64(null)).isNull();
+    assertThat(Encoder.inflateFromBase64(null)).isNull();
+  }
+
+  @Test
+  public void testDeflateWithDictionaryAndLimits() {
+    var dictionary = Encoder.toByteArray("{\"user\":\"\",\"roles\":[\"admin\",\"editor\"],\"theme\":\"dark\"}");
+    var data       = Encoder.toByteArray("{\"user\":\"bob\",\"roles\":[\"editor\"],\"theme\":\"dark\"}");
+    var plain      = Encoder.deflateToBase64(data, null, 0);
+    var withDict   = Encoder.deflateToBase64(data, dictionary, 0);
+    assertThat(withDict).startsWith("1").hasSizeLessThan(plain.length());
+    assertThat(Encoder.inflateFromBase64(withDict, dictionary, 1000)).isEqualTo(data);
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Encoder.inflateFromBase64(withDict));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Encoder.inflateFromBase64(withDict, Encoder.toByteArray("other"), 1000));
+
+    var bomb = Encoder.deflateToBase64(new byte[100_000]);
+    assertThat(bomb.length()).isLessThan(200);
+    assertThat(Encoder.inflateFromBase64(bomb)).hasSize(100_000);
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Encoder.inflateFromBase64(bomb, null, 99_999));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Encoder.inflateFromBase64(bomb.substring(0, bomb.length() - 4)));
+    for (var bad : new String[]{"", "2abc", "1a", "1****"}) {
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Encoder.inflateFromBase64(bad));
+    }
+  }
+
+  @Test
+  public void testBufferMethodsRejectTooSmallTargets() {
+    var src = randomBytes(10);
+    assertThatExceptionOfType(IndexOutOfBoundsException.class)
+      .isThrownBy(() -> Encoder.encode(src, 0, 10, Encoding.BASE16, new byte[19], 0));
+    assertThatExceptionOfType(IndexOutOfBoundsException.class)
+      .isThrownBy(() -> Encoder.encode(src, 5, 6, Encoding.BASE16, new byte[12], 0));
+    assertThatExceptionOfType(BufferOverflowException.class)
+      .isThrownBy(() -> Encoder.encode(ByteBuffer.wrap(src), Encoding.BASE64, ByteBuffer.allocate(13)));
+    assertThatExceptionOfType(IndexOutOfBoundsException.class)
+      .isThrownBy(() -> Encoder.decode("00112233", Encoding.BASE16, new byte[3], 0));
+    assertThatExceptionOfType(BufferOverflowException.class)
+      .isThrownBy(() -> Encoder.decode("00112233", Encoding.BASE16, ByteBuffer.allocateDirect(3)));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Encoder.decode("0g", Encoding.BASE16, new byte[1], 0));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Encoder.decode("a*b=", Encoding.BASE64, new byte[3], 0));
+  }
+
+  /**
+   * Run once as is and once with {@code --add-modules jdk.incubator.vector} to compare the two paths
+   */
+  @Test
+  @Disabled("local experimentation")
+  public void compareWithGuava() {
+    var       base16     = BaseEncoding.base16().lowerCase();
+    var       base32     = BaseEncoding.base32().omitPadding().lowerCase();
+    final int iterations = 1_000_000;
+    log.info("vectorized: {}", BaseCodec.isVectorized());
+    for (int size : new int[]{32, 1024}) {
+      var  bytes = randomBytes(size);
+      var  hexIn = base16.encode(bytes);
+      var  b32In = base32.encode(bytes);
+      long sink  = 0;
+      for (int round = 0; round < 3; round++) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += base16.encode(bytes).length();
+        long guavaHex = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += Encoder.toBase16(bytes).length();
+        long hex = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += base32.encode(bytes).length();
+        long guavaBase32 = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += Encoder.toBase32(bytes).length();
+        long b32 = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += base16.decode(hexIn).length;
+        long guavaHexDecode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += Encoder.fromBase16(hexIn).length;
+        long hexDecode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += base32.decode(b32In).length;
+        long guavaBase32Decode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += Encoder.fromBase32(b32In).length;
+        long b32Decode = System.nanoTime() - start;
+        log.info("{} bytes ns/op, guava vs jutils: hex {} / {}, base32 {} / {}, from hex {} / {}, from base32 {} / {}",
+                 size, guavaHex / iterations, hex / iterations, guavaBase32 / iterations, b32 / iterations,
+                 guavaHexDecode / iterations, hexDecode / iterations, guavaBase32Decode / iterations,
+                 b32Decode / iterations);
+      }
+      assertThat(sink).isPositive();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.EncodingStreams.Format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class EncodingStreamsTest {
+
+  private static final int[] LENGTHS = {0, 1, 2, 3, 4, 5, 56, 57, 58, 3419, 3420, 3421, 20000};
+
+  private static byte[] randomBytes(int size) {
+    var bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static String expected(byte[] bytes, Format format) {
+    return switch (format) {
+      case BASE16 -> Encoder.toBase16(bytes);
+      case BASE32 -> Encoder.toBase32(bytes);
+      case BASE64_URL -> Encoder.toBase64(bytes);
+      case BASE64 -> Base64.getEncoder().encodeToString(bytes);
+      case BASE64_MIME -> Encoder.encodeBase64Mime(bytes);
+    };
+  }
+
+  /**
+   * Delivers at most 7 bytes per read, to exercise partial groups on the decoding side.
+   */
+  private static InputStream trickle(byte[] bytes) {
+    return new ByteArrayInputStream(bytes) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 7));
+      }
+    };
+  }
+
+  @Test
+  public void testEncoderMatchesEncoder() throws IOException {
+    for (int length : LENGTHS) {
+      var bytes = randomBytes(length);
+      for (Format format : Format.values()) {
+        var sink = new ByteArrayOutputStream();
+        try (var out = EncodingStreams.encoder(sink, format)) {
+          // uneven writes so groups and MIME lines straddle write calls
+          for (int i = 0; i < length; ) {
+            int n = Math.min(length - i, 1 + i % 1000);
+            if (n == 1) {
+              out.write(bytes[i]);
+            } else {
+              out.write(bytes, i, n);
+            }
+            i += n;
+          }
+        }
+        assertThat(sink.toString(StandardCharsets.US_ASCII)).as("%s %d", format, length)
+                                                             .isEqualTo(length == 0 ? "" : expected(bytes, format));
+      }
+    }
+  }
+
+  @Test
+  public void testDecoderRoundTrips() throws IOException {
+    for (int length : LENGTHS) {
+      var bytes = randomBytes(length);
+      for (Format format : Format.values()) {
+        var encoded = expected(bytes, format).getBytes(StandardCharsets.US_ASCII);
+        try (var in = EncodingStreams.decoder(trickle(encoded), format)) {
+          assertThat(in.readAllBytes()).as("%s %d", format, length).isEqualTo(bytes);
+        }
+        try (var in = EncodingStreams.decoder(new ByteArrayInputStream(encoded), format)) {
+          var single = new ByteArrayOutputStream();
+          for (int b; (b = in.read()) != -1; ) {
+            single.write(b);
+          }
+          assertThat(single.toByteArray()).as("%s %d one byte at a time", format, length).isEqualTo(bytes);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testChannelsAndTranscoding() throws IOException {
+    var bytes = randomBytes(10_000);
+    var mime  = Encoder.encodeBase64Mime(bytes).getBytes(StandardCharsets.US_ASCII);
+
+    var out = new ByteArrayOutputStream();
+    assertThat(EncodingStreams.transcode(new ByteArrayInputStream(mime), Format.BASE64_MIME, out, Format.BASE64_URL))
+      .isEqualTo(bytes.length);
+    assertThat(out.toString(StandardCharsets.US_ASCII)).isEqualTo(Encoder.toBase64(bytes));
+
+    var hex = new ByteArrayOutputStream();
+    EncodingStreams.transcode(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), Format.BASE64_URL,
+                              Channels.newChannel(hex), Format.BASE16);
+    assertThat(hex.toString(StandardCharsets.US_ASCII)).isEqualTo(Encoder.toBase16(bytes));
+
+    var sink = new ByteArrayOutputStream();
+    try (var channel = EncodingStreams.encoder(Channels.newChannel(sink), Format.BASE32)) {
+      channel.write(ByteBuffer.wrap(bytes));
+    }
+    assertThat(sink.toString(StandardCharsets.US_ASCII)).isEqualTo(Encoder.toBase32(bytes));
+
+    var decoded = ByteBuffer.allocate(bytes.length + 1);
+    try (var channel = EncodingStreams.decoder(Channels.newChannel(new ByteArrayInputStream(sink.toByteArray())),
+                                               Format.BASE32)) {
+      while (channel.read(decoded) != -1) ;
+    }
+    assertThat(decoded.flip()).isEqualTo(ByteBuffer.wrap(bytes));
+  }
+
+  @Test
+  public void testDecoderRejectsMalformedInput() throws IOException {
+    for (var input : new String[]{"abc", "0g", "ab=="}) {
+      assertThatExceptionOfType(IOException.class).isThrownBy(
+        () -> EncodingStreams.decoder(new ByteArrayInputStream(input.getBytes()), Format.BASE16).readAllBytes());
+    }
+    for (var input : new String[]{"a", "ab\n", "ab=c", "a*b"}) {
+      assertThatExceptionOfType(IOException.class).isThrownBy(
+        () -> EncodingStreams.decoder(new ByteArrayInputStream(input.getBytes()), Format.BASE64).readAllBytes());
+    }
+    // MIME skips anything outside the alphabet
+    var lenient = EncodingStreams.decoder(new ByteArrayInputStream("aGV\r\nsb*G8=\n".getBytes()), Format.BASE64_MIME);
+    assertThat(new String(lenient.readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("hello");
+
+    var closed = EncodingStreams.encoder(new ByteArrayOutputStream(), Format.BASE64);
+    closed.close();
+    assertThatExceptionOfType(IOException.class).isThrownBy(() -> closed.write(1));
+  }
+}
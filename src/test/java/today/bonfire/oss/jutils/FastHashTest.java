@@ -0,0 +1,127 @@
+package today.bonfire.oss.jutils;
+
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class FastHashTest {
+
+  @Test
+  public void testXxHash64KnownValues() {
+    assertThat(FastHash.xxHash64(new byte[0])).isEqualTo(0xEF46DB3751D8E999L);
+    assertThat(FastHash.xxHash64("a".getBytes(StandardCharsets.UTF_8))).isEqualTo(0xD24EC4F1A98C6E5BL);
+    assertThat(FastHash.xxHash64("abc".getBytes(StandardCharsets.UTF_8))).isEqualTo(0x44BC2CF5AD770999L);
+    assertThat(FastHash.xxHash64("Nobody inspects the spammish repetition".getBytes(StandardCharsets.UTF_8)))
+      .isEqualTo(0xFBCEA83C8A378BF1L);
+    assertThat(FastHash.xxHash64("xxhash".getBytes(StandardCharsets.UTF_8), 20141025L))
+      .isEqualTo(0xB559B98D844E0635L);
+  }
+
+  @Test
+  public void testMurmur3MatchesGuava() {
+    var random = new Random(3);
+    var out    = new long[2];
+    for (int length = 0; length < 100; length++) {
+      var data = new byte[length];
+      random.nextBytes(data);
+      int seed = random.nextInt();
+      assertThat(FastHash.murmur3_32(data, seed))
+        .isEqualTo(Hashing.murmur3_32_fixed(seed).hashBytes(data).asInt());
+      // Guava sign-extends negative 128-bit seeds, the reference implementation does not
+      seed &= Integer.MAX_VALUE;
+      FastHash.murmur3_128(data, seed, out);
+      assertThat(out[0]).isEqualTo(Hashing.murmur3_128(seed).hashBytes(data).asLong());
+      assertThat(toBytes(out)).isEqualTo(Hashing.murmur3_128(seed).hashBytes(data).asBytes());
+    }
+    long value = random.nextLong();
+    assertThat(FastHash.murmur3_32(value, 9)).isEqualTo(Hashing.murmur3_32_fixed(9).hashLong(value).asInt());
+    FastHash.murmur3_128(value, 9, out);
+    assertThat(out[0]).isEqualTo(Hashing.murmur3_128(9).hashLong(value).asLong());
+    assertThat(FastHash.murmur3_32("héllo wörld"))
+      .isEqualTo(Hashing.murmur3_32_fixed().hashUnencodedChars("héllo wörld").asInt());
+  }
+
+  @Test
+  public void testAllInputKindsAgree() {
+    var random = new Random(5);
+    var out    = new long[2];
+    var other  = new long[2];
+    for (int length = 0; length < 80; length++) {
+      var chars = new StringBuilder();
+      for (int i = 0; i < length; i++) chars.append((char) random.nextInt(Character.MAX_VALUE));
+      // not getBytes(UTF_16LE), which would replace unpaired surrogates
+      var bytes = new byte[length * 2];
+      ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asCharBuffer().put(chars.toString());
+
+      var padded = new byte[bytes.length + 3];
+      System.arraycopy(bytes, 0, padded, 3, bytes.length);
+      var direct = ByteBuffer.allocateDirect(bytes.length + 5).order(ByteOrder.BIG_ENDIAN);
+      direct.position(5);
+      direct.put(bytes).position(5);
+
+      long xx = FastHash.xxHash64(bytes, 17);
+      assertThat(FastHash.xxHash64(chars, 17)).isEqualTo(xx);
+      assertThat(FastHash.xxHash64(padded, 3, bytes.length, 17)).isEqualTo(xx);
+      assertThat(FastHash.xxHash64(direct, 17)).isEqualTo(xx);
+      assertThat(direct.position()).isEqualTo(5);
+
+      int m32 = FastHash.murmur3_32(bytes, 17);
+      assertThat(FastHash.murmur3_32(chars, 17)).isEqualTo(m32);
+      assertThat(FastHash.murmur3_32(direct, 17)).isEqualTo(m32);
+
+      FastHash.murmur3_128(bytes, 17, out);
+      FastHash.murmur3_128(chars, 17, other);
+      assertThat(other).isEqualTo(out);
+      FastHash.murmur3_128(direct, 17, other);
+      assertThat(other).isEqualTo(out);
+    }
+    long value = random.nextLong();
+    var  bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
+    assertThat(FastHash.xxHash64(value, 1)).isEqualTo(FastHash.xxHash64(bytes, 1));
+    assertThat(FastHash.murmur3_32(value, 1)).isEqualTo(FastHash.murmur3_32(bytes, 1));
+  }
+
+  private static byte[] toBytes(long[] hash) {
+    return ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(hash[0]).putLong(hash[1]).array();
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void compareWithSha256() {
+    var       key        = "tenant:42:user:someone@example.com:profile";
+    final int iterations = 5_000_000;
+    long      sink       = 0;
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += Digest.digest(key, DigestHash.SHA_256)[0];
+      }
+      long sha = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += FastHash.xxHash64(key);
+      }
+      long xx = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += FastHash.murmur3_32(key);
+      }
+      long murmur = System.nanoTime() - start;
+      log.info("sha256: {} ns/op, xxHash64: {} ns/op, murmur3_32: {} ns/op",
+               sha / iterations, xx / iterations, murmur / iterations);
+    }
+    log.trace("{}", sink);
+  }
+}
@@ -0,0 +1,195 @@
+package today.bonfire.oss.jutils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.IdCodec.Alphabet;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Slf4j
+public class IdCodecTest {
+
+  private static final long[] EDGES = {0, 1, 57, 58, 61, 62, 63, 64, Integer.MAX_VALUE, 0xFFFFFFFFL,
+    Long.MAX_VALUE, Long.MIN_VALUE, -1, -2};
+
+  private static final String[] DIGITS = {
+    "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz",
+    "0123456789ABCDEFGHJKMNPQRSTVWXYZ",
+    "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz"
+  };
+
+  /**
+   * The straightforward BigInteger conversion the codec avoids
+   */
+  private static String reference(BigInteger value, Alphabet alphabet, int width) {
+    var digits = DIGITS[alphabet.ordinal()];
+    var radix  = BigInteger.valueOf(digits.length());
+    var sb     = new StringBuilder();
+    do {
+      var qr = value.divideAndRemainder(radix);
+      sb.append(digits.charAt(qr[1].intValue()));
+      value = qr[0];
+    } while (value.signum() > 0);
+    while (sb.length() < width) sb.append(digits.charAt(0));
+    return sb.reverse().toString();
+  }
+
+  private static BigInteger unsigned(UUID uuid) {
+    return new BigInteger(1, ByteBuffer.allocate(16)
+                                       .putLong(uuid.getMostSignificantBits())
+                                       .putLong(uuid.getLeastSignificantBits())
+                                       .array());
+  }
+
+  @Test
+  public void testLongsMatchBigIntegerConversion() {
+    var random = new Random(11);
+    var values = new ArrayList<Long>();
+    for (long edge : EDGES) values.add(edge);
+    for (int i = 0; i < 2000; i++) values.add(random.nextLong() >>> random.nextInt(64));
+    for (Alphabet alphabet : Alphabet.values()) {
+      for (long value : values) {
+        var big   = new BigInteger(Long.toUnsignedString(value));
+        var fixed = IdCodec.encodeFixed(value, alphabet);
+        assertThat(IdCodec.encode(value, alphabet)).isEqualTo(reference(big, alphabet, 1));
+        assertThat(fixed).isEqualTo(reference(big, alphabet, alphabet.longWidth()));
+        assertThat(IdCodec.decodeLong(IdCodec.encode(value, alphabet), alphabet)).isEqualTo(value);
+        assertThat(IdCodec.decodeLong(fixed, alphabet)).isEqualTo(value);
+
+        var dst = new byte[alphabet.longWidth() + 1];
+        int n   = IdCodec.encode(value, alphabet, dst, 1);
+        assertThat(new String(dst, 1, n)).isEqualTo(IdCodec.encode(value, alphabet));
+
+        int small = (int) value;
+        assertThat(IdCodec.encodeFixed(small, alphabet))
+          .isEqualTo(reference(BigInteger.valueOf(Integer.toUnsignedLong(small)), alphabet, alphabet.intWidth()));
+        assertThat(IdCodec.decodeInt(IdCodec.encodeFixed(small, alphabet), alphabet)).isEqualTo(small);
+      }
+    }
+  }
+
+  @Test
+  public void testUuidsMatchBigIntegerConversion() {
+    var uuids = new ArrayList<UUID>();
+    uuids.add(new UUID(0, 0));
+    uuids.add(new UUID(-1, -1));
+    uuids.add(new UUID(Long.MIN_VALUE, 1));
+    for (int i = 0; i < 1000; i++) uuids.add(UUID.randomUUID());
+    for (Alphabet alphabet : Alphabet.values()) {
+      for (UUID uuid : uuids) {
+        var encoded = IdCodec.encode(uuid, alphabet);
+        assertThat(encoded).isEqualTo(reference(unsigned(uuid), alphabet, alphabet.uuidWidth()));
+        assertThat(IdCodec.decodeUuid(encoded, alphabet)).isEqualTo(uuid);
+      }
+    }
+    assertThat(Alphabet.BASE62.uuidWidth()).isEqualTo(22);
+    assertThat(Alphabet.BASE58.uuidWidth()).isEqualTo(22);
+    assertThat(Alphabet.CROCKFORD32.uuidWidth()).isEqualTo(26);
+  }
+
+  @Test
+  public void testFixedWidthPreservesOrder() {
+    var random = new Random(5);
+    for (Alphabet alphabet : Alphabet.values()) {
+      for (int i = 0; i < 2000; i++) {
+        long a = random.nextLong() >>> random.nextInt(64);
+        long b = random.nextLong() >>> random.nextInt(64);
+        assertThat(Integer.signum(IdCodec.encodeFixed(a, alphabet).compareTo(IdCodec.encodeFixed(b, alphabet))))
+          .isEqualTo(Integer.signum(Long.compareUnsigned(a, b)));
+        var x = UUID.randomUUID();
+        var y = new UUID(x.getMostSignificantBits() ^ (random.nextBoolean() ? 0 : Long.MIN_VALUE), random.nextLong());
+        assertThat(Integer.signum(IdCodec.encode(x, alphabet).compareTo(IdCodec.encode(y, alphabet))))
+          .isEqualTo(unsigned(x).compareTo(unsigned(y)));
+      }
+    }
+  }
+
+  @Test
+  public void testDecodingRejectsBadInput() {
+    assertThat(IdCodec.decodeLong("1o1l", Alphabet.CROCKFORD32)).isEqualTo(0b00001_00000_00001_00001L);
+    assertThat(IdCodec.decodeLong("zz", Alphabet.CROCKFORD32)).isEqualTo(31 * 32 + 31);
+    for (Alphabet alphabet : Alphabet.values()) {
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeLong("", alphabet));
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeLong("1-2", alphabet));
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeLong("é", alphabet));
+      var tooBig = reference(BigInteger.ONE.shiftLeft(64), alphabet, 1);
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeLong(tooBig, alphabet));
+      var tooBigInt = IdCodec.encode(1L << 32, alphabet);
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeInt(tooBigInt, alphabet));
+      var tooBigUuid = reference(BigInteger.ONE.shiftLeft(128), alphabet, 1);
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeUuid(tooBigUuid, alphabet));
+    }
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.decodeLong("0O", Alphabet.BASE58));
+  }
+
+  @Test
+  public void testZigZagAndVarint() {
+    assertThat(IdCodec.zigZag(0L)).isEqualTo(0);
+    assertThat(IdCodec.zigZag(-1L)).isEqualTo(1);
+    assertThat(IdCodec.zigZag(1L)).isEqualTo(2);
+    assertThat(IdCodec.zigZag(Long.MIN_VALUE)).isEqualTo(-1L);
+    assertThat(IdCodec.zigZag(-3)).isEqualTo(5);
+    assertThat(IdCodec.unZigZag(IdCodec.zigZag(Integer.MIN_VALUE))).isEqualTo(Integer.MIN_VALUE);
+
+    var dst = new byte[12];
+    assertThat(IdCodec.writeVarLong(300, dst, 1)).isEqualTo(2);
+    assertThat(dst[1]).isEqualTo((byte) 0xAC);
+    assertThat(dst[2]).isEqualTo((byte) 0x02);
+    var random = new Random(9);
+    var buffer = ByteBuffer.allocate(10 * 64);
+    for (int i = 0; i < 64; i++) {
+      long value = random.nextLong() >>> i;
+      long zz    = IdCodec.zigZag(i % 2 == 0 ? value : -value);
+      int  size  = IdCodec.writeVarLong(zz, dst, 2);
+      assertThat(size).isEqualTo(IdCodec.varLongSize(zz));
+      assertThat(IdCodec.unZigZag(IdCodec.readVarLong(dst, 2))).isEqualTo(i % 2 == 0 ? value : -value);
+      IdCodec.putVarLong(value, buffer);
+    }
+    buffer.flip();
+    random = new Random(9);
+    for (int i = 0; i < 64; i++) {
+      assertThat(IdCodec.getVarLong(buffer)).isEqualTo(random.nextLong() >>> i);
+    }
+    assertThat(buffer.hasRemaining()).isFalse();
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> IdCodec.readVarLong(new byte[]{(byte) 0x81, 0x00}, 0));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> IdCodec.readVarLong(new byte[]{(byte) 0x81}, 0));
+    var eleven = new byte[11];
+    Arrays.fill(eleven, (byte) 0xFF);
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> IdCodec.readVarLong(eleven, 0));
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void benchmarkAgainstByteArrayBase64() {
+    var  random = new Random(1);
+    var  ids    = new long[1 << 16];
+    for (int i = 0; i < ids.length; i++) ids[i] = random.nextLong() >>> 1;
+    long sink   = 0;
+    for (int round = 0; round < 20; round++) {
+      long start = System.nanoTime();
+      for (long id : ids) sink += IdCodec.encode(id, Alphabet.BASE62).length();
+      long base62 = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (long id : ids) sink += Encoder.toBase64(ByteBuffer.allocate(8).putLong(id).array()).length();
+      long base64 = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (long id : ids) sink += Long.toString(id, 32).length();
+      long toString = System.nanoTime() - start;
+      log.info("per id: base62 {} ns, byte[] base64 {} ns, Long.toString {} ns",
+               base62 / ids.length, base64 / ids.length, toString / ids.length);
+    }
+    log.info("{}", sink);
+  }
+}
@@ -0,0 +1,102 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class PasswordHasherTest {
+
+  private final PasswordHasher pbkdf2 = Digest.pbkdf2(DigestHash.HMAC_SHA_256, 1000);
+  private final PasswordHasher scrypt = Digest.scrypt(10, 8, 1);
+
+  @Test
+  public void testScryptMatchesRfc7914() {
+    assertThat(Kdf.scrypt(new byte[0], new byte[0], 16, 1, 1, 64)).isEqualTo(HexFormat.of().parseHex(
+      "77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442"
+      + "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906"));
+    assertThat(Kdf.scrypt("password".getBytes(StandardCharsets.UTF_8), "NaCl".getBytes(StandardCharsets.UTF_8),
+                          1024, 8, 16, 64)).isEqualTo(HexFormat.of().parseHex(
+      "fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+      + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640"));
+  }
+
+  @Test
+  public void testPbkdf2MatchesJca() throws Exception {
+    var salt = "saltsaltsaltsalt".getBytes(StandardCharsets.UTF_8);
+    for (var algorithm : new DigestHash[]{DigestHash.HMAC_SHA_256, DigestHash.HMAC_SHA_512}) {
+      var factory  = SecretKeyFactory.getInstance("PBKDF2With" + algorithm);
+      var expected = factory.generateSecret(new PBEKeySpec("pässword".toCharArray(), salt, 2000, 80 * 8)).getEncoded();
+      assertThat(Kdf.pbkdf2(algorithm, "pässword".getBytes(StandardCharsets.UTF_8), salt, 2000, 80))
+        .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testHashAndVerify() {
+    for (var hasher : new PasswordHasher[]{pbkdf2, scrypt}) {
+      var encoded = hasher.hash("correct horse");
+      assertThat(hasher.verify("correct horse", encoded)).isTrue();
+      assertThat(hasher.verify(CharBuffer.wrap("correct horse".toCharArray()), encoded)).isTrue();
+      assertThat(hasher.verify("correct horsE", encoded)).isFalse();
+      assertThat(hasher.hash("correct horse")).isNotEqualTo(encoded);
+      assertThat(hasher.needsRehash(encoded)).isFalse();
+    }
+    assertThat(pbkdf2.hash("x")).startsWith("$pbkdf2-sha256$i=1000$");
+    assertThat(scrypt.hash("x")).startsWith("$scrypt$ln=10,r=8,p=1$");
+    assertThat(scrypt.verify("", scrypt.hash(""))).isTrue();
+    assertThat(pbkdf2.hash(null)).isNull();
+  }
+
+  @Test
+  public void testVerifyUsesTheStoredParameters() {
+    var old     = Digest.pbkdf2(DigestHash.HMAC_SHA_512, 500).hash("secret");
+    var current = Digest.passwordHasher();
+    assertThat(scrypt.verify("secret", old)).isTrue();
+    assertThat(current.needsRehash(old)).isTrue();
+    assertThat(pbkdf2.needsRehash(pbkdf2.hash("secret").replace("i=1000", "i=1001"))).isTrue();
+  }
+
+  @Test
+  public void testMalformedOrExcessiveValuesDoNotVerify() {
+    var encoded = pbkdf2.hash("secret");
+    assertThat(pbkdf2.verify("secret", null)).isFalse();
+    assertThat(pbkdf2.verify(null, encoded)).isFalse();
+    assertThat(pbkdf2.verify("secret", encoded.substring(1))).isFalse();
+    assertThat(pbkdf2.verify("secret", encoded.replace("i=1000", "i=x"))).isFalse();
+    assertThat(pbkdf2.verify("secret", encoded.replace("i=1000", "i=2000000000"))).isFalse();
+    assertThat(pbkdf2.verify("secret", encoded.replace("pbkdf2-sha256", "pbkdf2-md5"))).isFalse();
+    assertThat(pbkdf2.verify("secret", "$scrypt$ln=40,r=8,p=1$c2FsdA$" + encoded.substring(encoded.lastIndexOf('$') + 1)))
+      .isFalse();
+    assertThat(pbkdf2.needsRehash("garbage")).isTrue();
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Digest.pbkdf2(DigestHash.SHA_256, 10));
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Digest.scrypt(25, 64, 1));
+  }
+
+  @Test
+  public void testRunsOnTheGivenExecutor() throws Exception {
+    var submitted = new AtomicInteger();
+    var counting  = pbkdf2.withExecutor(task -> {
+      submitted.incrementAndGet();
+      Thread.ofPlatform().start(task);
+    });
+    var encoded = counting.hashAsync("secret").get();
+    assertThat(counting.verifyAsync("secret", encoded).get()).isTrue();
+    assertThat(submitted.get()).isEqualTo(2);
+
+    var rejecting = pbkdf2.withExecutor(task -> {
+      throw new RejectedExecutionException("full");
+    });
+    assertThatExceptionOfType(RejectedExecutionException.class).isThrownBy(() -> rejecting.hash("secret"));
+    assertThat(rejecting.hashAsync("secret")).isCompletedExceptionally();
+  }
+}
@@ -3,10 +3,20 @@ package today.bonfire.oss.jutils;
 
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.slf4j.MDC;
 
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -42,4 +52,122 @@ public class RandUtilsTest {
     }
     assertThat(set.size()).isEqualTo(100000);
   }
+
+  @Test
+  public void testConcurrentCallersGetDistinctValues() throws Exception {
+    Set<String> seen = ConcurrentHashMap.newKeySet();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < 200; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 200; i++) {
+            assertThat(seen.add(RandUtils.generateNewToken(16))).isTrue();
+            assertThat(RandUtils.newInt(5, 10)).isBetween(5, 9);
+            assertThat(RandUtils.newLong(-3, 3)).isBetween(-3L, 2L);
+          }
+        }));
+      }
+      for (var future : futures) future.get();
+    }
+    assertThat(seen).hasSize(200 * 200);
+  }
+
+  @Test
+  public void testAlgorithmCanBeChanged() {
+    assertThat(SecureRandoms.algorithm()).isEqualTo(SecureRandoms.DEFAULT_ALGORITHM);
+    try {
+      SecureRandoms.use("SHA1PRNG");
+      assertThat(SecureRandoms.algorithm()).isEqualTo("SHA1PRNG");
+      assertThat(RandUtils.nanoId62(20)).hasSize(20);
+    } finally {
+      SecureRandoms.use(SecureRandoms.DEFAULT_ALGORITHM);
+    }
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> SecureRandoms.use("NoSuchRandom"));
+    assertThat(SecureRandoms.algorithm()).isEqualTo(SecureRandoms.DEFAULT_ALGORITHM);
+  }
+
+  @Test
+  public void testEntropyBufferNeverRepeatsBytes() throws Exception {
+    var buffer  = new EntropyBuffer(2);
+    int perTask = 3 * EntropyBuffer.BLOCK_SIZE / 16;
+    Set<ByteBuffer> seen = ConcurrentHashMap.newKeySet();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < perTask; i++) {
+            var bytes = new byte[16];
+            buffer.nextBytes(bytes);
+            assertThat(seen.add(ByteBuffer.wrap(bytes))).isTrue();
+          }
+        }));
+      }
+      for (var future : futures) future.get();
+    }
+    assertThat(seen).hasSize(8 * perTask);
+  }
+
+  @Test
+  public void testBufferedRandUtils() {
+    assertThat(SecureRandoms.isBuffered()).isFalse();
+    try {
+      SecureRandoms.buffered(true);
+      var tokens = new HashSet<String>();
+      for (int i = 0; i < 20_000; i++) {
+        assertThat(tokens.add(RandUtils.nanoId(21))).isTrue();
+      }
+      assertThat(RandUtils.generateByteArray(1000)).hasSize(1000);
+    } finally {
+      SecureRandoms.buffered(false);
+    }
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void benchmarkBuffered() {
+    for (boolean buffered : new boolean[]{false, true, false, true}) {
+      SecureRandoms.buffered(buffered);
+      long start = System.nanoTime();
+      for (int i = 0; i < 1_000_000; i++) RandUtils.nanoId(21);
+      log.info("buffered {}: {} ns per nanoId", buffered, (System.nanoTime() - start) / 1_000_000);
+    }
+    SecureRandoms.buffered(false);
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void benchmarkContention() throws Exception {
+    var shared = SecureRandom.getInstance(SecureRandoms.DEFAULT_ALGORITHM);
+    int calls  = 200_000;
+    for (int threads = 1; threads <= 64; threads *= 2) {
+      long sharedNanos  = run(threads, calls, () -> {
+        var bytes = new byte[16];
+        shared.nextBytes(bytes);
+        return bytes;
+      });
+      long stripedNanos = run(threads, calls, () -> RandUtils.generateByteArray(16));
+      log.info("{} threads: shared {} ms, striped {} ms", threads, sharedNanos / 1_000_000, stripedNanos / 1_000_000);
+    }
+  }
+
+  /**
+   * @return the nanoseconds the threads take to make {@code calls} calls in total
+   */
+  private static long run(int threads, int calls, Supplier<byte[]> call) throws Exception {
+    var start = new CountDownLatch(1);
+    try (var executor = Executors.newFixedThreadPool(threads)) {
+      var futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int i = calls / threads; i > 0; i--) call.get();
+          return null;
+        }));
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      for (var future : futures) future.get();
+      return System.nanoTime() - begin;
+    }
+  }
 }
@@ -0,0 +1,146 @@
+package today.bonfire.oss.jutils;
+
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Slf4j
+public class ShardRoutingTest {
+
+  private static final int KEYS = 20_000;
+
+  private static String[] route(Function<String, String> router) {
+    var owners = new String[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      owners[i] = router.apply("key-" + i);
+    }
+    return owners;
+  }
+
+  /**
+   * Asserts that every key that moved went to or came from the given node and returns how many moved.
+   */
+  private static int moved(String[] before, String[] after, String node) {
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      if (!before[i].equals(after[i])) {
+        assertThat(node).isIn(before[i], after[i]);
+        moved++;
+      }
+    }
+    return moved;
+  }
+
+  @Test
+  public void testJumpHashMatchesGuava() {
+    var random = new Random(1);
+    for (int i = 0; i < 10_000; i++) {
+      long key     = random.nextLong();
+      int  buckets = 1 + random.nextInt(5000);
+      assertThat(FastHash.jumpHash(key, buckets)).isEqualTo(Hashing.consistentHash(key, buckets));
+    }
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> FastHash.jumpHash(1, 0));
+  }
+
+  @Test
+  public void testHashRingMovesOnlyTheChangedNodesKeys() {
+    var ring = Digest.hashRing(DigestHash.SHA_256, 160);
+    for (int n = 0; n < 10; n++) {
+      ring.add("shard-" + n);
+    }
+    assertThat(ring.pointCount()).isEqualTo(1600);
+    var before = route(ring::node);
+
+    var counts = new HashMap<String, Integer>();
+    for (var owner : before) counts.merge(owner, 1, Integer::sum);
+    assertThat(counts).hasSize(10);
+    assertThat(counts.values()).allSatisfy(c -> assertThat(c).isBetween(KEYS / 10 / 2, KEYS / 10 * 2));
+
+    ring.add("shard-10");
+    var added = route(ring::node);
+    assertThat(moved(before, added, "shard-10")).isBetween(KEYS / 11 / 2, KEYS / 11 * 2);
+
+    ring.remove("shard-10");
+    assertThat(route(ring::node)).isEqualTo(before);
+    ring.remove("shard-3");
+    assertThat(moved(before, route(ring::node), "shard-3")).isEqualTo(counts.get("shard-3"));
+  }
+
+  @Test
+  public void testHashRingIsIndependentOfInsertionOrder() {
+    var a = Digest.hashRing(DigestHash.SHA_256, 50).add("x").add("y").add("z", 100);
+    var b = Digest.hashRing(DigestHash.SHA_256, 50).add("z", 100).add("y").add("x").add("y");
+    assertThat(route(a::node)).isEqualTo(route(b::node));
+    assertThat(a.nodes()).containsExactly("x", "y", "z");
+    assertThat(a.pointCount()).isEqualTo(200);
+    assertThat(Digest.hashRing(DigestHash.SHA_256, 10).node("k")).isNull();
+  }
+
+  @Test
+  public void testRendezvousMovesOnlyTheChangedNodesKeys() {
+    var router = Digest.rendezvous(DigestHash.SHA_256);
+    for (int n = 0; n < 5; n++) {
+      router.add("db-" + n);
+    }
+    var before = route(router::node);
+    router.add("db-5");
+    assertThat(moved(before, route(router::node), "db-5")).isBetween(KEYS / 6 / 2, KEYS / 6 * 2);
+    router.remove("db-5").add("db-5").remove("db-5");
+    assertThat(route(router::node)).isEqualTo(before);
+    assertThat(router.nodes()).containsExactly("db-0", "db-1", "db-2", "db-3", "db-4");
+    assertThat(Digest.rendezvous(DigestHash.SHA_256).node("k")).isNull();
+  }
+
+  @Test
+  @Disabled("local experimentation")
+  public void measureLookupLatency() {
+    var  threads  = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    var  ring     = Digest.hashRing(DigestHash.SHA_256, 160);
+    var  router   = Digest.rendezvous(DigestHash.SHA_256);
+    for (int n = 0; n < 100; n++) {
+      ring.add("shard-" + n);
+      router.add("shard-" + n);
+    }
+    var keys = new String[1024];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "user-" + i + "@example.com";
+    }
+    final int iterations = 5_000_000;
+    for (int round = 0; round < 3; round++) {
+      long bytes = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      int  sink  = 0;
+      for (int i = 0; i < iterations; i++) {
+        sink += ring.node(keys[i & 1023]).length();
+      }
+      long ringTime  = System.nanoTime() - start;
+      long ringBytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += router.node(keys[i & 1023]).length();
+      }
+      long rendezvousTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += FastHash.jumpHash(FastHash.xxHash64(keys[i & 1023]), 100);
+      }
+      long jumpTime = System.nanoTime() - start;
+      log.info("{} ring points: {} ns/op {} B/op, rendezvous 100 nodes: {} ns/op, jump: {} ns/op ({})",
+               ring.pointCount(), ringTime / iterations, ringBytes / iterations,
+               rendezvousTime / iterations, jumpTime / iterations, sink);
+    }
+  }
+}
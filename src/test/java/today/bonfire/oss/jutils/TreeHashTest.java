@@ -0,0 +1,101 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import today.bonfire.oss.jutils.constants.DigestHash;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class TreeHashTest {
+
+  private static final int CHUNK = 4096;
+
+  private final TreeHash treeHash = Digest.treeHash(DigestHash.SHA_256, CHUNK);
+
+  private static byte[] randomBytes(int size, long seed) {
+    var bytes = new byte[size];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testRootOfSmallInputs() throws Exception {
+    var data   = "hello".getBytes();
+    var leaf   = MessageDigest.getInstance("SHA-256");
+    leaf.update((byte) 0);
+    assertThat(treeHash.hash(ByteBuffer.wrap(data)).root()).isEqualTo(leaf.digest(data));
+
+    var empty = treeHash.hash(ByteBuffer.allocate(0));
+    assertThat(empty.leafCount()).isEqualTo(1);
+
+    var two   = randomBytes(CHUNK + 10, 1);
+    var tree  = treeHash.hash(ByteBuffer.wrap(two));
+    var inner = MessageDigest.getInstance("SHA-256");
+    inner.update((byte) 1);
+    inner.update(tree.leaf(0));
+    inner.update(tree.leaf(1));
+    assertThat(tree.root()).isEqualTo(inner.digest());
+  }
+
+  @Test
+  public void testFileAndBufferAgree(@TempDir Path dir) throws Exception {
+    for (int size : new int[]{0, 1, CHUNK, CHUNK * 7 + 3}) {
+      var data = randomBytes(size, size);
+      var file = Files.write(dir.resolve("f" + size), data);
+      var tree = treeHash.hash(file);
+      assertThat(tree).isEqualTo(treeHash.hash(ByteBuffer.wrap(data)));
+      assertThat(tree.length()).isEqualTo(size);
+      assertThat(tree.leafCount()).isEqualTo(Math.max(1, (size + CHUNK - 1) / CHUNK));
+    }
+  }
+
+  @Test
+  public void testAppendMatchesFullHash(@TempDir Path dir) throws Exception {
+    var file     = Files.write(dir.resolve("log"), randomBytes(CHUNK * 3 + 100, 2));
+    var previous = treeHash.hash(file);
+    Files.write(file, randomBytes(CHUNK * 2 + 5, 3), StandardOpenOption.APPEND);
+
+    var appended = treeHash.append(file, previous);
+    assertThat(appended).isEqualTo(treeHash.hash(file));
+    assertThat(appended.leaf(0)).isEqualTo(previous.leaf(0));
+    assertThat(appended.leaf(3)).isNotEqualTo(previous.leaf(3));
+  }
+
+  @Test
+  public void testVerifyFindsChangedChunksAndRehashFixesThem(@TempDir Path dir) throws Exception {
+    var data     = randomBytes(CHUNK * 6, 4);
+    var file     = Files.write(dir.resolve("blob"), data);
+    var expected = treeHash.hash(file);
+    assertThat(treeHash.verify(file, expected).isEmpty()).isTrue();
+
+    data[CHUNK * 2 + 17] ^= 1;
+    data[CHUNK * 5] ^= 1;
+    Files.write(file, data);
+    var changed = treeHash.verify(file, expected);
+    assertThat(changed.stream().toArray()).containsExactly(2, 5);
+    assertThat(treeHash.rehash(file, expected, changed)).isEqualTo(treeHash.hash(file));
+    assertThat(treeHash.rehash(file, expected, new BitSet())).isEqualTo(expected);
+
+    Files.write(file, randomBytes(CHUNK, 5), StandardOpenOption.APPEND);
+    assertThat(treeHash.verify(file, treeHash.hash(file)).isEmpty()).isTrue();
+    assertThat(treeHash.verify(file, expected).get(6)).isTrue();
+  }
+
+  @Test
+  public void testRejectsIncompatibleTrees(@TempDir Path dir) throws Exception {
+    var file = Files.write(dir.resolve("x"), randomBytes(10, 6));
+    var tree = Digest.treeHash(DigestHash.SHA_256, CHUNK * 2).hash(file);
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> treeHash.verify(file, tree));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> Digest.treeHash(DigestHash.HMAC_SHA_256));
+  }
+}
@@ -0,0 +1,87 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.Test;
+import today.bonfire.oss.jutils.UrlCodec.Component;
+import today.bonfire.oss.jutils.web.QueryParams;
+
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class UrlCodecTest {
+
+  private static final String CHARS = "aZ09 .-*_~+%&=/?#:@!$'(),;\"<>é€😀\uD83Dÿ\n";
+
+  @Test
+  public void testFormMatchesUrlEncoderAndDecoder() {
+    var random = new Random(42);
+    for (int round = 0; round < 2000; round++) {
+      var sb = new StringBuilder();
+      for (int i = random.nextInt(20); i > 0; i--) {
+        sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+      }
+      var value   = sb.toString();
+      var encoded = URLEncoder.encode(value, StandardCharsets.UTF_8);
+      assertThat(UrlCodec.encode(value, Component.FORM)).isEqualTo(encoded);
+      assertThat(UrlCodec.decode(encoded, Component.FORM)).isEqualTo(URLDecoder.decode(encoded, StandardCharsets.UTF_8));
+      var bytes = value.getBytes(StandardCharsets.UTF_8);
+      assertThat(UrlCodec.encode(bytes, 0, bytes.length, Component.FORM)).isEqualTo(encoded);
+      var ascii = encoded.getBytes(StandardCharsets.US_ASCII);
+      assertThat(UrlCodec.decode(ascii, 0, ascii.length, Component.FORM)).isEqualTo(URLDecoder.decode(encoded, StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testReturnsTheInputWhenNothingChanges() {
+    var plain = "user_id-42.v2";
+    assertThat(UrlCodec.encode(plain, Component.FORM)).isSameAs(plain);
+    assertThat(UrlCodec.decode(plain, Component.FORM)).isSameAs(plain);
+    var path = "a:b@c;v=1,2";
+    assertThat(UrlCodec.encode(path, Component.PATH_SEGMENT)).isSameAs(path);
+    assertThat(Encoder.urlEncode(plain)).isSameAs(plain);
+    assertThat(Encoder.urlDecode(plain)).isSameAs(plain);
+    assertThat(UrlCodec.encode((String) null, Component.QUERY)).isNull();
+  }
+
+  @Test
+  public void testComponents() throws Exception {
+    var value = "a b/c?d&e=f+g#h~é";
+    assertThat(UrlCodec.encode(value, Component.PATH_SEGMENT)).isEqualTo("a%20b%2Fc%3Fd&e=f+g%23h~%C3%A9");
+    assertThat(UrlCodec.encode(value, Component.QUERY)).isEqualTo("a%20b/c?d%26e%3Df%2Bg%23h~%C3%A9");
+    assertThat(UrlCodec.encode(value, Component.FRAGMENT)).isEqualTo("a%20b/c?d&e=f+g%23h~%C3%A9");
+    for (Component component : Component.values()) {
+      assertThat(UrlCodec.decode(UrlCodec.encode(value, component), component)).isEqualTo(value);
+    }
+    assertThat(UrlCodec.decode("a+b%20c", Component.QUERY)).isEqualTo("a+b c");
+
+    var writer = new StringWriter();
+    UrlCodec.encode("x y", Component.PATH_SEGMENT, writer);
+    var sb = new StringBuilder("/");
+    UrlCodec.encode("x y", Component.FORM, sb);
+    assertThat(writer.toString()).isEqualTo("x%20y");
+    assertThat(sb.toString()).isEqualTo("/x+y");
+  }
+
+  @Test
+  public void testRejectsMalformedEscapes() {
+    for (var value : new String[]{"%", "a%2", "%zz", "%2g"}) {
+      assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> UrlCodec.decode(value, Component.FORM));
+      var bytes = value.getBytes(StandardCharsets.US_ASCII);
+      assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> UrlCodec.decode(bytes, 0, bytes.length, Component.QUERY));
+    }
+  }
+
+  @Test
+  public void testQueryParamsDecodesValues() {
+    var params = QueryParams.parseQueryString("?name=J%C3%BCrgen+M&tag=a&tag=b%26c&flag");
+    assertThat(params.getFirst("name")).isEqualTo("Jürgen M");
+    assertThat(params.get("tag")).containsExactly("a", "b&c");
+    assertThat(params.hasQueryParam("flag")).isTrue();
+  }
+}
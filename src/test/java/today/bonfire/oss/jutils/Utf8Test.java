@@ -0,0 +1,76 @@
+package today.bonfire.oss.jutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class Utf8Test {
+
+  private static final String CHARS = "abcXYZ019 -_~\néÿĀ߿ࠀ€￿😀";
+
+  private static String randomText(Random random, int length) {
+    var sb = new StringBuilder();
+    while (sb.length() < length) {
+      int i = random.nextInt(CHARS.length());
+      // keep surrogate pairs together
+      if (Character.isHighSurrogate(CHARS.charAt(i))) {
+        sb.append(CHARS, i, i + 2);
+      } else if (!Character.isLowSurrogate(CHARS.charAt(i))) {
+        sb.append(CHARS.charAt(i));
+      }
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testMatchesJdkForWellFormedText() {
+    var random = new Random(13);
+    var bytes  = new byte[2000];
+    var chars  = new char[700];
+    for (int round = 0; round < 2000; round++) {
+      var text     = random.nextBoolean() ? "plain ascii text ".repeat(random.nextInt(20))
+                                          : randomText(random, random.nextInt(300));
+      var expected = text.getBytes(StandardCharsets.UTF_8);
+      assertThat(Utf8.encodedLength(text)).isEqualTo(expected.length);
+      assertThat(Utf8.encode(text, bytes, 3)).isEqualTo(expected.length);
+      assertThat(new String(bytes, 3, expected.length, StandardCharsets.UTF_8)).isEqualTo(text);
+
+      int n = Utf8.decode(expected, 0, expected.length, chars, 1);
+      assertThat(new String(chars, 1, n)).isEqualTo(text);
+      assertThat(Utf8.decode(expected, 0, expected.length)).isEqualTo(text);
+      assertThat(Utf8.isAscii(expected, 0, expected.length)).isEqualTo(text.chars().allMatch(c -> c < 0x80));
+    }
+    var large = randomText(random, 10_000).getBytes(StandardCharsets.UTF_8);
+    assertThat(Utf8.decode(large, 0, large.length)).isEqualTo(new String(large, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReportsMalformedInputWithoutThrowing() {
+    var bytes = new byte[16];
+    assertThat(Utf8.encode("ab\ud83dc", bytes, 0)).isEqualTo(-3);
+    assertThat(Utf8.encode("\ude00", bytes, 0)).isEqualTo(-1);
+    assertThat(Utf8.encodedLength("ab\ud83dc")).isEqualTo("ab\ud83dc".getBytes(StandardCharsets.UTF_8).length);
+
+    var malformed = new byte[]{'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', (byte) 0xC3, 'x'};
+    assertThat(Utf8.decode(malformed, 0, malformed.length, new char[16], 0)).isEqualTo(-10);
+    assertThat(Utf8.decode(malformed, 0, malformed.length)).isNull();
+    var overlong = new byte[]{(byte) 0xC0, (byte) 0x80};
+    assertThat(Utf8.decode(overlong, 0, 2)).isNull();
+    assertThat(Utf8.decode(malformed, 0, 9)).isEqualTo("abcdefghi");
+  }
+
+  @Test
+  public void testRejectsTooSmallTargets() {
+    assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> Utf8.encode("abcd", new byte[3], 0));
+    assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> Utf8.encode("ab€", new byte[4], 0));
+    assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> Utf8.encode("a", new byte[3], 4));
+    var bytes = "abcd€".getBytes(StandardCharsets.UTF_8);
+    assertThatExceptionOfType(IndexOutOfBoundsException.class)
+      .isThrownBy(() -> Utf8.decode(bytes, 0, bytes.length, new char[4], 0));
+    assertThat(Utf8.encode("", new byte[0], 0)).isZero();
+  }
+}